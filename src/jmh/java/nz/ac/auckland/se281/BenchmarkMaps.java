@@ -0,0 +1,149 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/** Builds the graphs the benchmarks run against. */
+public class BenchmarkMaps {
+  /** The {@code map} parameter value that selects the bundled 42-country map. */
+  public static final String BUNDLED = "bundled";
+
+  /** Out-degree of every node in the synthetic maps, similar to the bundled map's average. */
+  public static final int SYNTHETIC_DEGREE = 4;
+
+  private BenchmarkMaps() {}
+
+  /**
+   * Gets the graph for a benchmark's {@code map} parameter: either {@link #BUNDLED}, or a node
+   * count for a synthetic map built with {@link #random}.
+   *
+   * @param map The parameter value
+   * @return The frozen graph
+   */
+  public static Graph<?> byName(String map) {
+    if (BUNDLED.equals(map)) {
+      return bundled();
+    }
+    return random(Integer.parseInt(map), SYNTHETIC_DEGREE, 281);
+  }
+
+  /**
+   * Loads the bundled country map into a frozen graph, the same way {@link MapEngine} does.
+   *
+   * @return The country graph
+   */
+  public static Graph<String> bundled() {
+    Graph<String> graph = new Graph<>();
+    for (String line : Utils.readCountries()) {
+      graph.addNode(line.split(",")[0]);
+    }
+    for (String line : Utils.readAdjacencies()) {
+      String[] parts = line.split(",");
+      for (int i = 1; i < parts.length; i++) {
+        if (graph.containsNode(parts[0]) && graph.containsNode(parts[i])) {
+          graph.addEdge(parts[0], parts[i]);
+        }
+      }
+    }
+    graph.freeze();
+    return graph;
+  }
+
+  /**
+   * Loads the bundled countries, keyed by name.
+   *
+   * @return The countries of the bundled map
+   */
+  public static Map<String, Country> bundledCountries() {
+    Map<String, Country> countries = new HashMap<>();
+    for (String line : Utils.readCountries()) {
+      String[] parts = line.split(",");
+      countries.put(parts[0], new Country(parts[0], parts[1], Integer.parseInt(parts[2])));
+    }
+    return countries;
+  }
+
+  /**
+   * Loads the bundled countries into a registry, numbered in file order like the nodes of {@link
+   * #bundled()}.
+   *
+   * @return The countries of the bundled map
+   */
+  public static CountryRegistry bundledRegistry() {
+    CountryRegistry countries = new CountryRegistry();
+    for (String line : Utils.readCountries()) {
+      String[] parts = line.split(",");
+      countries.put(parts[0], parts[1], Integer.parseInt(parts[2]));
+    }
+    return countries;
+  }
+
+  /**
+   * Generates a grid map with {@link MapGenerator} and loads it the same way {@link MapEngine}
+   * does.
+   *
+   * @param countries The number of countries
+   * @param registry The empty registry to fill with the generated countries
+   * @return The frozen country graph, weighted by fuel cost
+   * @throws IOException if the map files cannot be written or read
+   * @throws MapFormatException if the generated files cannot be parsed
+   */
+  public static Graph<String> generated(int countries, CountryRegistry registry)
+      throws IOException, MapFormatException {
+    Path directory = Files.createTempDirectory("se281-map");
+    new MapGenerator().setCountries(countries).generate(directory);
+    Graph<String> graph =
+        new CsvMapLoader(registry)
+            .load(directory.resolve("countries.csv"), directory.resolve("adjacencies.csv"));
+    graph.setNodeWeights(name -> registry.fuelOf(registry.idOf(name)));
+    return graph;
+  }
+
+  /**
+   * Builds a frozen random graph where every node has up to the given number of outgoing edges to
+   * uniformly chosen nodes (duplicates are dropped). Above an average degree of about 2 it is
+   * almost fully connected. The CSR arrays are filled directly, so even 10M-node maps fit in a few
+   * GB of heap.
+   *
+   * @param nodes The number of nodes
+   * @param degree The number of outgoing edges to try per node
+   * @param seed The random seed, so runs are reproducible
+   * @return The random graph
+   */
+  public static Graph<Integer> random(int nodes, int degree, long seed) {
+    Random random = new Random(seed);
+    List<Integer> ids = new ArrayList<>(nodes);
+    int[] offsets = new int[nodes + 1];
+    int[] targets = new int[nodes * degree];
+    int edge = 0;
+
+    for (int node = 0; node < nodes; node++) {
+      ids.add(node);
+      offsets[node] = edge;
+      for (int j = 0; j < degree; j++) {
+        int target = random.nextInt(nodes);
+        if (!contains(targets, offsets[node], edge, target)) {
+          targets[edge++] = target;
+        }
+      }
+    }
+    offsets[nodes] = edge;
+    return new Graph<>(CsrGraph.of(ids, offsets, Arrays.copyOf(targets, edge)));
+  }
+
+  private static boolean contains(int[] array, int from, int to, int value) {
+    for (int i = from; i < to; i++) {
+      if (array[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
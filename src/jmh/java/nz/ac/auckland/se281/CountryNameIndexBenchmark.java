@@ -0,0 +1,79 @@
+package nz.ac.auckland.se281;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares resolving typed country names with {@link CountryNameIndex} against capitalising them
+ * with {@link Utils#capitalizeFirstLetterOfEachWord} and throwing {@link
+ * CountryNotFoundException} for every miss, as the prompts used to. Half the inputs name no
+ * country, as in scripted input full of typos.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CountryNameIndexBenchmark {
+  private CountryRegistry registry;
+  private CountryNameIndex index;
+  private String[] inputs;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    registry = BenchmarkMaps.bundledRegistry();
+    index = new CountryNameIndex(registry);
+    List<String> typed = new ArrayList<>();
+    for (int id = 0; id < registry.size(); id++) {
+      String name = registry.nameOf(id);
+      typed.add(name.toLowerCase());
+      typed.add(name.substring(1)); // a typo that names no country
+    }
+    inputs = typed.toArray(new String[0]);
+  }
+
+  private String nextInput() {
+    String input = inputs[next];
+    next = (next + 1) % inputs.length;
+    return input;
+  }
+
+  @Benchmark
+  public int capitalizeAndThrow() {
+    String name = Utils.capitalizeFirstLetterOfEachWord(nextInput());
+    try {
+      int id = registry.idOf(name);
+      if (id < 0) {
+        throw new CountryNotFoundException(name);
+      }
+      return id;
+    } catch (CountryNotFoundException e) {
+      return e.getMessage().length();
+    }
+  }
+
+  @Benchmark
+  public int nameIndex() {
+    String input = nextInput();
+    int id = index.idOf(input);
+    return id >= 0 ? id : CountryNameIndex.normalize(input).length();
+  }
+
+  @Benchmark
+  public List<String> suggest() {
+    return index.suggest(nextInput(), 3);
+  }
+}
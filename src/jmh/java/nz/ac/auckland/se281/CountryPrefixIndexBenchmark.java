@@ -0,0 +1,59 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the top ten completions of {@link CountryPrefixIndex} for lower-case prefixes of two to
+ * seven letters, as a front end sends them while a name is typed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CountryPrefixIndexBenchmark {
+  private static final int QUERIES = 1024;
+
+  @Param({"10000", "1000000"})
+  public int countries;
+
+  private CountryPrefixIndex index;
+  private String[] prefixes;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException, MapFormatException {
+    CountryRegistry registry = new CountryRegistry();
+    BenchmarkMaps.generated(countries, registry);
+    index = new CountryPrefixIndex(registry);
+
+    Random random = new Random(42);
+    prefixes = new String[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      String name = registry.nameOf(random.nextInt(registry.size()));
+      prefixes[i] = name.substring(0, Math.min(name.length(), 2 + random.nextInt(6))).toLowerCase();
+    }
+  }
+
+  @Benchmark
+  public List<String> complete() {
+    String prefix = prefixes[next];
+    next = (next + 1) & (QUERIES - 1);
+    return index.complete(prefix, 10);
+  }
+}
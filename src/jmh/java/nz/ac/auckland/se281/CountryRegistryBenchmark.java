@@ -0,0 +1,78 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares resolving a country name with the open-addressing table of a {@link CountryRegistry}
+ * against the two hash maps a name used to go through, one for the node ID and one for the {@link
+ * Country}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CountryRegistryBenchmark {
+  private static final int QUERIES = 4096;
+
+  @Param({"10000", "1000000"})
+  public int countries;
+
+  private CountryRegistry registry;
+  private Map<String, Integer> ids;
+  private Map<String, Country> countryMap;
+  private String[] names;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException, MapFormatException {
+    registry = new CountryRegistry();
+    BenchmarkMaps.generated(countries, registry);
+    ids = new HashMap<>();
+    countryMap = new HashMap<>();
+    for (int id = 0; id < registry.size(); id++) {
+      ids.put(registry.nameOf(id), id);
+      countryMap.put(registry.nameOf(id), registry.countryOf(id));
+    }
+
+    Random random = new Random(42);
+    names = new String[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      names[i] = registry.nameOf(random.nextInt(registry.size()));
+    }
+  }
+
+  private String nextName() {
+    String name = names[next];
+    next = (next + 1) & (QUERIES - 1);
+    return name;
+  }
+
+  @Benchmark
+  public int twoMaps() {
+    String name = nextName();
+    return ids.get(name) + countryMap.get(name).getFuelCost();
+  }
+
+  @Benchmark
+  public int registry() {
+    int id = registry.idOf(nextName());
+    return id + registry.fuelOf(id);
+  }
+}
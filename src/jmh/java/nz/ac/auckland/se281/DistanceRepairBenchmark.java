@@ -0,0 +1,96 @@
+package nz.ac.auckland.se281;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures keeping a BFS distance tree up to date under a stream of random edge flips: repairing
+ * it with {@link DistanceTree#edgeAdded} and {@link DistanceTree#edgeRemoved}, against searching
+ * again from scratch after every flip. Each flip removes one of a fixed set of random edges, or
+ * puts it back if it was already removed, so the graph stays about the same size. Both methods
+ * include the cost of changing the graph itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DistanceRepairBenchmark {
+  private static final int FLIPS = 1024;
+
+  @Param({"100000", "1000000"})
+  public int nodes;
+
+  @Param({"4"})
+  public int degree;
+
+  private Graph<Integer> graph;
+  private DistanceTree<Integer> tree;
+  private int[] froms;
+  private int[] tos;
+  private boolean[] removed;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    graph = BenchmarkMaps.random(nodes, degree, 281);
+    CsrGraph<Integer> csr = graph.snapshot();
+    tree = graph.findDistancesFrom(List.of(0));
+    Random random = new Random(42);
+    froms = new int[FLIPS];
+    tos = new int[FLIPS];
+    removed = new boolean[FLIPS];
+    for (int i = 0; i < FLIPS; i++) {
+      // Pick a random existing edge
+      int from;
+      do {
+        from = random.nextInt(nodes);
+      } while (csr.end(from) == csr.start(from));
+      int edge = csr.start(from) + random.nextInt(csr.end(from) - csr.start(from));
+      froms[i] = from;
+      tos[i] = csr.targetsOf(from)[edge];
+    }
+  }
+
+  /** Flips the next edge of the stream, returning whether it was removed. */
+  private boolean flip(int i) {
+    removed[i] = !removed[i];
+    if (removed[i]) {
+      graph.removeEdge(froms[i], tos[i]);
+    } else {
+      graph.addEdge(froms[i], tos[i]);
+    }
+    return removed[i];
+  }
+
+  @Benchmark
+  public DistanceTree<Integer> repair() {
+    int i = next++ & (FLIPS - 1);
+    if (flip(i)) {
+      tree.edgeRemoved(graph.snapshot(), froms[i], tos[i]);
+    } else {
+      tree.edgeAdded(graph.snapshot(), froms[i], tos[i]);
+    }
+    return tree;
+  }
+
+  /** The baseline, which throws the tree away and searches the whole graph again. */
+  @Benchmark
+  public DistanceTree<Integer> recompute() {
+    flip(next++ & (FLIPS - 1));
+    return graph.findDistancesFrom(List.of(0));
+  }
+}
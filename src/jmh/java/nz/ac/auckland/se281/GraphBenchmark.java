@@ -0,0 +1,58 @@
+package nz.ac.auckland.se281;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Graph#findShortestPath} on the bundled map and on synthetic maps of growing size.
+ * Run with {@code -prof gc} (the default in the jmh profile) to see the allocation per query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GraphBenchmark {
+  private static final int QUERIES = 1024;
+
+  @Param({BenchmarkMaps.BUNDLED, "10000", "1000000", "10000000"})
+  public String map;
+
+  private Graph<Object> graph;
+  private Object[] sources;
+  private Object[] destinations;
+  private int next;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    graph = (Graph<Object>) BenchmarkMaps.byName(map);
+    CsrGraph<Object> csr = graph.snapshot();
+    Random random = new Random(42);
+    sources = new Object[QUERIES];
+    destinations = new Object[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      sources[i] = csr.nodeOf(random.nextInt(csr.nodeCount()));
+      destinations[i] = csr.nodeOf(random.nextInt(csr.nodeCount()));
+    }
+  }
+
+  @Benchmark
+  public List<Object> findShortestPath() {
+    int i = next++ & (QUERIES - 1);
+    return graph.findShortestPath(sources[i], destinations[i]);
+  }
+}
@@ -0,0 +1,69 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares least-fuel queries in a contraction hierarchy ({@link HierarchySearch}), including
+ * unpacking the path, against plain Dijkstra on a generated map. The hierarchy is contracted once
+ * in the setup, whose time is reported by {@link ContractionHierarchy#getBuildMillis()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HierarchySearchBenchmark {
+  private static final int QUERIES = 1024;
+
+  @Param({"100000"})
+  public int countries;
+
+  private DijkstraSearch dijkstra;
+  private HierarchySearch hierarchy;
+  private int[] sources;
+  private int[] destinations;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException, MapFormatException {
+    CsrGraph<String> graph = BenchmarkMaps.generated(countries, new CountryRegistry()).snapshot();
+    dijkstra = new DijkstraSearch(graph);
+    hierarchy = new HierarchySearch(new ContractionHierarchy<>(graph, true));
+
+    Random random = new Random(42);
+    sources = new int[QUERIES];
+    destinations = new int[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      sources[i] = random.nextInt(countries);
+      destinations[i] = random.nextInt(countries);
+    }
+  }
+
+  @Benchmark
+  public int dijkstra() {
+    int i = next++ & (QUERIES - 1);
+    return dijkstra.search(sources[i], destinations[i]) ? dijkstra.tracePath(destinations[i]) : 0;
+  }
+
+  @Benchmark
+  public int hierarchy() {
+    int i = next++ & (QUERIES - 1);
+    return hierarchy.search(sources[i], destinations[i])
+        ? hierarchy.tracePath(destinations[i])
+        : 0;
+  }
+}
@@ -0,0 +1,70 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares least-fuel A* over landmark bounds ({@link AltSearch}) against plain Dijkstra on a
+ * generated map, with 4 or 16 landmarks. Each engine's {@code getSettledCount()} gives the number
+ * of countries a query settled, for checking that the speed-up comes from settling fewer of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LandmarkSearchBenchmark {
+  private static final int QUERIES = 1024;
+
+  @Param({"100000"})
+  public int countries;
+
+  @Param({"4", "16"})
+  public int landmarks;
+
+  private DijkstraSearch dijkstra;
+  private AltSearch alt;
+  private int[] sources;
+  private int[] destinations;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException, MapFormatException {
+    CsrGraph<String> graph = BenchmarkMaps.generated(countries, new CountryRegistry()).snapshot();
+    dijkstra = new DijkstraSearch(graph);
+    alt = new AltSearch(new Landmarks(graph, landmarks, true));
+
+    Random random = new Random(42);
+    sources = new int[QUERIES];
+    destinations = new int[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      sources[i] = random.nextInt(countries);
+      destinations[i] = random.nextInt(countries);
+    }
+  }
+
+  @Benchmark
+  public boolean dijkstra() {
+    int i = next++ & (QUERIES - 1);
+    return dijkstra.search(sources[i], destinations[i]);
+  }
+
+  @Benchmark
+  public boolean landmarks() {
+    int i = next++ & (QUERIES - 1);
+    return alt.search(sources[i], destinations[i]);
+  }
+}
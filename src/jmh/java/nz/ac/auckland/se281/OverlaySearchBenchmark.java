@@ -0,0 +1,82 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares least-fuel queries over a continent overlay ({@link OverlaySearch}), including
+ * unpacking the path, against plain Dijkstra on a generated map, and times measuring one
+ * continent again with {@link ContinentOverlay#withCellsRebuilt}, as a fuel cost change does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OverlaySearchBenchmark {
+  private static final int QUERIES = 1024;
+
+  @Param({"100000"})
+  public int countries;
+
+  private CsrGraph<String> graph;
+  private ContinentOverlay<String> overlay;
+  private DijkstraSearch dijkstra;
+  private OverlaySearch overlaySearch;
+  private int[] sources;
+  private int[] destinations;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException, MapFormatException {
+    CountryRegistry registry = new CountryRegistry();
+    graph = BenchmarkMaps.generated(countries, registry).snapshot();
+    overlay =
+        new ContinentOverlay<>(graph, true, name -> registry.countryOf(name).getContinent());
+    dijkstra = new DijkstraSearch(graph);
+    overlaySearch = new OverlaySearch(overlay);
+
+    Random random = new Random(42);
+    sources = new int[QUERIES];
+    destinations = new int[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      sources[i] = random.nextInt(countries);
+      destinations[i] = random.nextInt(countries);
+    }
+  }
+
+  @Benchmark
+  public int dijkstra() {
+    int i = next++ & (QUERIES - 1);
+    return dijkstra.search(sources[i], destinations[i]) ? dijkstra.tracePath(destinations[i]) : 0;
+  }
+
+  @Benchmark
+  public int overlay() {
+    int i = next++ & (QUERIES - 1);
+    return overlaySearch.search(sources[i], destinations[i])
+        ? overlaySearch.tracePath(destinations[i])
+        : 0;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public ContinentOverlay<String> rebuildOneContinent() {
+    int i = next++ & (QUERIES - 1);
+    return overlay.withCellsRebuilt(graph, sources[i]);
+  }
+}
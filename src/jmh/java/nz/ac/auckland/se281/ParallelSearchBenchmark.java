@@ -0,0 +1,81 @@
+package nz.ac.auckland.se281;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the speed-up of {@link ParallelBreadthFirstSearch} over the sequential {@link
+ * BreadthFirstSearch} on a million-node map, with the search running on a pool of 1, 2, 4, 8 or 16
+ * threads. The map and the queries come from fixed seeds, so runs are reproducible.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ParallelSearchBenchmark {
+  private static final int QUERIES = 64;
+
+  @Param({"1", "2", "4", "8", "16"})
+  public int threads;
+
+  @Param({"1000000"})
+  public int nodes;
+
+  @Param({"4", "32"})
+  public int degree;
+
+  private ForkJoinPool pool;
+  private PathSearch parallel;
+  private PathSearch sequential;
+  private int[] sources;
+  private int[] destinations;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    CsrGraph<?> graph = BenchmarkMaps.random(nodes, degree, 281).snapshot();
+    pool = new ForkJoinPool(threads);
+    parallel = new ParallelBreadthFirstSearch(graph, pool);
+    sequential = new BreadthFirstSearch(graph);
+    Random random = new Random(42);
+    sources = new int[QUERIES];
+    destinations = new int[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      sources[i] = random.nextInt(nodes);
+      destinations[i] = random.nextInt(nodes);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public boolean parallel() {
+    int i = next++ & (QUERIES - 1);
+    return parallel.search(sources[i], destinations[i]);
+  }
+
+  /** The single-threaded baseline, which does not depend on the thread count. */
+  @Benchmark
+  public boolean sequential() {
+    int i = next++ & (QUERIES - 1);
+    return sequential.search(sources[i], destinations[i]);
+  }
+}
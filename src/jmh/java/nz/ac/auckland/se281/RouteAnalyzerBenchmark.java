@@ -0,0 +1,97 @@
+package nz.ac.auckland.se281;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the fuel aggregations of {@link RouteAnalyzer} over every route of the bundled map,
+ * both the three walks over country names and the single {@link FuelTally} pass over node IDs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RouteAnalyzerBenchmark {
+  private RouteAnalyzer analyzer;
+  private RouteAnalyzer denseAnalyzer;
+  private FuelTally tally;
+  private List<List<String>> routes;
+  private List<int[]> idRoutes;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    Map<String, Country> countries = BenchmarkMaps.bundledCountries();
+    Graph<String> graph = BenchmarkMaps.bundled();
+    analyzer = new RouteAnalyzer(countries);
+    graph.setNodeWeights(name -> countries.get(name).getFuelCost());
+    CsrGraph<String> csr = graph.snapshot();
+    denseAnalyzer = new RouteAnalyzer(csr, BenchmarkMaps.bundledRegistry());
+    tally = new FuelTally(denseAnalyzer.getContinentCount());
+
+    // Every route between two different countries, as the route command would print it
+    routes = new ArrayList<>();
+    for (String source : countries.keySet()) {
+      for (String dest : countries.keySet()) {
+        if (!source.equals(dest)) {
+          routes.add(graph.findShortestPath(source, dest));
+        }
+      }
+    }
+    idRoutes = new ArrayList<>();
+    for (List<String> route : routes) {
+      idRoutes.add(route.stream().mapToInt(csr::idOf).toArray());
+    }
+  }
+
+  private List<String> nextRoute() {
+    List<String> route = routes.get(next);
+    next = (next + 1) % routes.size();
+    return route;
+  }
+
+  @Benchmark
+  public int calculateFuelConsumption() {
+    return analyzer.calculateFuelConsumption(nextRoute());
+  }
+
+  @Benchmark
+  public Map<String, Integer> getContinentFuelConsumption() {
+    return analyzer.getContinentFuelConsumption(nextRoute());
+  }
+
+  @Benchmark
+  public String highestFuelContinent() {
+    return analyzer.findHighestFuelContinent(analyzer.getContinentFuelConsumption(nextRoute()));
+  }
+
+  @Benchmark
+  public String allThreeByName() {
+    List<String> route = nextRoute();
+    Map<String, Integer> continentFuel = analyzer.getContinentFuelConsumption(route);
+    return analyzer.calculateFuelConsumption(route)
+        + analyzer.findHighestFuelContinent(continentFuel);
+  }
+
+  @Benchmark
+  public int tallyById() {
+    int[] route = idRoutes.get(next);
+    next = (next + 1) % idRoutes.size();
+    denseAnalyzer.tally(route, route.length, tally);
+    return tally.getTotalFuel() + tally.getHighestContinent();
+  }
+}
@@ -0,0 +1,96 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures route query throughput through one shared {@link RouteService}. Run it with JMH's
+ * {@code -t} option at 1, 2, 4 and so on up to the core count to check that throughput grows with
+ * the number of threads, for example {@code -Djmh.args="RouteServiceBenchmark -t 4"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RouteServiceBenchmark {
+  private static final int QUERIES = 1024;
+
+  @Param({BenchmarkMaps.BUNDLED, "100000"})
+  public String map;
+
+  @Param({"false", "true"})
+  public boolean leastFuel;
+
+  private RouteService service;
+  private String[] sources;
+  private String[] destinations;
+
+  /** The position of each benchmark thread in the query list. */
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+  }
+
+  @Setup
+  public void setUp() throws IOException, MapFormatException {
+    CountryRegistry countries;
+    Graph<String> graph;
+    if (BenchmarkMaps.BUNDLED.equals(map)) {
+      countries = BenchmarkMaps.bundledRegistry();
+      graph = BenchmarkMaps.bundled();
+      CountryRegistry weights = countries;
+      graph.setNodeWeights(name -> weights.fuelOf(weights.idOf(name)));
+    } else {
+      countries = new CountryRegistry();
+      graph = BenchmarkMaps.generated(Integer.parseInt(map), countries);
+    }
+    // Results are not cached, so every call runs a search
+    service = new RouteService(graph, countries, null, null);
+
+    List<String> names = new ArrayList<>();
+    for (int id = 0; id < countries.size(); id++) {
+      names.add(countries.nameOf(id));
+    }
+    Random random = new Random(42);
+    sources = new String[QUERIES];
+    destinations = new String[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      sources[i] = names.get(random.nextInt(names.size()));
+      destinations[i] = names.get(random.nextInt(names.size()));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    service.close();
+  }
+
+  @Benchmark
+  public RouteResult findRoute(Cursor cursor) throws CountryNotFoundException {
+    int i = cursor.next++ & (QUERIES - 1);
+    return service.findRoute(sources[i], destinations[i], leastFuel);
+  }
+
+  @Benchmark
+  public RouteResult submit(Cursor cursor) {
+    int i = cursor.next++ & (QUERIES - 1);
+    return service.submit(sources[i], destinations[i], leastFuel).join();
+  }
+}
@@ -0,0 +1,62 @@
+package nz.ac.auckland.se281;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@link SearchMode} strategies on random point-to-point route queries, on a sparse
+ * map (degree 4, like the bundled map) and a dense, low-diameter one (degree 32).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SearchModeBenchmark {
+  private static final int QUERIES = 1024;
+
+  @Param({"BREADTH_FIRST", "BIDIRECTIONAL", "DIRECTION_OPTIMIZING"})
+  public SearchMode mode;
+
+  @Param({"100000"})
+  public int nodes;
+
+  @Param({"4", "32"})
+  public int degree;
+
+  private Graph<Integer> graph;
+  private int[] sources;
+  private int[] destinations;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    graph = BenchmarkMaps.random(nodes, degree, 281);
+    Random random = new Random(42);
+    sources = new int[QUERIES];
+    destinations = new int[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      sources[i] = random.nextInt(nodes);
+      destinations[i] = random.nextInt(nodes);
+    }
+  }
+
+  @Benchmark
+  public List<Integer> findShortestPath() {
+    int i = next++ & (QUERIES - 1);
+    return graph.findShortestPath(sources[i], destinations[i], mode);
+  }
+}
@@ -0,0 +1,66 @@
+package nz.ac.auckland.se281;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares fuel-weighted Dijkstra search against hop-count BFS on the same queries, to check the
+ * weighted search stays within a small constant factor of BFS.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WeightedSearchBenchmark {
+  private static final int QUERIES = 1024;
+
+  @Param({"100000"})
+  public int nodes;
+
+  private Graph<Integer> graph;
+  private int[] sources;
+  private int[] destinations;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    graph = BenchmarkMaps.random(nodes, BenchmarkMaps.SYNTHETIC_DEGREE, 281);
+    // Fuel costs in the same 0 to 9 range as the bundled map
+    int[] fuel = new Random(7).ints(nodes, 0, 10).toArray();
+    graph.setNodeWeights(node -> fuel[node]);
+
+    Random random = new Random(42);
+    sources = new int[QUERIES];
+    destinations = new int[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      sources[i] = random.nextInt(nodes);
+      destinations[i] = random.nextInt(nodes);
+    }
+  }
+
+  @Benchmark
+  public List<Integer> fewestHops() {
+    int i = next++ & (QUERIES - 1);
+    return graph.findShortestPath(sources[i], destinations[i]);
+  }
+
+  @Benchmark
+  public List<Integer> leastFuel() {
+    int i = next++ & (QUERIES - 1);
+    return graph.findCheapestPath(sources[i], destinations[i]);
+  }
+}
@@ -0,0 +1,174 @@
+package nz.ac.auckland.se281;
+
+import java.util.Arrays;
+
+/**
+ * A* search steered by the landmark lower bounds of a {@link Landmarks} object (ALT). Nodes come
+ * off the heap in order of the distance so far plus the lower bound on the distance left, so the
+ * search heads for the destination and settles far fewer nodes than {@link DijkstraSearch} or
+ * {@link BreadthFirstSearch}, while still finding a path of the same length or cost. Which of
+ * several equally short paths it finds can differ from theirs.
+ *
+ * <p>Distances count hops or sum node weights, whichever the landmarks were measured with. The
+ * working arrays are reused between queries, as in {@link DijkstraSearch}.
+ */
+public class AltSearch implements SearchTree {
+  private Landmarks landmarks;
+  private final IntMinHeap heap;
+  private final int[] distance;
+  private final int[] parent;
+  private final int[] seenGeneration;
+  private final int[] path;
+  private int generation;
+  private int settled;
+
+  /**
+   * Creates a search engine for the graph the landmarks were measured on.
+   *
+   * @param landmarks The landmarks to take lower bounds from
+   */
+  public AltSearch(Landmarks landmarks) {
+    this.landmarks = landmarks;
+    int nodeCount = landmarks.getGraph().nodeCount();
+    this.heap = new IntMinHeap(nodeCount);
+    this.distance = new int[nodeCount];
+    this.parent = new int[nodeCount];
+    this.seenGeneration = new int[nodeCount];
+    this.path = new int[nodeCount];
+  }
+
+  @Override
+  public CsrGraph<?> getGraph() {
+    return landmarks.getGraph();
+  }
+
+  /**
+   * Points the engine at another version of the graph. Distances from an older version are not
+   * valid bounds on a newer one, and measuring them again takes far longer than a query, so this
+   * does not do it: measure landmarks on the new version and pass them to {@link #setLandmarks}.
+   *
+   * @throws IllegalArgumentException if the graph is not the one the landmarks were measured on
+   */
+  @Override
+  public void setGraph(CsrGraph<?> graph) {
+    if (graph != landmarks.getGraph()) {
+      throw new IllegalArgumentException("Landmarks were measured on another version of the graph");
+    }
+  }
+
+  /**
+   * Points the engine at landmarks measured on another version of the graph, keeping the working
+   * arrays it has.
+   *
+   * @param landmarks The landmarks to take lower bounds from now on
+   * @throws IllegalArgumentException if the node count differs from the current graph's
+   */
+  public void setLandmarks(Landmarks landmarks) {
+    if (landmarks.getGraph().nodeCount() != distance.length) {
+      throw new IllegalArgumentException("Graph has a different number of nodes");
+    }
+    this.landmarks = landmarks;
+  }
+
+  /**
+   * Gets the landmarks the search is steered by.
+   *
+   * @return The landmarks
+   */
+  public Landmarks getLandmarks() {
+    return landmarks;
+  }
+
+  /**
+   * Searches for a shortest path from the source to the destination.
+   *
+   * @param source The ID of the starting node
+   * @param dest The ID of the destination node, which cannot be -1
+   * @return true if a path was found
+   */
+  @Override
+  public boolean search(int source, int dest) {
+    nextGeneration();
+    heap.clear();
+    settled = 0;
+    if (landmarks.provesUnreachable(source, dest)) {
+      return false;
+    }
+    CsrGraph<?> graph = landmarks.getGraph();
+    boolean weighted = landmarks.isWeighted();
+
+    seenGeneration[source] = generation;
+    distance[source] = 0;
+    parent[source] = -1;
+    heap.insertOrDecrease(source, landmarks.lowerBound(source, dest));
+
+    while (!heap.isEmpty()) {
+      int node = heap.poll();
+      settled++;
+
+      if (node == dest) {
+        return true;
+      }
+      int[] targets = graph.targetsOf(node);
+      for (int edge = graph.start(node), end = graph.end(node); edge < end; edge++) {
+        int next = targets[edge];
+        int cost = distance[node] + (weighted ? graph.weight(next) : 1);
+        // A bound that skips a landmark can be inconsistent, so a settled node may be reopened
+        if (seenGeneration[next] != generation || cost < distance[next]) {
+          seenGeneration[next] = generation;
+          distance[next] = cost;
+          parent[next] = node;
+          heap.insertOrDecrease(next, cost + landmarks.lowerBound(next, dest));
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the length or cost of the path to a node found by the last search.
+   *
+   * @param node The ID of a reached node
+   * @return The number of hops, or the summed weights of every node after the source
+   */
+  public int distanceTo(int node) {
+    return distance[node];
+  }
+
+  @Override
+  public int parentOf(int node) {
+    return parent[node];
+  }
+
+  /** Gets the number of nodes the last search removed from the heap. */
+  public int getSettledCount() {
+    return settled;
+  }
+
+  @Override
+  public int tracePath(int dest) {
+    int length = 0;
+    for (int n = dest; n >= 0; n = parent[n]) {
+      length++;
+    }
+    int i = length;
+    for (int n = dest; n >= 0; n = parent[n]) {
+      path[--i] = n;
+    }
+    return length;
+  }
+
+  @Override
+  public int pathNode(int index) {
+    return path[index];
+  }
+
+  private void nextGeneration() {
+    generation++;
+    if (generation == 0) {
+      // The stamp wrapped around, so old marks could look current again
+      Arrays.fill(seenGeneration, 0);
+      generation = 1;
+    }
+  }
+}
@@ -0,0 +1,289 @@
+package nz.ac.auckland.se281;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Answers fewest-hop route queries in bulk. Each line of the input is a {@code
+ * source,destination} pair, and one result line is written per query, in input order, as CSV or
+ * JSON.
+ *
+ * <p>The queries are read in blocks. Within a block they are grouped by source, so one BFS tree
+ * from each source answers every query that starts there, and the groups are searched in parallel
+ * on the common fork-join pool. A block's results are written before the next block is read, so
+ * memory stays bounded however long the input is. Country names are resolved by a {@link
+ * CountryNameIndex}, so they are spelt the way the prompts accept them, and the routes are the same
+ * ones the {@code route} command finds.
+ */
+public class BatchRouter {
+  /** The number of queries read, answered and written at a time. */
+  private static final int BLOCK_SIZE = 1 << 16;
+
+  private static final String CSV_HEADER =
+      "source,destination,fuel,highestFuelContinent,route,error";
+
+  /** How each result is written. */
+  public enum Format {
+    /** One CSV row per query, after a header row, with the route's countries joined by ';'. */
+    CSV,
+    /** One JSON object per line. */
+    JSON
+  }
+
+  private final CsrGraph<String> graph;
+  private final CountryRegistry countries;
+  private final CountryNameIndex countryNames;
+  private final RouteAnalyzer routeAnalyzer;
+  // Each group borrows an engine and a tally and returns them, so there is one per busy worker
+  private final Queue<BreadthFirstSearch> searches = new ConcurrentLinkedQueue<>();
+  private final Queue<FuelTally> tallies = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Creates a batch router over one version of the graph.
+   *
+   * @param graph The country graph, with the fuel cost of each country as its node weight
+   * @param countries The countries of the map, for their continents
+   */
+  public BatchRouter(CsrGraph<String> graph, CountryRegistry countries) {
+    this.graph = graph;
+    this.countries = countries;
+    this.countryNames = new CountryNameIndex(countries);
+    this.routeAnalyzer = new RouteAnalyzer(graph, countries);
+  }
+
+  /**
+   * Answers every query in a file.
+   *
+   * @param input The file of {@code source,destination} lines; blank lines are skipped
+   * @param format How to write the results
+   * @param out Where to write the results
+   * @return The number of queries answered
+   * @throws IOException if the input cannot be read or the output cannot be written
+   */
+  public long route(Path input, Format format, Writer out) throws IOException {
+    if (format == Format.CSV) {
+      out.write(CSV_HEADER);
+      out.write('\n');
+    }
+    long count = 0;
+    try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+      List<String> lines = new ArrayList<>(BLOCK_SIZE);
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isBlank()) {
+          continue;
+        }
+        lines.add(line);
+        if (lines.size() == BLOCK_SIZE) {
+          count += routeBlock(lines, format, out);
+          lines.clear();
+        }
+      }
+      count += routeBlock(lines, format, out);
+    }
+    out.flush();
+    return count;
+  }
+
+  /** Answers one block of queries and writes their results in input order. */
+  private int routeBlock(List<String> lines, Format format, Writer out) throws IOException {
+    int size = lines.size();
+    String[] sourceNames = new String[size];
+    String[] destinationNames = new String[size];
+    int[] sources = new int[size];
+    int[] destinations = new int[size];
+    String[] results = new String[size];
+
+    // Sort the valid queries by source, keeping each query's position in the low bits
+    long[] keys = new long[size];
+    int valid = 0;
+    for (int i = 0; i < size; i++) {
+      String line = lines.get(i);
+      int comma = line.indexOf(',');
+      if (comma < 0) {
+        sourceNames[i] = line.trim();
+        destinationNames[i] = "";
+        results[i] = format(format, sourceNames[i], "", null, "expected source,destination");
+        continue;
+      }
+      String source = line.substring(0, comma);
+      String destination = line.substring(comma + 1);
+      sources[i] = nodeOf(source);
+      destinations[i] = nodeOf(destination);
+      sourceNames[i] =
+          sources[i] < 0 ? CountryNameIndex.normalize(source) : graph.nodeOf(sources[i]);
+      destinationNames[i] =
+          destinations[i] < 0
+              ? CountryNameIndex.normalize(destination)
+              : graph.nodeOf(destinations[i]);
+      if (sources[i] < 0 || destinations[i] < 0) {
+        String unknown = sources[i] < 0 ? sourceNames[i] : destinationNames[i];
+        String error = "unknown country: " + unknown;
+        results[i] = format(format, sourceNames[i], destinationNames[i], null, error);
+        continue;
+      }
+      keys[valid++] = ((long) sources[i] << 32) | i;
+    }
+    Arrays.sort(keys, 0, valid);
+
+    // Find where each source's run of queries starts
+    int[] groupStarts = new int[valid + 1];
+    int groups = 0;
+    for (int k = 0; k < valid; k++) {
+      if (k == 0 || (keys[k] >>> 32) != (keys[k - 1] >>> 32)) {
+        groupStarts[groups++] = k;
+      }
+    }
+    groupStarts[groups] = valid;
+
+    int groupCount = groups;
+    IntStream.range(0, groupCount)
+        .parallel()
+        .forEach(
+            g -> {
+              BreadthFirstSearch search = searches.poll();
+              if (search == null) {
+                search = new BreadthFirstSearch(graph);
+              }
+              FuelTally tally = tallies.poll();
+              if (tally == null) {
+                tally = new FuelTally(routeAnalyzer.getContinentCount());
+              }
+              try {
+                int from = groupStarts[g];
+                int to = groupStarts[g + 1];
+                int source = (int) (keys[from] >>> 32);
+                // A lone query can stop at its destination, a group needs the whole tree
+                if (to - from > 1) {
+                  search.search(source, -1);
+                }
+                for (int k = from; k < to; k++) {
+                  int i = (int) keys[k];
+                  boolean reached =
+                      to - from > 1
+                          ? search.isReached(destinations[i])
+                          : search.search(source, destinations[i]);
+                  // The route is read off the BFS tree and tallied in one walk
+                  RouteEvaluation route =
+                      reached
+                          ? routeAnalyzer.evaluateTree(search, destinations[i], tally)
+                          : routeAnalyzer.noRoute(tally);
+                  results[i] = format(format, sourceNames[i], destinationNames[i], route, null);
+                }
+              } finally {
+                searches.offer(search);
+                tallies.offer(tally);
+              }
+            });
+
+    for (String result : results) {
+      out.write(result);
+      out.write('\n');
+    }
+    return size;
+  }
+
+  /** Finds the node of a country from its name as typed, or returns -1 if there is none. */
+  private int nodeOf(String typed) {
+    int id = countryNames.idOf(typed);
+    if (id < 0 || graph.isIndexedBy(countries)) {
+      return id < graph.nodeCount() ? id : -1;
+    }
+    return graph.idOf(countries.nameOf(id));
+  }
+
+  /**
+   * Formats the result of one query, which either has a route or an error. This is where the
+   * route's countries and continents are named.
+   */
+  private String format(
+      Format format, String source, String destination, RouteEvaluation route, String error) {
+    int totalFuel = 0;
+    String highestFuelContinent = null;
+    if (route != null) {
+      totalFuel = route.getTotalFuel();
+      highestFuelContinent = routeAnalyzer.continentName(route.getHighestContinent());
+    }
+
+    StringBuilder sb = new StringBuilder();
+    if (format == Format.CSV) {
+      sb.append(csvField(source)).append(',').append(csvField(destination)).append(',');
+      if (route != null) {
+        sb.append(totalFuel);
+      }
+      sb.append(',').append(csvField(highestFuelContinent)).append(',');
+      sb.append(csvField(route == null ? null : String.join(";", namesOf(route))));
+      sb.append(',').append(csvField(error));
+      return sb.toString();
+    }
+
+    sb.append("{\"source\":").append(jsonString(source));
+    sb.append(",\"destination\":").append(jsonString(destination));
+    if (error != null) {
+      return sb.append(",\"error\":").append(jsonString(error)).append('}').toString();
+    }
+    sb.append(",\"route\":[");
+    for (int i = 0; i < route.getLength(); i++) {
+      sb.append(i > 0 ? "," : "").append(jsonString(graph.nodeOf(route.nodeAt(i))));
+    }
+    sb.append("],\"fuel\":").append(totalFuel).append(",\"continents\":{");
+    for (int i = 0; i < route.getContinentCount(); i++) {
+      sb.append(i > 0 ? "," : "");
+      sb.append(jsonString(routeAnalyzer.continentName(route.continentAt(i))));
+      sb.append(':').append(route.fuelAt(i));
+    }
+    sb.append("},\"highestFuelContinent\":").append(jsonString(highestFuelContinent));
+    return sb.append('}').toString();
+  }
+
+  private List<String> namesOf(RouteEvaluation route) {
+    List<String> names = new ArrayList<>(route.getLength());
+    for (int i = 0; i < route.getLength(); i++) {
+      names.add(graph.nodeOf(route.nodeAt(i)));
+    }
+    return names;
+  }
+
+  /** Quotes a CSV field if it holds a comma, quote or line break. */
+  private static String csvField(String value) {
+    if (value == null) {
+      return "";
+    }
+    if (value.indexOf(',') < 0
+        && value.indexOf('"') < 0
+        && value.indexOf('\n') < 0
+        && value.indexOf('\r') < 0) {
+      return value;
+    }
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+
+  /** Writes a string as a JSON string literal, or null. */
+  private static String jsonString(String value) {
+    if (value == null) {
+      return "null";
+    }
+    StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < 0x20) {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+}
@@ -0,0 +1,178 @@
+package nz.ac.auckland.se281;
+
+import java.util.Arrays;
+
+/**
+ * Breadth-first search that grows one frontier forwards from the source and another backwards from
+ * the destination, always expanding whichever frontier is smaller by one whole level. The search
+ * stops after the first level in which the frontiers touch, and only searches around both ends
+ * instead of a full ball around the source.
+ *
+ * <p>The path has the same length as a one-way BFS, but may pass through different nodes. Ties are
+ * broken deterministically: the first meeting edge scanned with the smallest total length wins,
+ * and levels are scanned in discovery order with edges in CSR order.
+ */
+public class BidirectionalSearch implements PathSearch {
+  private CsrGraph<?> graph;
+  private final int[] forwardQueue;
+  private final int[] backwardQueue;
+  private final int[] forwardParent; // previous node on the way from the source
+  private final int[] backwardNext; // next node on the way to the destination
+  private final int[] forwardDepth;
+  private final int[] backwardDepth;
+  private final int[] forwardSeen;
+  private final int[] backwardSeen;
+  private final int[] path;
+  private int generation;
+  private int meetFrom;
+  private int meetTo;
+
+  /**
+   * Creates a search engine for the given graph.
+   *
+   * @param graph The graph to search
+   */
+  public BidirectionalSearch(CsrGraph<?> graph) {
+    this.graph = graph;
+    int nodeCount = graph.nodeCount();
+    this.forwardQueue = new int[nodeCount];
+    this.backwardQueue = new int[nodeCount];
+    this.forwardParent = new int[nodeCount];
+    this.backwardNext = new int[nodeCount];
+    this.forwardDepth = new int[nodeCount];
+    this.backwardDepth = new int[nodeCount];
+    this.forwardSeen = new int[nodeCount];
+    this.backwardSeen = new int[nodeCount];
+    this.path = new int[nodeCount];
+  }
+
+  @Override
+  public CsrGraph<?> getGraph() {
+    return graph;
+  }
+
+  @Override
+  public void setGraph(CsrGraph<?> graph) {
+    if (graph.nodeCount() != this.graph.nodeCount()) {
+      throw new IllegalArgumentException("Graph has a different number of nodes");
+    }
+    this.graph = graph;
+  }
+
+  @Override
+  public boolean search(int source, int dest) {
+    nextGeneration();
+    if (source == dest) {
+      meetFrom = -1;
+      meetTo = source;
+      backwardNext[source] = -1;
+      return true;
+    }
+
+    int forwardHead = 0;
+    int forwardTail = 0;
+    forwardQueue[forwardTail++] = source;
+    forwardSeen[source] = generation;
+    forwardParent[source] = -1;
+    forwardDepth[source] = 0;
+
+    int backwardHead = 0;
+    int backwardTail = 0;
+    backwardQueue[backwardTail++] = dest;
+    backwardSeen[dest] = generation;
+    backwardNext[dest] = -1;
+    backwardDepth[dest] = 0;
+
+    int best = Integer.MAX_VALUE;
+
+    while (forwardHead < forwardTail && backwardHead < backwardTail) {
+      if (forwardTail - forwardHead <= backwardTail - backwardHead) {
+        // Expand one whole level of the forward frontier along outgoing edges
+        int levelEnd = forwardTail;
+        while (forwardHead < levelEnd) {
+          int node = forwardQueue[forwardHead++];
+          int[] targets = graph.targetsOf(node);
+          for (int edge = graph.start(node), end = graph.end(node); edge < end; edge++) {
+            int next = targets[edge];
+            if (backwardSeen[next] == generation) {
+              int length = forwardDepth[node] + 1 + backwardDepth[next];
+              if (length < best) {
+                best = length;
+                meetFrom = node;
+                meetTo = next;
+              }
+            }
+            if (forwardSeen[next] != generation) {
+              forwardSeen[next] = generation;
+              forwardParent[next] = node;
+              forwardDepth[next] = forwardDepth[node] + 1;
+              forwardQueue[forwardTail++] = next;
+            }
+          }
+        }
+      } else {
+        // Expand one whole level of the backward frontier along incoming edges
+        int levelEnd = backwardTail;
+        while (backwardHead < levelEnd) {
+          int node = backwardQueue[backwardHead++];
+          int[] sources = graph.sourcesOf(node);
+          for (int edge = graph.inStart(node), end = graph.inEnd(node); edge < end; edge++) {
+            int prev = sources[edge];
+            if (forwardSeen[prev] == generation) {
+              int length = forwardDepth[prev] + 1 + backwardDepth[node];
+              if (length < best) {
+                best = length;
+                meetFrom = prev;
+                meetTo = node;
+              }
+            }
+            if (backwardSeen[prev] != generation) {
+              backwardSeen[prev] = generation;
+              backwardNext[prev] = node;
+              backwardDepth[prev] = backwardDepth[node] + 1;
+              backwardQueue[backwardTail++] = prev;
+            }
+          }
+        }
+      }
+      // Every shorter path would have been seen within this level, so the best meeting is final
+      if (best != Integer.MAX_VALUE) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public int tracePath(int dest) {
+    // Source half: follow the forward parents back from the meeting edge
+    int length = 0;
+    for (int n = meetFrom; n >= 0; n = forwardParent[n]) {
+      length++;
+    }
+    int i = length;
+    for (int n = meetFrom; n >= 0; n = forwardParent[n]) {
+      path[--i] = n;
+    }
+    // Destination half: follow the backward links on to the destination
+    for (int n = meetTo; n >= 0; n = backwardNext[n]) {
+      path[length++] = n;
+    }
+    return length;
+  }
+
+  @Override
+  public int pathNode(int index) {
+    return path[index];
+  }
+
+  private void nextGeneration() {
+    generation++;
+    if (generation == 0) {
+      // The stamp wrapped around, so old marks could look current again
+      Arrays.fill(forwardSeen, 0);
+      Arrays.fill(backwardSeen, 0);
+      generation = 1;
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package nz.ac.auckland.se281;
+
+import java.util.Arrays;
+
+/**
+ * Reusable breadth-first search over a {@link CsrGraph}. The queue, parent table and visited marks
+ * are primitive arrays sized once for the graph. Visited marks are stamped with a generation
+ * number, so starting a new search only bumps the generation instead of clearing the arrays, and
+ * repeated searches allocate nothing.
+ *
+ * <p>An instance is not thread-safe; use one per thread.
+ */
+public class BreadthFirstSearch implements SearchTree {
+  private CsrGraph<?> graph;
+  private final int[] queue;
+  private final int[] parent;
+  private final int[] visitedGeneration;
+  private final int[] path;
+  private int generation;
+  private int settled;
+
+  /**
+   * Creates a search engine for the given graph.
+   *
+   * @param graph The graph to search
+   */
+  public BreadthFirstSearch(CsrGraph<?> graph) {
+    this.graph = graph;
+    int nodeCount = graph.nodeCount();
+    this.queue = new int[nodeCount];
+    this.parent = new int[nodeCount];
+    this.visitedGeneration = new int[nodeCount];
+    this.path = new int[nodeCount];
+  }
+
+  @Override
+  public CsrGraph<?> getGraph() {
+    return graph;
+  }
+
+  @Override
+  public void setGraph(CsrGraph<?> graph) {
+    if (graph.nodeCount() != this.graph.nodeCount()) {
+      throw new IllegalArgumentException("Graph has a different number of nodes");
+    }
+    this.graph = graph;
+  }
+
+  /**
+   * Runs a breadth-first search from the source. Neighbours are expanded in edge insertion order,
+   * so the parent of each node is the first node that discovered it, exactly like a queue-based BFS
+   * over the original adjacency sets.
+   *
+   * @param source The ID of the starting node
+   * @param dest The ID of the node to stop at, or -1 to build the whole BFS tree
+   * @return true if the destination was reached (always true when dest is -1)
+   */
+  @Override
+  public boolean search(int source, int dest) {
+    nextGeneration();
+    int head = 0;
+    int tail = 0;
+
+    queue[tail++] = source;
+    visitedGeneration[source] = generation;
+    parent[source] = -1;
+
+    while (head < tail) {
+      int node = queue[head++];
+
+      if (node == dest) {
+        settled = head;
+        return true;
+      }
+      // Explore unvisited neighbours
+      int[] targets = graph.targetsOf(node);
+      for (int edge = graph.start(node), end = graph.end(node); edge < end; edge++) {
+        int next = targets[edge];
+        if (visitedGeneration[next] != generation) {
+          visitedGeneration[next] = generation;
+          parent[next] = node;
+          queue[tail++] = next;
+        }
+      }
+    }
+    settled = head;
+    return dest < 0;
+  }
+
+  /** Gets the number of nodes the last search took off its queue. */
+  public int getSettledCount() {
+    return settled;
+  }
+
+  /**
+   * Checks whether the last search reached a node.
+   *
+   * @param node The ID of the node
+   * @return true if the node was discovered by the last search
+   */
+  public boolean isReached(int node) {
+    return visitedGeneration[node] == generation;
+  }
+
+  /**
+   * Gets the parent of a node in the last search's BFS tree.
+   *
+   * @param node The ID of a reached node
+   * @return The ID of its parent, or -1 for the source
+   */
+  @Override
+  public int parentOf(int node) {
+    return parent[node];
+  }
+
+  /**
+   * Reconstructs the path from the last search's source to a reached node into the internal path
+   * buffer, see {@link #pathNode(int)}.
+   *
+   * @param dest The ID of a reached node
+   * @return The number of nodes on the path, including both ends
+   */
+  @Override
+  public int tracePath(int dest) {
+    int length = 0;
+    for (int n = dest; n >= 0; n = parent[n]) {
+      length++;
+    }
+    // Walk the parents again, filling the buffer from the back so it reads source first
+    int i = length;
+    for (int n = dest; n >= 0; n = parent[n]) {
+      path[--i] = n;
+    }
+    return length;
+  }
+
+  /**
+   * Gets a node of the path built by the last call to {@link #tracePath(int)}.
+   *
+   * @param index The position on the path, 0 being the source
+   * @return The ID of the node at that position
+   */
+  @Override
+  public int pathNode(int index) {
+    return path[index];
+  }
+
+  private void nextGeneration() {
+    generation++;
+    if (generation == 0) {
+      // The stamp wrapped around, so old marks could look current again
+      Arrays.fill(visitedGeneration, 0);
+      generation = 1;
+    }
+  }
+}
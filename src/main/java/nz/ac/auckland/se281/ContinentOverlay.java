@@ -0,0 +1,349 @@
+package nz.ac.auckland.se281;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Two-level overlay of a {@link CsrGraph} partitioned into cells, one per continent. A country
+ * with a border crossing into or out of another continent is a boundary country of its cell, and
+ * for every cell the overlay keeps the cheapest cost between each pair of its boundary countries
+ * that stays inside the cell. {@link OverlaySearch} answers a query with the original borders in
+ * the cells of the source and destination only, and crosses every other continent it passes
+ * through in one step from the boundary country it entered by to the one it leaves by, so a long
+ * route only searches the two end cells and the small graph of boundary countries.
+ *
+ * <p>Edge costs are either 1, counting hops, or the weight of the country entered, the same costs
+ * {@link DijkstraSearch} sums, so a query finds a route of the same cost. The overlay is immutable,
+ * and a change to the graph only invalidates the cells of the countries it touches: a fuel cost
+ * only affects costs inside its own continent, and a border only the boundaries of the continents
+ * at its two ends. {@link #withCellsRebuilt} builds the overlay for a newer version of the graph
+ * by measuring those cells again and sharing the others.
+ *
+ * <p>A cell's costs take memory quadratic in its number of boundary countries, {@code 4 * b * b}
+ * bytes for {@code b} of them: 10,000 take 400 MB. A cell with more than 46,340 would need more
+ * costs than one array holds, and is rejected.
+ *
+ * @param <T> The type of the nodes
+ */
+public class ContinentOverlay<T> {
+  /** The cost between two boundary countries with no path between them inside their cell. */
+  static final int UNREACHED = Integer.MAX_VALUE;
+
+  private final CsrGraph<T> graph;
+  private final boolean weighted;
+  private final int[] cellOf;
+  private final int[] cellStart;
+  private final int[] cellMembers; // the members of cell c are [cellStart[c], cellStart[c + 1])
+  private final int[] slot; // index of a node among its cell's boundary nodes, or -1
+  private final Cell[] cells;
+  private final long buildNanos;
+
+  /** The boundary nodes of one cell and the costs between them. */
+  private static final class Cell {
+    private final int[] boundary;
+    private final int[] costs; // [i * boundary.length + j] = cost from boundary i to boundary j
+
+    private Cell(int[] boundary, int[] costs) {
+      this.boundary = boundary;
+      this.costs = costs;
+    }
+  }
+
+  /**
+   * Partitions the graph by continent and measures every cell, using all available cores.
+   *
+   * @param graph The graph to build the overlay for
+   * @param weighted whether to use the graph's node weights as costs, instead of counting hops
+   * @param continentOf Gives the continent of each node
+   * @throws IllegalArgumentException if weighted costs are asked for on a graph with no weights,
+   *     or a continent has too many boundary countries
+   */
+  public ContinentOverlay(
+      CsrGraph<T> graph, boolean weighted, Function<? super T, String> continentOf) {
+    long startTime = System.nanoTime();
+    if (weighted && !graph.hasWeights()) {
+      throw new IllegalArgumentException("Graph has no node weights");
+    }
+    this.graph = graph;
+    this.weighted = weighted;
+    int nodeCount = graph.nodeCount();
+
+    // Number the continents in order of their first country, then group the countries by them
+    Map<String, Integer> cellIds = new LinkedHashMap<>();
+    this.cellOf = new int[nodeCount];
+    for (int node = 0; node < nodeCount; node++) {
+      String continent = continentOf.apply(graph.nodeOf(node));
+      Integer cell = cellIds.putIfAbsent(continent, cellIds.size());
+      cellOf[node] = cell == null ? cellIds.size() - 1 : cell;
+    }
+    int cellCount = cellIds.size();
+    this.cellStart = new int[cellCount + 1];
+    for (int node = 0; node < nodeCount; node++) {
+      cellStart[cellOf[node] + 1]++;
+    }
+    for (int cell = 0; cell < cellCount; cell++) {
+      cellStart[cell + 1] += cellStart[cell];
+    }
+    this.cellMembers = new int[nodeCount];
+    int[] next = Arrays.copyOf(cellStart, cellCount);
+    for (int node = 0; node < nodeCount; node++) {
+      cellMembers[next[cellOf[node]]++] = node;
+    }
+
+    this.slot = new int[nodeCount];
+    this.cells = new Cell[cellCount];
+    Queue<CellSearch> searches = new ConcurrentLinkedQueue<>();
+    for (int cell = 0; cell < cells.length; cell++) {
+      cells[cell] = measure(graph, cell, slot, searches);
+    }
+    this.buildNanos = System.nanoTime() - startTime;
+  }
+
+  /** Takes the partition of an overlay for another version of the graph, with the given cells. */
+  private ContinentOverlay(
+      ContinentOverlay<?> base, CsrGraph<T> graph, int[] slot, Cell[] cells, long nanos) {
+    this.graph = graph;
+    this.weighted = base.weighted;
+    this.cellOf = base.cellOf;
+    this.cellStart = base.cellStart;
+    this.cellMembers = base.cellMembers;
+    this.slot = slot;
+    this.cells = cells;
+    this.buildNanos = nanos;
+  }
+
+  /**
+   * Builds the overlay for a newer version of the graph in which only the given nodes changed,
+   * measuring again only the cells they belong to. A changed fuel cost touches one node, and an
+   * added or removed border touches the nodes at both of its ends.
+   *
+   * @param graph The newer version, which must have the same nodes in the same order
+   * @param changed The IDs of the nodes whose weight or edges changed
+   * @return The overlay for that version, sharing the unchanged cells with this one
+   * @throws IllegalArgumentException if the node count differs, weighted costs are used and the
+   *     graph has no weights, or a rebuilt continent has too many boundary countries
+   */
+  public ContinentOverlay<T> withCellsRebuilt(CsrGraph<T> graph, int... changed) {
+    boolean[] stale = new boolean[cells.length];
+    for (int node : changed) {
+      stale[cellOf[node]] = true;
+    }
+    return rebuild(graph, stale);
+  }
+
+  private ContinentOverlay<T> rebuild(CsrGraph<T> graph, boolean[] stale) {
+    long startTime = System.nanoTime();
+    if (graph.nodeCount() != cellOf.length) {
+      throw new IllegalArgumentException("Graph has a different number of nodes");
+    }
+    if (weighted && !graph.hasWeights()) {
+      throw new IllegalArgumentException("Graph has no node weights");
+    }
+    int[] newSlot = slot.clone();
+    Cell[] newCells = cells.clone();
+    Queue<CellSearch> searches = new ConcurrentLinkedQueue<>();
+    for (int cell = 0; cell < cells.length; cell++) {
+      if (stale[cell]) {
+        newCells[cell] = measure(graph, cell, newSlot, searches);
+      }
+    }
+    return new ContinentOverlay<>(this, graph, newSlot, newCells, System.nanoTime() - startTime);
+  }
+
+  /**
+   * Finds the boundary nodes of a cell, writing their slots, and measures the costs between them
+   * with one search per boundary node, run in parallel with engines borrowed from the pool.
+   */
+  private Cell measure(CsrGraph<?> graph, int cell, int[] slots, Queue<CellSearch> searches) {
+    int[] boundary = new int[cellStart[cell + 1] - cellStart[cell]];
+    int count = 0;
+    for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+      int node = cellMembers[i];
+      slots[node] = -1;
+      if (crossesOut(graph, node) || crossesIn(graph, node)) {
+        slots[node] = count;
+        boundary[count++] = node;
+      }
+    }
+    int size = count;
+    if ((long) size * size > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException(
+          "Too many boundary countries for one cell's cost table: " + size);
+    }
+    int[] nodes = Arrays.copyOf(boundary, size);
+    int[] costs = new int[size * size];
+    IntStream.range(0, size)
+        .parallel()
+        .forEach(
+            i -> {
+              CellSearch search = searches.poll();
+              if (search == null) {
+                search = new CellSearch(cellOf.length);
+              }
+              search.search(graph, weighted, cellOf, nodes[i], -1);
+              for (int j = 0; j < size; j++) {
+                costs[i * size + j] = search.distanceTo(nodes[j]);
+              }
+              searches.offer(search);
+            });
+    return new Cell(nodes, costs);
+  }
+
+  private boolean crossesOut(CsrGraph<?> graph, int node) {
+    int[] targets = graph.targetsOf(node);
+    for (int edge = graph.start(node), end = graph.end(node); edge < end; edge++) {
+      if (cellOf[targets[edge]] != cellOf[node]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean crossesIn(CsrGraph<?> graph, int node) {
+    int[] sources = graph.sourcesOf(node);
+    for (int edge = graph.inStart(node), end = graph.inEnd(node); edge < end; edge++) {
+      if (cellOf[sources[edge]] != cellOf[node]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Gets the graph the overlay was built for. */
+  public CsrGraph<T> getGraph() {
+    return graph;
+  }
+
+  /** Gets whether edge costs are node weights rather than hops. */
+  public boolean isWeighted() {
+    return weighted;
+  }
+
+  /** Gets the number of cells, one per continent. */
+  public int getCellCount() {
+    return cells.length;
+  }
+
+  /** Gets the number of boundary countries over all cells, the nodes of the overlay graph. */
+  public int getBoundaryCount() {
+    int count = 0;
+    for (Cell cell : cells) {
+      count += cell.boundary.length;
+    }
+    return count;
+  }
+
+  /** Gets how long the overlay took to build, or the last rebuild took, in milliseconds. */
+  public long getBuildMillis() {
+    return buildNanos / 1_000_000;
+  }
+
+  /** Gets the cell a node belongs to. */
+  int cellOf(int node) {
+    return cellOf[node];
+  }
+
+  /** Gets the index of a node among its cell's boundary nodes, or -1 if it is inside the cell. */
+  int slot(int node) {
+    return slot[node];
+  }
+
+  /** Gets the boundary nodes of a cell, indexed by {@link #slot(int)}. */
+  int[] boundary(int cell) {
+    return cells[cell].boundary;
+  }
+
+  /**
+   * Gets the costs between a cell's boundary nodes inside the cell, the cost from slot {@code i}
+   * to slot {@code j} being at {@code i * boundary(cell).length + j}, or {@link #UNREACHED}.
+   */
+  int[] costs(int cell) {
+    return cells[cell].costs;
+  }
+
+  /**
+   * Searches inside the cell of a node from that node until another node of the cell is settled.
+   *
+   * @param search The search to run, which then holds the path to the other node
+   * @param from The node to search from
+   * @param to The node to stop at
+   */
+  void searchCell(CellSearch search, int from, int to) {
+    search.search(graph, weighted, cellOf, from, to);
+  }
+
+  /**
+   * Dijkstra confined to the nodes of one cell, for measuring a cell and for unpacking a crossing
+   * of it back into countries. The working arrays are reused between searches, as in {@link
+   * DijkstraSearch}, so it is not thread-safe.
+   */
+  static final class CellSearch {
+    private final IntMinHeap heap;
+    private final int[] distance;
+    private final int[] parent;
+    private final int[] seenGeneration;
+    private int generation;
+
+    CellSearch(int nodeCount) {
+      this.heap = new IntMinHeap(nodeCount);
+      this.distance = new int[nodeCount];
+      this.parent = new int[nodeCount];
+      this.seenGeneration = new int[nodeCount];
+    }
+
+    /**
+     * Searches from a node over the nodes of its own cell.
+     *
+     * @param stop The node to stop at once it is settled, or -1 to search the whole cell
+     */
+    void search(CsrGraph<?> graph, boolean weighted, int[] cellOf, int source, int stop) {
+      generation++;
+      if (generation == 0) {
+        // The stamp wrapped around, so old marks could look current again
+        Arrays.fill(seenGeneration, 0);
+        generation = 1;
+      }
+      heap.clear();
+      int cell = cellOf[source];
+      seenGeneration[source] = generation;
+      distance[source] = 0;
+      parent[source] = -1;
+      heap.insertOrDecrease(source, 0);
+      while (!heap.isEmpty()) {
+        int node = heap.poll();
+        if (node == stop) {
+          return;
+        }
+        int[] targets = graph.targetsOf(node);
+        for (int edge = graph.start(node), end = graph.end(node); edge < end; edge++) {
+          int next = targets[edge];
+          if (cellOf[next] != cell) {
+            continue;
+          }
+          int cost = distance[node] + (weighted ? graph.weight(next) : 1);
+          if (seenGeneration[next] != generation || cost < distance[next]) {
+            seenGeneration[next] = generation;
+            distance[next] = cost;
+            parent[next] = node;
+            heap.insertOrDecrease(next, cost);
+          }
+        }
+      }
+    }
+
+    /** Gets the cost of the cheapest path to a node inside the cell, or {@link #UNREACHED}. */
+    int distanceTo(int node) {
+      return seenGeneration[node] == generation ? distance[node] : UNREACHED;
+    }
+
+    /** Gets the node before a reached node on its cheapest path, or -1 for the source. */
+    int parent(int node) {
+      return parent[node];
+    }
+  }
+}
@@ -0,0 +1,365 @@
+package nz.ac.auckland.se281;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Contraction Hierarchy over a {@link CsrGraph}, for shortest-path queries that only look at a
+ * tiny part of a huge map. Every node is given a rank by contracting the nodes one by one, lowest
+ * priority first: a contracted node is taken out of the graph, and wherever it was the only
+ * shortest way between two of its remaining neighbours a shortcut edge is added between them. The
+ * hierarchy keeps, for every node, its edges to higher-ranked nodes ("up") and from higher-ranked
+ * nodes ("down"), shortcuts included, and {@link HierarchySearch} answers a query by searching
+ * upwards from both ends until the two searches meet. On maps that grow too dense to contract,
+ * the last nodes are left as a core that ranks above the rest and keeps every edge between its
+ * nodes as both up and down edges, so queries fall back to plain Dijkstra inside it.
+ *
+ * <p>Edge costs are either 1, counting hops, or the weight of the node entered, the same costs
+ * {@link DijkstraSearch} sums, so a query finds a path of the same length or cost. Each shortcut
+ * records the node it bypasses, which is how {@link #middleOf} turns it back into original edges.
+ * The contraction itself runs in parallel, see {@link HierarchyBuilder}.
+ *
+ * <p>A hierarchy can be written to a file and read back for the same graph, which is checked by a
+ * fingerprint of its edges and weights. Like {@link MapSnapshot}, the file is a header, big-endian
+ * int sections and a CRC-32C checksum: ranks, then the offsets, other ends, weights and middle
+ * nodes of the up edges, then the same four for the down edges.
+ *
+ * @param <T> The type of the nodes
+ */
+public class ContractionHierarchy<T> {
+  private static final long MAGIC = 0x5345323831434821L; // "SE281CH!" in ASCII
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 48;
+  private static final int CHECKSUM_SIZE = 4;
+  private static final int STRIDE = 3;
+
+  private final CsrGraph<T> graph;
+  private final boolean weighted;
+  private final int[] rank;
+  private final int[] upOffsets;
+  private final int[] upTargets;
+  private final int[] upWeights;
+  private final int[] upMiddles;
+  private final int[] downOffsets;
+  private final int[] downSources;
+  private final int[] downWeights;
+  private final int[] downMiddles;
+  private final int coreSize;
+  private final long buildNanos;
+
+  /**
+   * Contracts the graph into a hierarchy, using all available cores.
+   *
+   * @param graph The graph to contract
+   * @param weighted whether to use the graph's node weights as costs, instead of counting hops
+   * @throws IllegalArgumentException if weighted costs are asked for on a graph with no weights
+   */
+  public ContractionHierarchy(CsrGraph<T> graph, boolean weighted) {
+    long startTime = System.nanoTime();
+    if (weighted && !graph.hasWeights()) {
+      throw new IllegalArgumentException("Graph has no node weights");
+    }
+    this.graph = graph;
+    this.weighted = weighted;
+    HierarchyBuilder builder = new HierarchyBuilder(graph, weighted);
+    builder.contract();
+    this.rank = builder.getRanks();
+    this.coreSize = builder.getCoreSize();
+
+    int[][] up = builder.getUpEdges();
+    this.upOffsets = offsetsOf(up);
+    this.upTargets = new int[upOffsets[rank.length]];
+    this.upWeights = new int[upTargets.length];
+    this.upMiddles = new int[upTargets.length];
+    flatten(up, upOffsets, upTargets, upWeights, upMiddles);
+
+    int[][] down = builder.getDownEdges();
+    this.downOffsets = offsetsOf(down);
+    this.downSources = new int[downOffsets[rank.length]];
+    this.downWeights = new int[downSources.length];
+    this.downMiddles = new int[downSources.length];
+    flatten(down, downOffsets, downSources, downWeights, downMiddles);
+    this.buildNanos = System.nanoTime() - startTime;
+  }
+
+  /** Wraps arrays read back from a file. */
+  private ContractionHierarchy(
+      CsrGraph<T> graph, boolean weighted, int coreSize, int[][] sections, long nanos) {
+    this.graph = graph;
+    this.weighted = weighted;
+    this.coreSize = coreSize;
+    this.rank = sections[0];
+    this.upOffsets = sections[1];
+    this.upTargets = sections[2];
+    this.upWeights = sections[3];
+    this.upMiddles = sections[4];
+    this.downOffsets = sections[5];
+    this.downSources = sections[6];
+    this.downWeights = sections[7];
+    this.downMiddles = sections[8];
+    this.buildNanos = nanos;
+  }
+
+  private static int[] offsetsOf(int[][] edges) {
+    int[] offsets = new int[edges.length + 1];
+    for (int node = 0; node < edges.length; node++) {
+      offsets[node + 1] = offsets[node] + edges[node].length / STRIDE;
+    }
+    return offsets;
+  }
+
+  /** Lays out per-node (other, weight, middle) triples as CSR columns. */
+  private static void flatten(
+      int[][] edges, int[] offsets, int[] others, int[] weights, int[] middles) {
+    for (int node = 0; node < edges.length; node++) {
+      int edge = offsets[node];
+      for (int i = 0; i < edges[node].length; i += STRIDE, edge++) {
+        others[edge] = edges[node][i];
+        weights[edge] = edges[node][i + 1];
+        middles[edge] = edges[node][i + 2];
+      }
+      edges[node] = null; // let the triples go as soon as they are copied
+    }
+  }
+
+  /** Gets the graph the hierarchy was built for. */
+  public CsrGraph<T> getGraph() {
+    return graph;
+  }
+
+  /** Gets whether edge costs are node weights rather than hops. */
+  public boolean isWeighted() {
+    return weighted;
+  }
+
+  /** Gets the number of shortcut edges in the hierarchy. */
+  public int getShortcutCount() {
+    int count = 0;
+    for (int middle : upMiddles) {
+      count += middle >= 0 ? 1 : 0;
+    }
+    for (int middle : downMiddles) {
+      count += middle >= 0 ? 1 : 0;
+    }
+    return count;
+  }
+
+  /**
+   * Gets the number of nodes left uncontracted at the top of the hierarchy, which queries search
+   * like plain Dijkstra. It stays small on road-like maps and grows large on maps with hubs.
+   */
+  public int getCoreSize() {
+    return coreSize;
+  }
+
+  /** Gets how long the hierarchy took to build or read, in milliseconds. */
+  public long getBuildMillis() {
+    return buildNanos / 1_000_000;
+  }
+
+  /** Gets the rank of a node, the order it was contracted in. */
+  int rank(int node) {
+    return rank[node];
+  }
+
+  /** Gets the index of the first up edge of a node, see {@link #upTargets()}. */
+  int upStart(int node) {
+    return upOffsets[node];
+  }
+
+  /** Gets the index just past the last up edge of a node. */
+  int upEnd(int node) {
+    return upOffsets[node + 1];
+  }
+
+  /** Gets the higher-ranked end of every up edge, indexed from {@link #upStart(int)}. */
+  int[] upTargets() {
+    return upTargets;
+  }
+
+  /** Gets the cost of every up edge. */
+  int[] upWeights() {
+    return upWeights;
+  }
+
+  /** Gets the index of the first down edge into a node, see {@link #downSources()}. */
+  int downStart(int node) {
+    return downOffsets[node];
+  }
+
+  /** Gets the index just past the last down edge into a node. */
+  int downEnd(int node) {
+    return downOffsets[node + 1];
+  }
+
+  /** Gets the higher-ranked start of every down edge, indexed from {@link #downStart(int)}. */
+  int[] downSources() {
+    return downSources;
+  }
+
+  /** Gets the cost of every down edge. */
+  int[] downWeights() {
+    return downWeights;
+  }
+
+  /**
+   * Gets the node a hierarchy edge bypasses. A shortcut from one node to another stands for the
+   * two edges into and out of its middle node, which is ranked lower than both ends, so repeating
+   * this until every edge is original turns a path in the hierarchy back into one in the graph.
+   *
+   * @param from The node the edge leaves
+   * @param to The node the edge enters
+   * @return The middle node, or -1 if the edge is an original one
+   * @throws IllegalStateException if the hierarchy has no such edge
+   */
+  int middleOf(int from, int to) {
+    if (rank[from] < rank[to]) {
+      for (int edge = upOffsets[from]; edge < upOffsets[from + 1]; edge++) {
+        if (upTargets[edge] == to) {
+          return upMiddles[edge];
+        }
+      }
+    } else {
+      for (int edge = downOffsets[to]; edge < downOffsets[to + 1]; edge++) {
+        if (downSources[edge] == from) {
+          return downMiddles[edge];
+        }
+      }
+    }
+    throw new IllegalStateException("No hierarchy edge " + from + " -> " + to);
+  }
+
+  /**
+   * Writes the hierarchy to a file. The file is written under a temporary name and then moved
+   * into place, so a reader never sees a half-written hierarchy.
+   *
+   * @param file Where to write the hierarchy
+   * @throws IOException if the file cannot be written
+   */
+  public void write(Path file) throws IOException {
+    Path parent = file.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+    try {
+      CRC32C checksum = new CRC32C();
+      try (CheckedOutputStream checked =
+              new CheckedOutputStream(
+                  new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16), checksum);
+          DataOutputStream out = new DataOutputStream(checked)) {
+        out.writeLong(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(rank.length);
+        out.writeInt(upTargets.length);
+        out.writeInt(downSources.length);
+        out.writeInt(weighted ? 1 : 0);
+        out.writeLong(fingerprint(graph, weighted));
+        out.writeInt(coreSize);
+        out.write(new byte[HEADER_SIZE - out.size()]);
+        for (int[] section :
+            new int[][] {
+              rank, upOffsets, upTargets, upWeights, upMiddles,
+              downOffsets, downSources, downWeights, downMiddles
+            }) {
+          MapSnapshot.writeInts(out, section);
+        }
+        out.writeInt((int) checksum.getValue());
+      }
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Reads a hierarchy back from a file, if it was written for the given graph.
+   *
+   * @param file The file the hierarchy was written to
+   * @param graph The graph the hierarchy must have been built for
+   * @param weighted whether the hierarchy must use node weights as costs
+   * @param <T> The type of the nodes
+   * @return The hierarchy, or null if the file is missing, corrupt, or for another graph
+   * @throws IOException if the file exists but cannot be read
+   */
+  public static <T> ContractionHierarchy<T> read(Path file, CsrGraph<T> graph, boolean weighted)
+      throws IOException {
+    long startTime = System.nanoTime();
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_SIZE + CHECKSUM_SIZE || size > Integer.MAX_VALUE) {
+        return null;
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+
+    int nodeCount = graph.nodeCount();
+    if (buffer.getLong(0) != MAGIC
+        || buffer.getInt(8) != FORMAT_VERSION
+        || buffer.getInt(12) != nodeCount
+        || buffer.getInt(24) != (weighted ? 1 : 0)
+        || (weighted && !graph.hasWeights())
+        || buffer.getLong(28) != fingerprint(graph, weighted)) {
+      return null;
+    }
+    int coreSize = buffer.getInt(36);
+    int upCount = buffer.getInt(16);
+    int downCount = buffer.getInt(20);
+    long expected =
+        HEADER_SIZE + 4L * (3L * nodeCount + 2 + 3L * upCount + 3L * downCount) + CHECKSUM_SIZE;
+    if (buffer.capacity() != expected) {
+      return null;
+    }
+    int checksumAt = buffer.capacity() - CHECKSUM_SIZE;
+    CRC32C checksum = new CRC32C();
+    checksum.update(buffer.slice(0, checksumAt));
+    if ((int) checksum.getValue() != buffer.getInt(checksumAt)) {
+      return null;
+    }
+
+    buffer.position(HEADER_SIZE);
+    int[] lengths = {
+      nodeCount, nodeCount + 1, upCount, upCount, upCount,
+      nodeCount + 1, downCount, downCount, downCount
+    };
+    int[][] sections = new int[lengths.length][];
+    for (int i = 0; i < lengths.length; i++) {
+      sections[i] = MapSnapshot.readInts(buffer, lengths[i]);
+    }
+    long nanos = System.nanoTime() - startTime;
+    return new ContractionHierarchy<>(graph, weighted, coreSize, sections, nanos);
+  }
+
+  /** Checksums a graph's edges, and its weights if they are used, to tie a file to it. */
+  private static long fingerprint(CsrGraph<?> graph, boolean weighted) {
+    CRC32C crc = new CRC32C();
+    ByteBuffer row = ByteBuffer.allocate(1 << 16);
+    for (int node = 0; node < graph.nodeCount(); node++) {
+      int[] targets = graph.targetsOf(node);
+      int end = graph.end(node);
+      if (row.remaining() < 8 * (end - graph.start(node) + 2)) {
+        crc.update(row.flip());
+        row = ByteBuffer.allocate(Math.max(row.capacity(), 8 * (end - graph.start(node) + 2)));
+      }
+      row.putInt(end - graph.start(node));
+      row.putInt(weighted ? graph.weight(node) : 0);
+      for (int edge = graph.start(node); edge < end; edge++) {
+        row.putInt(targets[edge]);
+      }
+    }
+    crc.update(row.flip());
+    return ((long) graph.nodeCount() << 32) | (crc.getValue() & 0xFFFFFFFFL);
+  }
+}
@@ -0,0 +1,329 @@
+package nz.ac.auckland.se281;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Resolves country names as they are typed at the prompts. Input is read the way {@link
+ * Utils#capitalizeFirstLetterOfEachWord} reads it: runs of whitespace count as one space, leading
+ * and trailing whitespace is ignored, and the first letter of each word matches in either case,
+ * while every other letter must match exactly. The input is hashed and compared against the
+ * registry's names one character at a time, so a name that is found costs no regex, no exception
+ * and no allocation.
+ *
+ * <p>Names that are not found can be matched loosely against every country by the trigrams, the
+ * runs of three letters, they share, ignoring case, see {@link #suggest}. The trigram index is
+ * built the first time it is needed, as a sorted array of distinct trigrams with the countries
+ * holding each one back to back, and is then shared by every later query.
+ */
+public class CountryNameIndex {
+  /** Suggestions must share at least this fraction of their combined trigrams with the input. */
+  private static final double MIN_SIMILARITY = 0.25;
+
+  private final CountryRegistry countries;
+  private final Queue<Scores> scores = new ConcurrentLinkedQueue<>();
+  private volatile Trigrams trigrams;
+
+  /**
+   * Creates the index over the countries of a loaded map.
+   *
+   * @param countries The countries, which must not be added to afterwards
+   */
+  public CountryNameIndex(CountryRegistry countries) {
+    this.countries = countries;
+  }
+
+  /**
+   * Finds the country a typed name refers to.
+   *
+   * @param input The name as typed
+   * @return The country's ID, or -1 if no country has that name
+   */
+  public int idOf(CharSequence input) {
+    return countries.idOfTyped(input);
+  }
+
+  /**
+   * Writes a typed name the way it is looked up, the same string {@link
+   * Utils#capitalizeFirstLetterOfEachWord} gives for it, for messages about names not found.
+   *
+   * @param input The name as typed
+   * @return The name with single spaces and each word capitalised
+   */
+  public static String normalize(CharSequence input) {
+    StringBuilder name = new StringBuilder(input.length());
+    boolean wordStart = true;
+    boolean space = false;
+    for (int i = 0; i < input.length(); i++) {
+      char c = input.charAt(i);
+      if (isSpace(c)) {
+        wordStart = true;
+        space = name.length() > 0;
+        continue;
+      }
+      if (space) {
+        name.append(' ');
+        space = false;
+      }
+      name.append(wordStart ? Character.toUpperCase(c) : c);
+      wordStart = false;
+    }
+    return name.toString();
+  }
+
+  /** Gets the {@link String#hashCode} of the normalised input, without making the string. */
+  static int normalizedHash(CharSequence input) {
+    int hash = 0;
+    boolean wordStart = true;
+    boolean space = false;
+    boolean started = false;
+    for (int i = 0; i < input.length(); i++) {
+      char c = input.charAt(i);
+      if (isSpace(c)) {
+        wordStart = true;
+        space = started;
+        continue;
+      }
+      if (space) {
+        hash = 31 * hash + ' ';
+        space = false;
+      }
+      hash = 31 * hash + (wordStart ? Character.toUpperCase(c) : c);
+      wordStart = false;
+      started = true;
+    }
+    return hash;
+  }
+
+  /** Checks whether a name equals the normalised input, without making the string. */
+  static boolean matchesNormalized(String name, CharSequence input) {
+    int at = 0;
+    boolean wordStart = true;
+    boolean space = false;
+    for (int i = 0; i < input.length(); i++) {
+      char c = input.charAt(i);
+      if (isSpace(c)) {
+        wordStart = true;
+        space = at > 0;
+        continue;
+      }
+      if (space) {
+        if (at == name.length() || name.charAt(at++) != ' ') {
+          return false;
+        }
+        space = false;
+      }
+      if (at == name.length() || name.charAt(at++) != (wordStart ? Character.toUpperCase(c) : c)) {
+        return false;
+      }
+      wordStart = false;
+    }
+    return at == name.length();
+  }
+
+  /** The characters {@code split("\\s+")} splits on. */
+  private static boolean isSpace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  /**
+   * Suggests the countries whose names look most like a typed name, for a "did you mean" prompt.
+   * Safe to call from any number of threads at once.
+   *
+   * @param input The name as typed
+   * @param limit The most suggestions to give
+   * @return The names of the closest countries, closest first, or an empty list if none is close
+   * @throws IllegalArgumentException if the limit is negative
+   */
+  public List<String> suggest(CharSequence input, int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Negative suggestion limit: " + limit);
+    }
+    Trigrams index = trigrams;
+    if (index == null) {
+      synchronized (this) {
+        index = trigrams;
+        if (index == null) {
+          index = new Trigrams(countries);
+          trigrams = index;
+        }
+      }
+    }
+    // Each query borrows a set of scores and returns it, so there is one per query in flight
+    Scores borrowed = scores.poll();
+    if (borrowed == null) {
+      borrowed = new Scores(countries.size());
+    }
+    try {
+      return index.suggest(normalize(input), limit, borrowed);
+    } finally {
+      scores.offer(borrowed);
+    }
+  }
+
+  /**
+   * Gets the distinct trigrams of a name, ignoring case. The name is padded with two spaces in
+   * front and one behind, so its first letters and its end count as trigrams too.
+   */
+  private static int[] trigramsOf(String name) {
+    String padded = "  " + name.toLowerCase() + " ";
+    int[] grams = new int[padded.length() - 2];
+    for (int i = 0; i < grams.length; i++) {
+      grams[i] = trigram(padded.charAt(i), padded.charAt(i + 1), padded.charAt(i + 2));
+    }
+    Arrays.sort(grams);
+    int count = 0;
+    for (int i = 0; i < grams.length; i++) {
+      if (i == 0 || grams[i] != grams[i - 1]) {
+        grams[count++] = grams[i];
+      }
+    }
+    return Arrays.copyOf(grams, count);
+  }
+
+  /** Packs three characters into an int, exactly for ASCII and by a hash beyond it. */
+  private static int trigram(char a, char b, char c) {
+    if ((a | b | c) < 0x400) {
+      return (a << 20) | (b << 10) | c;
+    }
+    return ((a * 31 + b) * 31 + c) | Integer.MIN_VALUE;
+  }
+
+  /**
+   * The countries holding each trigram, in compressed-sparse-row form: the sorted distinct
+   * trigrams, and for trigram {@code i} the IDs {@code ids[starts[i]]} up to {@code
+   * ids[starts[i + 1]]}.
+   */
+  private static final class Trigrams {
+    private final CountryRegistry countries;
+    private final int[] grams;
+    private final int[] starts;
+    private final int[] ids;
+    private final short[] gramCounts; // the number of distinct trigrams in each name
+
+    private Trigrams(CountryRegistry countries) {
+      this.countries = countries;
+      int size = countries.size();
+      this.gramCounts = new short[size];
+
+      // Sort every (trigram, ID) pair, so each trigram's IDs end up together and in ID order
+      long[] pairs = new long[16];
+      int pairCount = 0;
+      for (int id = 0; id < size; id++) {
+        int[] nameGrams = trigramsOf(countries.nameOf(id));
+        gramCounts[id] = (short) Math.min(nameGrams.length, Short.MAX_VALUE);
+        if (pairCount + nameGrams.length > pairs.length) {
+          pairs = Arrays.copyOf(pairs, Math.max(pairs.length * 2, pairCount + nameGrams.length));
+        }
+        for (int gram : nameGrams) {
+          pairs[pairCount++] = ((long) gram << 32) | id;
+        }
+      }
+      Arrays.parallelSort(pairs, 0, pairCount);
+
+      int[] distinct = new int[pairCount];
+      int[] gramStarts = new int[pairCount + 1];
+      this.ids = new int[pairCount];
+      int gramCount = 0;
+      for (int i = 0; i < pairCount; i++) {
+        int gram = (int) (pairs[i] >> 32);
+        if (i == 0 || gram != distinct[gramCount - 1]) {
+          gramStarts[gramCount] = i;
+          distinct[gramCount++] = gram;
+        }
+        ids[i] = (int) pairs[i];
+      }
+      gramStarts[gramCount] = pairCount;
+      this.grams = Arrays.copyOf(distinct, gramCount);
+      this.starts = Arrays.copyOf(gramStarts, gramCount + 1);
+    }
+
+    private List<String> suggest(String input, int limit, Scores scores) {
+      if (limit == 0) {
+        return new ArrayList<>();
+      }
+      int[] inputGrams = trigramsOf(input);
+      scores.clear();
+      for (int gram : inputGrams) {
+        int g = Arrays.binarySearch(grams, gram);
+        if (g >= 0) {
+          for (int i = starts[g]; i < starts[g + 1]; i++) {
+            scores.add(ids[i]);
+          }
+        }
+      }
+
+      // Keep the best few by Jaccard similarity, the earlier country winning a tie
+      int[] best = new int[limit];
+      double[] bestScores = new double[limit];
+      int found = 0;
+      for (int i = 0; i < scores.touchedCount; i++) {
+        int id = scores.touched[i];
+        int shared = scores.shared[id];
+        double similarity = (double) shared / (inputGrams.length + gramCounts[id] - shared);
+        boolean full = found == limit;
+        if (similarity < MIN_SIMILARITY
+            || (full && !closer(similarity, id, bestScores[limit - 1], best[limit - 1]))) {
+          continue;
+        }
+        int at = found < limit ? found++ : limit - 1;
+        for (; at > 0 && closer(similarity, id, bestScores[at - 1], best[at - 1]); at--) {
+          best[at] = best[at - 1];
+          bestScores[at] = bestScores[at - 1];
+        }
+        best[at] = id;
+        bestScores[at] = similarity;
+      }
+
+      List<String> names = new ArrayList<>(found);
+      for (int i = 0; i < found; i++) {
+        names.add(countries.nameOf(best[i]));
+      }
+      return names;
+    }
+  }
+
+  private static boolean closer(double similarity, int id, double otherSimilarity, int other) {
+    return similarity > otherSimilarity || (similarity == otherSimilarity && id < other);
+  }
+
+  /**
+   * Pooled counts of the trigrams each country shares with the input, cleared between queries
+   * by stamping them with a generation as {@link DijkstraSearch} does its distances.
+   */
+  private static final class Scores {
+    private final int[] shared;
+    private final int[] seenGeneration;
+    private final int[] touched;
+    private int touchedCount;
+    private int generation;
+
+    private Scores(int size) {
+      this.shared = new int[size];
+      this.seenGeneration = new int[size];
+      this.touched = new int[size];
+    }
+
+    private void clear() {
+      touchedCount = 0;
+      generation++;
+      if (generation == 0) {
+        // The stamp wrapped around, so old marks could look current again
+        Arrays.fill(seenGeneration, 0);
+        generation = 1;
+      }
+    }
+
+    private void add(int id) {
+      if (seenGeneration[id] != generation) {
+        seenGeneration[id] = generation;
+        shared[id] = 0;
+        touched[touchedCount++] = id;
+      }
+      shared[id]++;
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package nz.ac.auckland.se281;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Completes partly typed country names, for type-ahead in front ends. The index is one {@code
+ * int[]} of country IDs sorted by name, ignoring case, so it takes four bytes per country and no
+ * copy of the names: the names themselves stay in the {@link CountryRegistry}. The countries whose
+ * names start with a prefix sit next to each other in that order, so they are found with two
+ * binary searches, and the first few of them are the completions.
+ *
+ * <p>Names compare the way {@link String#CASE_INSENSITIVE_ORDER} compares them, and countries whose
+ * names differ only in case keep their registry order. The index is immutable, so it can be read
+ * from any number of threads at once.
+ */
+public class CountryPrefixIndex {
+  /** Runs of this many IDs are insertion sorted before they are merged. */
+  private static final int RUN = 16;
+
+  private final CountryRegistry countries;
+  private final int[] sorted;
+
+  /**
+   * Sorts the countries of a loaded map by name.
+   *
+   * @param countries The countries, which must not be added to afterwards
+   */
+  public CountryPrefixIndex(CountryRegistry countries) {
+    this.countries = countries;
+    int size = countries.size();
+    this.sorted = new int[size];
+    for (int id = 0; id < size; id++) {
+      sorted[id] = id;
+    }
+    sort(new int[size]);
+  }
+
+  /**
+   * Sorts the IDs by name with a bottom-up merge sort, which keeps the IDs of names that compare
+   * equal in order and, unlike sorting boxed IDs, needs nothing but one scratch array.
+   */
+  private void sort(int[] scratch) {
+    int size = sorted.length;
+    for (int start = 0; start < size; start += RUN) {
+      for (int i = start + 1; i < Math.min(start + RUN, size); i++) {
+        int id = sorted[i];
+        int j = i;
+        for (; j > start && compareNames(sorted[j - 1], id) > 0; j--) {
+          sorted[j] = sorted[j - 1];
+        }
+        sorted[j] = id;
+      }
+    }
+    int[] from = sorted;
+    int[] to = scratch;
+    for (int width = RUN; width < size; width *= 2) {
+      for (int left = 0; left < size; left += 2 * width) {
+        int middle = Math.min(left + width, size);
+        int right = Math.min(left + 2 * width, size);
+        int i = left;
+        int j = middle;
+        for (int k = left; k < right; k++) {
+          to[k] =
+              i < middle && (j == right || compareNames(from[i], from[j]) <= 0)
+                  ? from[i++]
+                  : from[j++];
+        }
+      }
+      int[] swap = from;
+      from = to;
+      to = swap;
+    }
+    if (from != sorted) {
+      System.arraycopy(from, 0, sorted, 0, size);
+    }
+  }
+
+  private int compareNames(int a, int b) {
+    return String.CASE_INSENSITIVE_ORDER.compare(countries.nameOf(a), countries.nameOf(b));
+  }
+
+  /**
+   * Gets the first few countries, in name order, whose names start with a prefix.
+   *
+   * @param prefix The start of a name, in any case
+   * @param limit The most completions to give
+   * @return The names of the completions, or an empty list if no name starts with the prefix
+   * @throws IllegalArgumentException if the limit is negative
+   */
+  public List<String> complete(String prefix, int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Negative completion limit: " + limit);
+    }
+    int first = firstWith(prefix);
+    List<String> names = new ArrayList<>(Math.min(limit, 16));
+    for (int i = first; i < sorted.length && names.size() < limit; i++) {
+      String name = countries.nameOf(sorted[i]);
+      if (comparePrefix(name, prefix) != 0) {
+        break;
+      }
+      names.add(name);
+    }
+    return names;
+  }
+
+  /**
+   * Counts the countries whose names start with a prefix.
+   *
+   * @param prefix The start of a name, in any case
+   * @return The number of countries
+   */
+  public int countCompletions(String prefix) {
+    int first = firstWith(prefix);
+    int low = first;
+    int high = sorted.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (comparePrefix(countries.nameOf(sorted[middle]), prefix) <= 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low - first;
+  }
+
+  /** Finds the first position whose name does not sort before the prefix. */
+  private int firstWith(String prefix) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (comparePrefix(countries.nameOf(sorted[middle]), prefix) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Compares the start of a name with a prefix, folding case as {@link
+   * String#CASE_INSENSITIVE_ORDER} does.
+   *
+   * @return 0 if the name starts with the prefix, otherwise the sign of the name against it
+   */
+  private static int comparePrefix(String name, String prefix) {
+    int length = Math.min(name.length(), prefix.length());
+    for (int i = 0; i < length; i++) {
+      char a = name.charAt(i);
+      char b = prefix.charAt(i);
+      if (a != b) {
+        a = Character.toLowerCase(Character.toUpperCase(a));
+        b = Character.toLowerCase(Character.toUpperCase(b));
+        if (a != b) {
+          return a - b;
+        }
+      }
+    }
+    return name.length() < prefix.length() ? -1 : 0;
+  }
+}
@@ -0,0 +1,265 @@
+package nz.ac.auckland.se281;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The countries of a map, numbered with dense int IDs in the order they are loaded. Names, the
+ * continent each country is in and fuel costs are kept in parallel arrays indexed by ID, and the
+ * continents are numbered the same way, so going from an ID to a country or its continent is an
+ * array access. Names are found through an open-addressing table of IDs, which is the only name
+ * index of a loaded map: a {@link CsrGraph} made with {@link CsrGraph#of(CountryRegistry, int[],
+ * int[])} looks its nodes up here instead of keeping a map of its own.
+ *
+ * <p>Countries are only added while the map is loaded. After that the registry can be read from
+ * any number of threads, and only fuel costs change. Route queries take their fuel costs from the
+ * node weights of a graph version, so a reader of {@link #fuelOf} can see a new cost before or
+ * after the graph version that carries it.
+ */
+public class CountryRegistry {
+  private String[] names;
+  private short[] continentIds;
+  private int[] fuelCosts;
+  private int size;
+  private long[] slots; // hash << 32 | (ID + 1), or 0 for an empty slot
+  private String[] continentNames = new String[8];
+  private final Map<String, Integer> continentIndex = new HashMap<>();
+
+  /** Creates an empty registry. */
+  public CountryRegistry() {
+    this(16);
+  }
+
+  /**
+   * Creates an empty registry with room for a number of countries before its arrays grow.
+   *
+   * @param expectedSize The number of countries expected
+   */
+  public CountryRegistry(int expectedSize) {
+    int capacity = Math.max(expectedSize, 16);
+    this.names = new String[capacity];
+    this.continentIds = new short[capacity];
+    this.fuelCosts = new int[capacity];
+    this.slots = new long[Integer.highestOneBit(capacity * 2 - 1) * 2];
+  }
+
+  /**
+   * Adds a country with the next free ID, or changes the continent and fuel cost of one that was
+   * already added, which keeps its ID.
+   *
+   * @param name The country's name
+   * @param continent The continent the country is in
+   * @param fuelCost The fuel cost of travelling through the country
+   * @return The country's ID
+   * @throws IllegalArgumentException if the countries span more continents than a short can number
+   */
+  public int put(String name, String continent, int fuelCost) {
+    int continentId = numberContinent(continent);
+    int id = idOf(name);
+    if (id < 0) {
+      id = size++;
+      if (id == names.length) {
+        names = Arrays.copyOf(names, id * 2);
+        continentIds = Arrays.copyOf(continentIds, id * 2);
+        fuelCosts = Arrays.copyOf(fuelCosts, id * 2);
+      }
+      names[id] = name;
+      if (size * 2 > slots.length) {
+        rehash();
+      }
+      insert(((long) name.hashCode() << 32) | (id + 1));
+    }
+    continentIds[id] = (short) continentId;
+    fuelCosts[id] = fuelCost;
+    return id;
+  }
+
+  /** Gets the ID of a continent, numbering it if it is new. */
+  private int numberContinent(String continent) {
+    Integer known = continentIndex.get(continent);
+    if (known != null) {
+      return known;
+    }
+    int id = continentIndex.size();
+    if (id > Short.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many continents to number");
+    }
+    if (id == continentNames.length) {
+      continentNames = Arrays.copyOf(continentNames, id * 2);
+    }
+    continentNames[id] = continent;
+    continentIndex.put(continent, id);
+    return id;
+  }
+
+  /**
+   * Finds the ID of a country.
+   *
+   * @param name The country's name
+   * @return The ID, or -1 if there is no such country
+   */
+  public int idOf(String name) {
+    int hash = name.hashCode();
+    int mask = slots.length - 1;
+    long entry;
+    for (int slot = slotOf(hash); (entry = slots[slot]) != 0; slot = (slot + 1) & mask) {
+      int id = (int) entry - 1;
+      if ((int) (entry >>> 32) == hash && names[id].equals(name)) {
+        return id;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the ID of a country from its name as typed at a prompt, through the same table as {@link
+   * #idOf}, see {@link CountryNameIndex}.
+   */
+  int idOfTyped(CharSequence input) {
+    int hash = CountryNameIndex.normalizedHash(input);
+    int mask = slots.length - 1;
+    long entry;
+    for (int slot = slotOf(hash); (entry = slots[slot]) != 0; slot = (slot + 1) & mask) {
+      int id = (int) entry - 1;
+      if ((int) (entry >>> 32) == hash && CountryNameIndex.matchesNormalized(names[id], input)) {
+        return id;
+      }
+    }
+    return -1;
+  }
+
+  private void insert(long entry) {
+    int mask = slots.length - 1;
+    int slot = slotOf((int) (entry >>> 32));
+    while (slots[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = entry;
+  }
+
+  private void rehash() {
+    long[] old = slots;
+    slots = new long[old.length * 2];
+    for (long entry : old) {
+      if (entry != 0) {
+        insert(entry);
+      }
+    }
+  }
+
+  /** Picks the home slot of a hash from its top bits after a Fibonacci multiply. */
+  private int slotOf(int hash) {
+    return (hash * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(slots.length));
+  }
+
+  /**
+   * Gets the number of countries.
+   *
+   * @return The number of countries, one more than the highest ID
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets a country by ID. The {@link Country} is made on each call from the registry's arrays.
+   *
+   * @param id The country's ID
+   * @return The country
+   */
+  public Country countryOf(int id) {
+    return new Country(names[id], continentNames[continentIds[id]], fuelCosts[id]);
+  }
+
+  /**
+   * Gets a country by name.
+   *
+   * @param name The country's name
+   * @return The country, or null if there is no such country
+   */
+  public Country countryOf(String name) {
+    int id = idOf(name);
+    return id < 0 ? null : countryOf(id);
+  }
+
+  /**
+   * Gets the name of a country.
+   *
+   * @param id The country's ID
+   * @return The name
+   */
+  public String nameOf(int id) {
+    return names[id];
+  }
+
+  /**
+   * Gets the continent a country is in.
+   *
+   * @param id The country's ID
+   * @return The continent's ID, see {@link #continentName(int)}
+   */
+  public int continentOf(int id) {
+    return continentIds[id];
+  }
+
+  /**
+   * Gets the fuel cost of travelling through a country.
+   *
+   * @param id The country's ID
+   * @return The fuel cost
+   */
+  public int fuelOf(int id) {
+    return fuelCosts[id];
+  }
+
+  /**
+   * Changes the fuel cost of travelling through a country.
+   *
+   * @param id The country's ID
+   * @param fuelCost The new fuel cost
+   */
+  public void setFuelCost(int id, int fuelCost) {
+    fuelCosts[id] = fuelCost;
+  }
+
+  /**
+   * Gets the number of continents, numbered in the order their first country was added.
+   *
+   * @return The number of continents
+   */
+  public int getContinentCount() {
+    return continentIndex.size();
+  }
+
+  /**
+   * Gets the name of a continent.
+   *
+   * @param continent The continent's ID
+   * @return The continent name
+   */
+  public String continentName(int continent) {
+    return continentNames[continent];
+  }
+
+  /**
+   * Finds the ID of a continent.
+   *
+   * @param continent The continent name
+   * @return The ID, or -1 if no country was added in that continent
+   */
+  public int continentIdOf(String continent) {
+    Integer id = continentIndex.get(continent);
+    return id == null ? -1 : id;
+  }
+
+  /** Gets the name array, indexed by ID, for a graph to share as its nodes. */
+  String[] names() {
+    return names;
+  }
+
+  /** Gets the continent ID array, indexed by country ID, for an analyzer to share. */
+  short[] continentIds() {
+    return continentIds;
+  }
+}
@@ -0,0 +1,681 @@
+package nz.ac.auckland.se281;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * Immutable compressed-sparse-row (CSR) form of a {@link Graph}. Every node gets a dense int ID in
+ * insertion order, and the neighbours of each node are stored back to back in the order the edges
+ * were added.
+ *
+ * <p>The rows are split into blocks of {@value #BLOCK_SIZE} consecutive nodes, each with its own
+ * offset and target arrays, so the neighbours of node {@code u} are {@code targetsOf(u)[start(u)]}
+ * up to (but excluding) {@code targetsOf(u)[end(u)]}. Changing the graph with {@link #withEdge},
+ * {@link #withoutEdge}, {@link #withNode} or {@link #withWeight} gives a new version that copies
+ * only the blocks it touches and shares all the others, so older versions stay valid and unchanged
+ * for whoever is still reading them.
+ *
+ * @param <T> The type of the nodes
+ */
+public class CsrGraph<T> {
+  private static final int BLOCK_SHIFT = 10;
+  private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+  private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+  private final Object[] nodes; // shared between versions, only the first nodeCount are ours
+  private final Map<T, Integer> ids; // shared between versions, may hold IDs past nodeCount
+  private final CountryRegistry registry; // looks the nodes up instead of ids, if not null
+  private final AtomicInteger appended; // how many slots of nodes are taken, across versions
+  private final int nodeCount;
+  private final int edgeCount;
+  private final Block[] blocks;
+  private final boolean weighted;
+  private final int version;
+  private volatile Block[] reverse;
+
+  /**
+   * Builds the CSR arrays from an insertion-ordered adjacency map.
+   *
+   * @param adjacencyMap The adjacency map to compress, iterated in insertion order
+   * @param version The version to stamp the graph with
+   */
+  CsrGraph(Map<T, Set<T>> adjacencyMap, int version) {
+    this.nodeCount = adjacencyMap.size();
+    this.nodes = new Object[Math.max(nodeCount, 1)];
+    this.ids = new ConcurrentHashMap<>(nodeCount * 2);
+    this.registry = null;
+    this.appended = new AtomicInteger(nodeCount);
+
+    // First pass assigns the dense IDs and counts the edges
+    int edges = 0;
+    int id = 0;
+    for (Map.Entry<T, Set<T>> entry : adjacencyMap.entrySet()) {
+      ids.put(entry.getKey(), id);
+      nodes[id++] = entry.getKey();
+      edges += entry.getValue().size();
+    }
+
+    // Second pass lays the neighbours out back to back
+    int[] offsets = new int[nodeCount + 1];
+    int[] targets = new int[edges];
+    int node = 0;
+    int edge = 0;
+    for (Set<T> neighbours : adjacencyMap.values()) {
+      offsets[node++] = edge;
+      for (T neighbour : neighbours) {
+        targets[edge++] = ids.get(neighbour);
+      }
+    }
+    offsets[nodeCount] = edge;
+
+    this.edgeCount = edges;
+    this.blocks = toBlocks(offsets, targets, nodeCount);
+    this.weighted = false;
+    this.version = version;
+  }
+
+  /** Wraps ready-made CSR arrays, indexing the nodes by ID. */
+  private CsrGraph(List<T> nodes, int[] offsets, int[] targets) {
+    this.nodeCount = nodes.size();
+    this.nodes = nodes.toArray(new Object[Math.max(nodeCount, 1)]);
+    this.ids = new ConcurrentHashMap<>(nodeCount * 2);
+    for (int i = 0; i < nodeCount; i++) {
+      ids.put(nodes.get(i), i);
+    }
+    this.registry = null;
+    this.appended = new AtomicInteger(nodeCount);
+    this.edgeCount = targets.length;
+    this.blocks = toBlocks(offsets, targets, nodeCount);
+    this.weighted = false;
+    this.version = 0;
+  }
+
+  /** Assembles a version from its parts, which are shared with other versions. */
+  private CsrGraph(
+      Object[] nodes,
+      Map<T, Integer> ids,
+      CountryRegistry registry,
+      AtomicInteger appended,
+      int nodeCount,
+      int edgeCount,
+      Block[] blocks,
+      boolean weighted,
+      int version,
+      Block[] reverse) {
+    this.nodes = nodes;
+    this.ids = ids;
+    this.registry = registry;
+    this.appended = appended;
+    this.nodeCount = nodeCount;
+    this.edgeCount = edgeCount;
+    this.blocks = blocks;
+    this.weighted = weighted;
+    this.version = version;
+    this.reverse = reverse;
+  }
+
+  /**
+   * Creates a CSR graph straight from its arrays, without building an adjacency map first. This is
+   * how large generated or stored maps are loaded.
+   *
+   * @param nodes The nodes, indexed by ID
+   * @param offsets The start of each node's neighbours in targets, plus the total edge count
+   * @param targets The neighbour IDs of every node, back to back
+   * @param <T> The type of the nodes
+   * @return The CSR graph
+   * @throws IllegalArgumentException if the arrays do not describe a valid graph
+   */
+  public static <T> CsrGraph<T> of(List<T> nodes, int[] offsets, int[] targets) {
+    checkArrays(nodes.size(), offsets, targets);
+    return new CsrGraph<>(nodes, offsets, targets);
+  }
+
+  /**
+   * Creates a CSR graph over the countries of a registry, whose IDs are the node IDs. The graph
+   * finds its nodes by name through the registry and shares its name array, so the map has one
+   * name index rather than one in the registry and another in the graph.
+   *
+   * @param countries The countries, which must not be added to while the graph is in use
+   * @param offsets The start of each country's neighbours in targets, plus the total edge count
+   * @param targets The neighbour IDs of every country, back to back
+   * @return The graph
+   * @throws IllegalArgumentException if the arrays do not describe a valid graph
+   */
+  public static CsrGraph<String> of(CountryRegistry countries, int[] offsets, int[] targets) {
+    int nodeCount = countries.size();
+    checkArrays(nodeCount, offsets, targets);
+    return new CsrGraph<>(
+        countries.names(),
+        null,
+        countries,
+        new AtomicInteger(nodeCount),
+        nodeCount,
+        targets.length,
+        toBlocks(offsets, targets, nodeCount),
+        false,
+        0,
+        null);
+  }
+
+  private static void checkArrays(int nodeCount, int[] offsets, int[] targets) {
+    if (offsets.length != nodeCount + 1
+        || offsets[0] != 0
+        || offsets[nodeCount] != targets.length) {
+      throw new IllegalArgumentException("Offsets do not match the node and edge counts");
+    }
+    for (int i = 0; i < nodeCount; i++) {
+      if (offsets[i] > offsets[i + 1]) {
+        throw new IllegalArgumentException("Offsets decrease at node " + i);
+      }
+    }
+    for (int target : targets) {
+      if (target < 0 || target >= nodeCount) {
+        throw new IllegalArgumentException("Edge to unknown node ID " + target);
+      }
+    }
+  }
+
+  /** Cuts global CSR arrays into blocks of rows. */
+  private static Block[] toBlocks(int[] offsets, int[] targets, int nodeCount) {
+    Block[] blocks = new Block[(nodeCount + BLOCK_MASK) >>> BLOCK_SHIFT];
+    for (int b = 0; b < blocks.length; b++) {
+      int first = b << BLOCK_SHIFT;
+      int rows = Math.min(BLOCK_SIZE, nodeCount - first);
+      int base = offsets[first];
+      int[] blockOffsets = new int[rows + 1];
+      for (int row = 0; row <= rows; row++) {
+        blockOffsets[row] = offsets[first + row] - base;
+      }
+      blocks[b] = new Block(blockOffsets, Arrays.copyOfRange(targets, base, offsets[first + rows]));
+    }
+    return blocks;
+  }
+
+  /**
+   * Creates a copy of this graph with a weight on every node. The adjacency arrays are shared, not
+   * copied.
+   *
+   * @param weight Gives the weight of each node, which must not be negative
+   * @return The weighted graph
+   */
+  public CsrGraph<T> withNodeWeights(ToIntFunction<? super T> weight) {
+    Block[] weightedBlocks = new Block[blocks.length];
+    for (int b = 0; b < blocks.length; b++) {
+      int[] blockWeights = new int[blocks[b].rows()];
+      for (int row = 0; row < blockWeights.length; row++) {
+        T node = nodeOf((b << BLOCK_SHIFT) + row);
+        blockWeights[row] = weight.applyAsInt(node);
+        if (blockWeights[row] < 0) {
+          throw new IllegalArgumentException("Negative weight for node " + node);
+        }
+      }
+      weightedBlocks[b] = new Block(blocks[b].offsets, blocks[b].edges, blockWeights);
+    }
+    return new CsrGraph<>(
+        nodes,
+        ids,
+        registry,
+        appended,
+        nodeCount,
+        edgeCount,
+        weightedBlocks,
+        true,
+        version,
+        reverse);
+  }
+
+  /**
+   * Creates a version of this graph with one more node, which has no edges and a weight of 0.
+   *
+   * @param node The node to add
+   * @return The new version, or this graph if it already has the node
+   */
+  public CsrGraph<T> withNode(T node) {
+    if (idOf(node) >= 0) {
+      return this;
+    }
+    // Append in place when no later version has taken the next slot, otherwise copy the nodes.
+    // The registry only knows the countries it was loaded with, so a node added to a graph it
+    // indexes is always copied into a map of the graph's own
+    Object[] nextNodes = nodes;
+    Map<T, Integer> nextIds = ids;
+    AtomicInteger nextAppended = appended;
+    if (registry != null || !appended.compareAndSet(nodeCount, nodeCount + 1)) {
+      nextNodes = Arrays.copyOf(nodes, nodeCount * 2 + 1, Object[].class);
+      Arrays.fill(nextNodes, nodeCount, nextNodes.length, null);
+      nextIds = new ConcurrentHashMap<>(nodeCount * 2);
+      for (int i = 0; i < nodeCount; i++) {
+        nextIds.put(nodeOf(i), i);
+      }
+      nextAppended = new AtomicInteger(nodeCount + 1);
+    } else if (nodeCount == nodes.length) {
+      nextNodes = Arrays.copyOf(nodes, nodeCount * 2 + 1);
+    }
+    nextNodes[nodeCount] = node;
+    nextIds.put(node, nodeCount);
+
+    return new CsrGraph<>(
+        nextNodes,
+        nextIds,
+        null,
+        nextAppended,
+        nodeCount + 1,
+        edgeCount,
+        withRowAdded(blocks, nodeCount, weighted),
+        weighted,
+        version,
+        reverse == null ? null : withRowAdded(reverse, nodeCount, false));
+  }
+
+  /** Adds an empty row for a new node, in the last block or a new one. */
+  private static Block[] withRowAdded(Block[] blocks, int node, boolean weighted) {
+    int b = node >>> BLOCK_SHIFT;
+    Block[] next = Arrays.copyOf(blocks, b + 1);
+    next[b] = (b < blocks.length ? blocks[b] : Block.empty(weighted)).withRowAdded();
+    return next;
+  }
+
+  /**
+   * Creates a version of this graph with an edge added after the node's existing edges.
+   *
+   * @param from The ID of the node the edge leaves
+   * @param to The ID of the node the edge enters
+   * @return The new version, or this graph if it already has the edge
+   */
+  public CsrGraph<T> withEdge(int from, int to) {
+    Block block = blocks[from >>> BLOCK_SHIFT];
+    int row = from & BLOCK_MASK;
+    if (block.find(row, to) >= 0) {
+      return this;
+    }
+    Block[] nextReverse = null;
+    Block[] incoming = reverse;
+    if (incoming != null) {
+      // Keep the reverse index up to date too, with each node's sources in ascending order
+      Block sources = incoming[to >>> BLOCK_SHIFT];
+      int toRow = to & BLOCK_MASK;
+      int at = sources.offsets[toRow];
+      while (at < sources.offsets[toRow + 1] && sources.edges[at] < from) {
+        at++;
+      }
+      nextReverse = replace(incoming, to >>> BLOCK_SHIFT, sources.withInserted(toRow, at, from));
+    }
+    Block[] nextBlocks =
+        replace(blocks, from >>> BLOCK_SHIFT, block.withInserted(row, block.offsets[row + 1], to));
+    return new CsrGraph<>(
+        nodes,
+        ids,
+        registry,
+        appended,
+        nodeCount,
+        edgeCount + 1,
+        nextBlocks,
+        weighted,
+        version,
+        nextReverse);
+  }
+
+  /**
+   * Creates a version of this graph without an edge. The other edges keep their order.
+   *
+   * @param from The ID of the node the edge leaves
+   * @param to The ID of the node the edge enters
+   * @return The new version, or this graph if it has no such edge
+   */
+  public CsrGraph<T> withoutEdge(int from, int to) {
+    Block block = blocks[from >>> BLOCK_SHIFT];
+    int at = block.find(from & BLOCK_MASK, to);
+    if (at < 0) {
+      return this;
+    }
+    Block[] nextReverse = null;
+    Block[] incoming = reverse;
+    if (incoming != null) {
+      Block sources = incoming[to >>> BLOCK_SHIFT];
+      int toRow = to & BLOCK_MASK;
+      nextReverse =
+          replace(
+              incoming,
+              to >>> BLOCK_SHIFT,
+              sources.withRemoved(toRow, sources.find(toRow, from)));
+    }
+    Block[] nextBlocks =
+        replace(blocks, from >>> BLOCK_SHIFT, block.withRemoved(from & BLOCK_MASK, at));
+    return new CsrGraph<>(
+        nodes,
+        ids,
+        registry,
+        appended,
+        nodeCount,
+        edgeCount - 1,
+        nextBlocks,
+        weighted,
+        version,
+        nextReverse);
+  }
+
+  /**
+   * Creates a version of this graph with a new weight for one node.
+   *
+   * @param node The ID of the node
+   * @param weight The new weight, which must not be negative
+   * @return The new version
+   * @throws IllegalStateException if the graph has no node weights
+   */
+  public CsrGraph<T> withWeight(int node, int weight) {
+    if (!weighted) {
+      throw new IllegalStateException("Graph has no node weights");
+    }
+    if (weight < 0) {
+      throw new IllegalArgumentException("Negative weight for node " + nodeOf(node));
+    }
+    Block block = blocks[node >>> BLOCK_SHIFT];
+    int[] nextWeights = block.weights.clone();
+    nextWeights[node & BLOCK_MASK] = weight;
+    Block[] nextBlocks =
+        replace(blocks, node >>> BLOCK_SHIFT, new Block(block.offsets, block.edges, nextWeights));
+    return new CsrGraph<>(
+        nodes,
+        ids,
+        registry,
+        appended,
+        nodeCount,
+        edgeCount,
+        nextBlocks,
+        weighted,
+        version,
+        reverse);
+  }
+
+  /**
+   * Creates a copy of this graph stamped with another version number. Nothing else is copied.
+   *
+   * @param version The version number, see {@link Graph#getVersion()}
+   * @return The stamped graph
+   */
+  CsrGraph<T> withVersion(int version) {
+    return new CsrGraph<>(
+        nodes,
+        ids,
+        registry,
+        appended,
+        nodeCount,
+        edgeCount,
+        blocks,
+        weighted,
+        version,
+        reverse);
+  }
+
+  private static Block[] replace(Block[] blocks, int index, Block block) {
+    Block[] next = blocks.clone();
+    next[index] = block;
+    return next;
+  }
+
+  public boolean hasWeights() {
+    return weighted;
+  }
+
+  /** Gets the weight of a node, see {@link #withNodeWeights}. */
+  int weight(int node) {
+    return blocks[node >>> BLOCK_SHIFT].weights[node & BLOCK_MASK];
+  }
+
+  /**
+   * Gets the version this graph was stamped with by the {@link Graph} it came from. Results
+   * computed on one version stay valid for every graph with the same version.
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /** Gets the number of nodes in the graph. */
+  public int nodeCount() {
+    return nodeCount;
+  }
+
+  /** Gets the number of directed edges in the graph. */
+  public int edgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * Checks whether the graph looks its nodes up in a registry, so its node IDs are the registry's
+   * country IDs.
+   *
+   * @param countries The registry
+   * @return Whether this version was made over the registry, see {@link #of(CountryRegistry,
+   *     int[], int[])}
+   */
+  boolean isIndexedBy(CountryRegistry countries) {
+    return registry != null && registry == countries;
+  }
+
+  /**
+   * Gets the dense ID of a node.
+   *
+   * @param node The node to look up
+   * @return The ID of the node, or -1 if it is not in the graph
+   */
+  public int idOf(T node) {
+    if (registry != null) {
+      int id = registry.idOf((String) node);
+      return id >= nodeCount ? -1 : id;
+    }
+    Integer id = ids.get(node);
+    return id == null || id >= nodeCount ? -1 : id;
+  }
+
+  /**
+   * Gets the node with the given dense ID.
+   *
+   * @param id The ID of the node
+   * @return The node
+   */
+  @SuppressWarnings("unchecked")
+  public T nodeOf(int id) {
+    if (id >= nodeCount) {
+      throw new IndexOutOfBoundsException("No node with ID " + id);
+    }
+    return (T) nodes[id];
+  }
+
+  /** Gets the array holding the neighbours of the given node, see {@link #start(int)}. */
+  int[] targetsOf(int node) {
+    return blocks[node >>> BLOCK_SHIFT].edges;
+  }
+
+  /** Gets the index in {@link #targetsOf(int)} of the first neighbour of the given node. */
+  int start(int node) {
+    return blocks[node >>> BLOCK_SHIFT].offsets[node & BLOCK_MASK];
+  }
+
+  /** Gets the index in {@link #targetsOf(int)} just past the last neighbour of the given node. */
+  int end(int node) {
+    return blocks[node >>> BLOCK_SHIFT].offsets[(node & BLOCK_MASK) + 1];
+  }
+
+  /** Gets the array holding the nodes with an edge into the given node, see {@link #inStart}. */
+  int[] sourcesOf(int node) {
+    return reverseBlocks()[node >>> BLOCK_SHIFT].edges;
+  }
+
+  /** Gets the index in {@link #sourcesOf(int)} of the first node with an edge into the node. */
+  int inStart(int node) {
+    return reverseBlocks()[node >>> BLOCK_SHIFT].offsets[node & BLOCK_MASK];
+  }
+
+  /** Gets the index in {@link #sourcesOf(int)} just past the last node with an edge into it. */
+  int inEnd(int node) {
+    return reverseBlocks()[node >>> BLOCK_SHIFT].offsets[(node & BLOCK_MASK) + 1];
+  }
+
+  /**
+   * Gets the reverse adjacency, building it on first use. Edges only run one way, so searches that
+   * walk backwards from a destination need their own index of incoming edges. Once built, later
+   * versions keep it up to date block by block.
+   */
+  private Block[] reverseBlocks() {
+    Block[] index = reverse;
+    if (index == null) {
+      // Building twice under a race is harmless, both copies are identical
+      index = buildReverse();
+      reverse = index;
+    }
+    return index;
+  }
+
+  /** Builds the incoming edges in CSR form, with the sources of each node in ascending ID order. */
+  private Block[] buildReverse() {
+    int[] offsets = new int[nodeCount + 1];
+    int[] sources = new int[edgeCount];
+
+    // Count the in-degrees, then turn the counts into start offsets
+    for (Block block : blocks) {
+      for (int edge = 0; edge < block.offsets[block.rows()]; edge++) {
+        offsets[block.edges[edge] + 1]++;
+      }
+    }
+    for (int i = 0; i < nodeCount; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+    int[] next = Arrays.copyOf(offsets, nodeCount);
+    for (int node = 0; node < nodeCount; node++) {
+      int[] targets = targetsOf(node);
+      for (int edge = start(node), end = end(node); edge < end; edge++) {
+        sources[next[targets[edge]]++] = node;
+      }
+    }
+    return toBlocks(offsets, sources, nodeCount);
+  }
+
+  /**
+   * Gets a read-only view of the neighbours of a node, in the order the edges were added.
+   *
+   * @param node The node whose neighbours are wanted
+   * @return The neighbours, or an empty set if the node is not in the graph
+   */
+  public Set<T> neighbours(T node) {
+    int id = idOf(node);
+    if (id < 0) {
+      return Collections.emptySet();
+    }
+    return new NeighbourSet(id);
+  }
+
+  /** Set view over one CSR row, iterated in edge insertion order. */
+  private class NeighbourSet extends AbstractSet<T> {
+    private final int id;
+
+    private NeighbourSet(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      return new Iterator<T>() {
+        private int edge = start(id);
+
+        @Override
+        public boolean hasNext() {
+          return edge < end(id);
+        }
+
+        @Override
+        public T next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          return nodeOf(targetsOf(id)[edge++]);
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return end(id) - start(id);
+    }
+  }
+
+  /**
+   * The rows of up to {@value #BLOCK_SIZE} consecutive nodes, with offsets local to the block.
+   * Blocks are never changed once built; every change makes a new block.
+   */
+  private static final class Block {
+    private final int[] offsets;
+    private final int[] edges;
+    private final int[] weights; // null when the graph is unweighted
+
+    private Block(int[] offsets, int[] edges) {
+      this(offsets, edges, null);
+    }
+
+    private Block(int[] offsets, int[] edges, int[] weights) {
+      this.offsets = offsets;
+      this.edges = edges;
+      this.weights = weights;
+    }
+
+    /** Creates a block with no rows. */
+    private static Block empty(boolean weighted) {
+      return new Block(new int[1], new int[0], weighted ? new int[0] : null);
+    }
+
+    private int rows() {
+      return offsets.length - 1;
+    }
+
+    /** Finds the index of an edge in a row, or returns -1 if the row does not have it. */
+    private int find(int row, int target) {
+      for (int edge = offsets[row]; edge < offsets[row + 1]; edge++) {
+        if (edges[edge] == target) {
+          return edge;
+        }
+      }
+      return -1;
+    }
+
+    private Block withRowAdded() {
+      int rows = rows();
+      int[] nextOffsets = Arrays.copyOf(offsets, rows + 2);
+      nextOffsets[rows + 1] = offsets[rows];
+      int[] nextWeights = weights == null ? null : Arrays.copyOf(weights, rows + 1);
+      return new Block(nextOffsets, edges, nextWeights);
+    }
+
+    /** Inserts an edge into a row at the given index of the edge array. */
+    private Block withInserted(int row, int at, int target) {
+      int[] nextEdges = new int[edges.length + 1];
+      System.arraycopy(edges, 0, nextEdges, 0, at);
+      nextEdges[at] = target;
+      System.arraycopy(edges, at, nextEdges, at + 1, edges.length - at);
+      int[] nextOffsets = offsets.clone();
+      for (int i = row + 1; i < nextOffsets.length; i++) {
+        nextOffsets[i]++;
+      }
+      return new Block(nextOffsets, nextEdges, weights);
+    }
+
+    /** Removes the edge at the given index of the edge array from a row. */
+    private Block withRemoved(int row, int at) {
+      int[] nextEdges = new int[edges.length - 1];
+      System.arraycopy(edges, 0, nextEdges, 0, at);
+      System.arraycopy(edges, at + 1, nextEdges, at, edges.length - at - 1);
+      int[] nextOffsets = offsets.clone();
+      for (int i = row + 1; i < nextOffsets.length; i++) {
+        nextOffsets[i]--;
+      }
+      return new Block(nextOffsets, nextEdges, weights);
+    }
+  }
+}
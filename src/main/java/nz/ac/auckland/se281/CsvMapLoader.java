@@ -0,0 +1,367 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Loads {@code countries.csv} and {@code adjacencies.csv} straight into a frozen {@link Graph}.
+ * Both files are memory-mapped and tokenised in place, without reading lines into strings or
+ * splitting them. Each country name is decoded into a {@code String} exactly once, and neighbour
+ * names are matched against the names already seen by hashing their bytes. The countries are
+ * stored in a {@link CountryRegistry}, which the graph then uses to look its nodes up by name.
+ *
+ * <p>The result is the same as building the graph with {@link Graph#addNode} and {@link
+ * Graph#addEdge}: countries keep their file order, neighbours keep their order of appearance with
+ * duplicates dropped, and rows or neighbours naming unknown countries are skipped.
+ */
+public class CsvMapLoader {
+  /** Files are mapped in windows of at most this many bytes, since a buffer holds at most 2 GB. */
+  private static final int WINDOW_SIZE = 1 << 30;
+
+  private final NameTable countryNames = new NameTable();
+  private final NameTable continentNames = new NameTable();
+  private final List<String> continents = new ArrayList<>();
+  private final CountryRegistry countries;
+
+  // Edges in file order, as parallel arrays of source and target IDs
+  private int[] edgeSources = new int[1024];
+  private int[] edgeTargets = new int[1024];
+  private int edgeCount;
+
+  /**
+   * Creates a loader that stores the countries it reads in the given registry, whose IDs become
+   * the node IDs of the graph.
+   *
+   * @param countries The registry to fill, which must be empty
+   * @throws IllegalArgumentException if the registry already has countries
+   */
+  public CsvMapLoader(CountryRegistry countries) {
+    if (countries.size() != 0) {
+      throw new IllegalArgumentException("Registry already has countries");
+    }
+    this.countries = countries;
+  }
+
+  /**
+   * Loads a map from its two CSV files.
+   *
+   * @param countriesFile The file with one {@code name,continent,fuel} row per country
+   * @param adjacenciesFile The file with one {@code name,neighbour,neighbour,...} row per country
+   * @return The frozen country graph
+   * @throws IOException if a file cannot be read
+   * @throws MapFormatException if a row is malformed
+   */
+  public Graph<String> load(Path countriesFile, Path adjacenciesFile)
+      throws IOException, MapFormatException {
+    new CountryRows(countriesFile).parse();
+    new AdjacencyRows(adjacenciesFile).parse();
+    return new Graph<>(buildCsr());
+  }
+
+  /** Groups the edges by source, keeping their file order and dropping repeats. */
+  private CsrGraph<String> buildCsr() {
+    int nodeCount = countries.size();
+    int[] offsets = new int[nodeCount + 1];
+    for (int i = 0; i < edgeCount; i++) {
+      offsets[edgeSources[i] + 1]++;
+    }
+    for (int i = 0; i < nodeCount; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+    int[] targets = new int[edgeCount];
+    int[] next = Arrays.copyOf(offsets, nodeCount);
+    for (int i = 0; i < edgeCount; i++) {
+      targets[next[edgeSources[i]]++] = edgeTargets[i];
+    }
+    edgeSources = null;
+    edgeTargets = null;
+
+    // Compact each row in place, keeping the first time each neighbour appears
+    int[] seenInRow = new int[nodeCount];
+    int write = 0;
+    for (int node = 0; node < nodeCount; node++) {
+      int start = offsets[node];
+      offsets[node] = write;
+      for (int edge = start; edge < next[node]; edge++) {
+        int target = targets[edge];
+        if (seenInRow[target] != node + 1) {
+          seenInRow[target] = node + 1;
+          targets[write++] = target;
+        }
+      }
+    }
+    offsets[nodeCount] = write;
+    return CsrGraph.of(countries, offsets, Arrays.copyOf(targets, write));
+  }
+
+  private void addEdge(int source, int target) {
+    if (edgeCount == edgeSources.length) {
+      edgeSources = Arrays.copyOf(edgeSources, edgeCount * 2);
+      edgeTargets = Arrays.copyOf(edgeTargets, edgeCount * 2);
+    }
+    edgeSources[edgeCount] = source;
+    edgeTargets[edgeCount] = target;
+    edgeCount++;
+  }
+
+  /**
+   * Walks the rows of a memory-mapped CSV file. The file is mapped one window at a time, and a
+   * row cut off at the end of a window is parsed again from the start of the next one.
+   */
+  private abstract static class Rows {
+    private final Path file;
+    protected MappedByteBuffer buffer;
+    protected long lineNumber;
+
+    private Rows(Path file) {
+      this.file = file;
+    }
+
+    void parse() throws IOException, MapFormatException {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        long size = channel.size();
+        long position = 0;
+        while (position < size) {
+          int length = (int) Math.min(size - position, WINDOW_SIZE);
+          buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+          boolean lastWindow = position + length == size;
+
+          int lineStart = 0;
+          while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && buffer.get(lineEnd) != '\n') {
+              lineEnd++;
+            }
+            if (lineEnd == length && !lastWindow) {
+              if (lineStart == 0) {
+                throw error("row is longer than " + WINDOW_SIZE + " bytes");
+              }
+              break; // The row continues past this window
+            }
+            lineNumber++;
+            int contentEnd = lineEnd;
+            if (contentEnd > lineStart && buffer.get(contentEnd - 1) == '\r') {
+              contentEnd--;
+            }
+            if (contentEnd > lineStart) {
+              parseRow(lineStart, contentEnd);
+            }
+            lineStart = lineEnd + 1;
+          }
+          position += Math.min(lineStart, length);
+        }
+      }
+    }
+
+    /** Parses the row held in {@code buffer} from start (inclusive) to end (exclusive). */
+    abstract void parseRow(int start, int end) throws MapFormatException;
+
+    /** Finds the end of the field starting at the given index. */
+    int fieldEnd(int start, int end) {
+      int i = start;
+      while (i < end && buffer.get(i) != ',') {
+        i++;
+      }
+      return i;
+    }
+
+    MapFormatException error(String problem) {
+      return new MapFormatException(file.getFileName().toString(), lineNumber, problem);
+    }
+  }
+
+  /** Parses {@code name,continent,fuel} rows, adding a country to the registry for each. */
+  private class CountryRows extends Rows {
+    private CountryRows(Path file) {
+      super(file);
+    }
+
+    @Override
+    void parseRow(int start, int end) throws MapFormatException {
+      int nameEnd = fieldEnd(start, end);
+      int continentEnd = nameEnd < end ? fieldEnd(nameEnd + 1, end) : end;
+      if (continentEnd >= end || fieldEnd(continentEnd + 1, end) != end) {
+        throw error("expected 3 fields: name,continent,fuel");
+      }
+      if (nameEnd == start) {
+        throw error("country name is empty");
+      }
+      int fuel = parseFuel(continentEnd + 1, end);
+
+      int continentId = continentNames.intern(buffer, nameEnd + 1, continentEnd);
+      if (continentId == continents.size()) {
+        continents.add(continentNames.decode(continentId));
+      }
+      // The table and the registry number the names alike, so a repeated row keeps its ID
+      int id = countryNames.intern(buffer, start, nameEnd);
+      String name = id == countries.size() ? countryNames.decode(id) : countries.nameOf(id);
+      countries.put(name, continents.get(continentId), fuel);
+    }
+
+    private int parseFuel(int start, int end) throws MapFormatException {
+      if (start == end) {
+        throw error("fuel cost is empty");
+      }
+      long value = 0;
+      for (int i = start; i < end; i++) {
+        int digit = buffer.get(i) - '0';
+        if (digit < 0 || digit > 9) {
+          throw error("fuel cost is not a non-negative integer");
+        }
+        value = value * 10 + digit;
+        if (value > Integer.MAX_VALUE) {
+          throw error("fuel cost is too large");
+        }
+      }
+      return (int) value;
+    }
+  }
+
+  /** Parses {@code name,neighbour,...} rows into edges between known countries. */
+  private class AdjacencyRows extends Rows {
+    private AdjacencyRows(Path file) {
+      super(file);
+    }
+
+    @Override
+    void parseRow(int start, int end) throws MapFormatException {
+      int nameEnd = fieldEnd(start, end);
+      if (nameEnd == start) {
+        throw error("country name is empty");
+      }
+      int source = countryNames.find(buffer, start, nameEnd);
+      if (source < 0) {
+        return; // Skip rows for countries that do not exist
+      }
+      for (int field = nameEnd + 1; field <= end; ) {
+        int fieldEnd = fieldEnd(field, end);
+        int target = countryNames.find(buffer, field, fieldEnd);
+        // Only add neighbours that exist
+        if (target >= 0) {
+          addEdge(source, target);
+        }
+        field = fieldEnd + 1;
+      }
+    }
+  }
+
+  /**
+   * Open-addressing hash table from names, given as byte ranges of a buffer, to dense IDs. The
+   * bytes of every name are copied once into a shared array, so looking a name up needs no
+   * allocation. Each slot packs the name's hash with its ID, so probing past other names touches
+   * only the slot array.
+   */
+  private static class NameTable {
+    private byte[] bytes = new byte[4096];
+    private int byteCount;
+    private int[] starts = new int[64];
+    private long[] slots = new long[128]; // hash << 32 | (ID + 1), or 0 for an empty slot
+    private int size;
+
+    /** Finds the ID of a name, or returns -1 if it has not been added. */
+    int find(MappedByteBuffer buffer, int start, int end) {
+      return find(hash(buffer, start, end), buffer, start, end);
+    }
+
+    private int find(int hash, MappedByteBuffer buffer, int start, int end) {
+      int mask = slots.length - 1;
+      long entry;
+      for (int slot = slotOf(hash); (entry = slots[slot]) != 0; slot = (slot + 1) & mask) {
+        int id = (int) entry - 1;
+        if ((int) (entry >>> 32) == hash && matches(id, buffer, start, end)) {
+          return id;
+        }
+      }
+      return -1;
+    }
+
+    /** Gets the ID of a name, adding it with the next free ID if it is new. */
+    int intern(MappedByteBuffer buffer, int start, int end) {
+      int hash = hash(buffer, start, end);
+      int id = find(hash, buffer, start, end);
+      if (id >= 0) {
+        return id;
+      }
+      id = size++;
+      if (id == starts.length) {
+        starts = Arrays.copyOf(starts, id * 2);
+      }
+      int length = end - start;
+      if (byteCount + length > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, byteCount + length));
+      }
+      buffer.get(start, bytes, byteCount, length);
+      starts[id] = byteCount;
+      byteCount += length;
+      if (size * 2 > slots.length) {
+        rehash();
+      }
+      insert(((long) hash << 32) | (id + 1));
+      return id;
+    }
+
+    /** Decodes a name into a string. */
+    String decode(int id) {
+      return new String(bytes, starts[id], end(id) - starts[id], StandardCharsets.UTF_8);
+    }
+
+    private int end(int id) {
+      return id + 1 < size ? starts[id + 1] : byteCount;
+    }
+
+    private boolean matches(int id, MappedByteBuffer buffer, int start, int end) {
+      int offset = starts[id];
+      if (end(id) - offset != end - start) {
+        return false;
+      }
+      for (int i = start; i < end; i++) {
+        if (bytes[offset++] != buffer.get(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void insert(long entry) {
+      int mask = slots.length - 1;
+      int slot = slotOf((int) (entry >>> 32));
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = entry;
+    }
+
+    private void rehash() {
+      long[] old = slots;
+      slots = new long[old.length * 2];
+      for (long entry : old) {
+        if (entry != 0) {
+          insert(entry);
+        }
+      }
+    }
+
+    /**
+     * Picks the home slot of a hash from its top bits after a Fibonacci multiply, since names that
+     * differ only in their last characters have hashes that differ only in their low bits.
+     */
+    private int slotOf(int hash) {
+      return (hash * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(slots.length));
+    }
+
+    private static int hash(MappedByteBuffer buffer, int start, int end) {
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+        hash = 31 * hash + buffer.get(i);
+      }
+      return hash;
+    }
+  }
+}
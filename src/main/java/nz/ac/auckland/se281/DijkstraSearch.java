@@ -0,0 +1,140 @@
+package nz.ac.auckland.se281;
+
+import java.util.Arrays;
+
+/**
+ * Dijkstra search for the path with the lowest total node weight, using the weights stored in a
+ * {@link CsrGraph}. Moving onto a node costs that node's weight, so the cost of a path is the sum
+ * of the weights of every node after the source. Since every path to the destination pays the
+ * destination's weight, the cheapest path also has the lowest weight over its intermediate nodes.
+ *
+ * <p>Like {@link BreadthFirstSearch}, the working arrays are reused between queries and stale
+ * distances are told apart with a generation stamp. Ties between equally cheap nodes go to the
+ * lower ID.
+ */
+public class DijkstraSearch implements SearchTree {
+  private CsrGraph<?> graph;
+  private final IntMinHeap heap;
+  private final int[] distance;
+  private final int[] parent;
+  private final int[] seenGeneration;
+  private final int[] path;
+  private int generation;
+  private int settled;
+
+  /**
+   * Creates a search engine for the given weighted graph.
+   *
+   * @param graph The graph to search, which must have non-negative node weights
+   * @throws IllegalArgumentException if the graph has no node weights
+   */
+  public DijkstraSearch(CsrGraph<?> graph) {
+    if (!graph.hasWeights()) {
+      throw new IllegalArgumentException("Graph has no node weights");
+    }
+    this.graph = graph;
+    int nodeCount = graph.nodeCount();
+    this.heap = new IntMinHeap(nodeCount);
+    this.distance = new int[nodeCount];
+    this.parent = new int[nodeCount];
+    this.seenGeneration = new int[nodeCount];
+    this.path = new int[nodeCount];
+  }
+
+  @Override
+  public CsrGraph<?> getGraph() {
+    return graph;
+  }
+
+  @Override
+  public void setGraph(CsrGraph<?> graph) {
+    if (graph.nodeCount() != this.graph.nodeCount()) {
+      throw new IllegalArgumentException("Graph has a different number of nodes");
+    }
+    if (!graph.hasWeights()) {
+      throw new IllegalArgumentException("Graph has no node weights");
+    }
+    this.graph = graph;
+  }
+
+  @Override
+  public boolean search(int source, int dest) {
+    nextGeneration();
+    heap.clear();
+    settled = 0;
+
+    seenGeneration[source] = generation;
+    distance[source] = 0;
+    parent[source] = -1;
+    heap.insertOrDecrease(source, 0);
+
+    while (!heap.isEmpty()) {
+      int node = heap.poll();
+      settled++;
+
+      if (node == dest) {
+        return true;
+      }
+      int[] targets = graph.targetsOf(node);
+      for (int edge = graph.start(node), end = graph.end(node); edge < end; edge++) {
+        int next = targets[edge];
+        int cost = distance[node] + graph.weight(next);
+        // Weights are never negative, so settled nodes can never be improved on
+        if (seenGeneration[next] != generation || cost < distance[next]) {
+          seenGeneration[next] = generation;
+          distance[next] = cost;
+          parent[next] = node;
+          heap.insertOrDecrease(next, cost);
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the total weight of the cheapest path to a node found by the last search.
+   *
+   * @param node The ID of a reached node
+   * @return The summed weights of every node after the source, up to and including this one
+   */
+  public int distanceTo(int node) {
+    return distance[node];
+  }
+
+  @Override
+  public int parentOf(int node) {
+    return parent[node];
+  }
+
+  /** Gets the number of nodes the last search removed from the heap. */
+  public int getSettledCount() {
+    return settled;
+  }
+
+  @Override
+  public int tracePath(int dest) {
+    int length = 0;
+    for (int n = dest; n >= 0; n = parent[n]) {
+      length++;
+    }
+    int i = length;
+    for (int n = dest; n >= 0; n = parent[n]) {
+      path[--i] = n;
+    }
+    return length;
+  }
+
+  @Override
+  public int pathNode(int index) {
+    return path[index];
+  }
+
+  private void nextGeneration() {
+    generation++;
+    if (generation == 0) {
+      // The stamp wrapped around, so old marks could look current again
+      Arrays.fill(seenGeneration, 0);
+      generation = 1;
+    }
+  }
+}
@@ -0,0 +1,195 @@
+package nz.ac.auckland.se281;
+
+import java.util.Arrays;
+
+/**
+ * Direction-optimizing breadth-first search (Beamer et al.). Levels are normally expanded top-down,
+ * with each frontier node scanning its outgoing edges. When the frontier grows large, most of those
+ * edges lead to nodes that are already visited, so the search switches to bottom-up: every
+ * unvisited node scans its incoming edges for a parent in the frontier, and stops at the first one
+ * it finds. The search switches back to top-down once the frontier shrinks again.
+ *
+ * <p>During bottom-up levels the frontier is a bitset over the dense node IDs, so checking whether
+ * a node is in it is a single bit test. The visited set is always a bitset.
+ *
+ * <p>The path has the same length as a plain BFS, but may pass through different nodes, since a
+ * bottom-up level gives each node the frontier parent with the smallest ID instead of the first
+ * one dequeued.
+ */
+public class DirectionOptimizingSearch implements PathSearch {
+  /** Go bottom-up once the frontier's edges exceed 1 / ALPHA of the edges left to explore. */
+  private static final int ALPHA = 14;
+
+  /** Go back top-down once the frontier holds fewer than 1 / BETA of the nodes. */
+  private static final int BETA = 24;
+
+  private CsrGraph<?> graph;
+  private final int nodeCount;
+  private int[] queue;
+  private int[] nextQueue;
+  private long[] frontier;
+  private long[] nextFrontier;
+  private final long[] visited;
+  private final int[] parent;
+  private final int[] path;
+  private int bottomUpLevels;
+
+  /**
+   * Creates a search engine for the given graph.
+   *
+   * @param graph The graph to search
+   */
+  public DirectionOptimizingSearch(CsrGraph<?> graph) {
+    this.graph = graph;
+    this.nodeCount = graph.nodeCount();
+    int words = (nodeCount + 63) >>> 6;
+    this.queue = new int[nodeCount];
+    this.nextQueue = new int[nodeCount];
+    this.frontier = new long[words];
+    this.nextFrontier = new long[words];
+    this.visited = new long[words];
+    this.parent = new int[nodeCount];
+    this.path = new int[nodeCount];
+  }
+
+  @Override
+  public CsrGraph<?> getGraph() {
+    return graph;
+  }
+
+  @Override
+  public void setGraph(CsrGraph<?> graph) {
+    if (graph.nodeCount() != this.graph.nodeCount()) {
+      throw new IllegalArgumentException("Graph has a different number of nodes");
+    }
+    this.graph = graph;
+  }
+
+  @Override
+  public boolean search(int source, int dest) {
+    Arrays.fill(visited, 0L);
+    bottomUpLevels = 0;
+    markVisited(source);
+    parent[source] = -1;
+    if (source == dest) {
+      return true;
+    }
+
+    queue[0] = source;
+    int frontierSize = 1;
+    long frontierEdges = outDegree(source);
+    long unexploredEdges = graph.edgeCount() - frontierEdges;
+    boolean bottomUp = false;
+
+    while (frontierSize > 0) {
+      // Pick the direction for this level
+      if (!bottomUp && frontierEdges > unexploredEdges / ALPHA) {
+        Arrays.fill(frontier, 0L);
+        for (int i = 0; i < frontierSize; i++) {
+          frontier[queue[i] >>> 6] |= 1L << queue[i];
+        }
+        bottomUp = true;
+      } else if (bottomUp && frontierSize < nodeCount / BETA) {
+        int size = 0;
+        for (int word = 0; word < frontier.length; word++) {
+          for (long bits = frontier[word]; bits != 0; bits &= bits - 1) {
+            queue[size++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+          }
+        }
+        bottomUp = false;
+      }
+
+      long nextEdges = 0;
+      int nextSize = 0;
+      if (bottomUp) {
+        bottomUpLevels++;
+        Arrays.fill(nextFrontier, 0L);
+        for (int word = 0; word < visited.length; word++) {
+          // Only nodes that are still unvisited look for a parent
+          long unvisited = ~visited[word];
+          if (word == visited.length - 1 && (nodeCount & 63) != 0) {
+            unvisited &= (1L << nodeCount) - 1;
+          }
+          for (; unvisited != 0; unvisited &= unvisited - 1) {
+            int node = (word << 6) + Long.numberOfTrailingZeros(unvisited);
+            int[] sources = graph.sourcesOf(node);
+            for (int edge = graph.inStart(node), end = graph.inEnd(node); edge < end; edge++) {
+              int prev = sources[edge];
+              if ((frontier[prev >>> 6] & (1L << prev)) != 0) {
+                parent[node] = prev;
+                markVisited(node);
+                nextFrontier[word] |= 1L << node;
+                nextSize++;
+                nextEdges += outDegree(node);
+                break;
+              }
+            }
+          }
+        }
+        long[] swap = frontier;
+        frontier = nextFrontier;
+        nextFrontier = swap;
+      } else {
+        for (int i = 0; i < frontierSize; i++) {
+          int node = queue[i];
+          int[] targets = graph.targetsOf(node);
+          for (int edge = graph.start(node), end = graph.end(node); edge < end; edge++) {
+            int next = targets[edge];
+            if ((visited[next >>> 6] & (1L << next)) == 0) {
+              markVisited(next);
+              parent[next] = node;
+              nextQueue[nextSize++] = next;
+              nextEdges += outDegree(next);
+            }
+          }
+        }
+        int[] swap = queue;
+        queue = nextQueue;
+        nextQueue = swap;
+      }
+
+      if ((visited[dest >>> 6] & (1L << dest)) != 0) {
+        return true;
+      }
+      frontierSize = nextSize;
+      frontierEdges = nextEdges;
+      unexploredEdges -= nextEdges;
+    }
+    return false;
+  }
+
+  @Override
+  public int tracePath(int dest) {
+    int length = 0;
+    for (int n = dest; n >= 0; n = parent[n]) {
+      length++;
+    }
+    int i = length;
+    for (int n = dest; n >= 0; n = parent[n]) {
+      path[--i] = n;
+    }
+    return length;
+  }
+
+  @Override
+  public int pathNode(int index) {
+    return path[index];
+  }
+
+  /**
+   * Gets how many levels of the last search were expanded bottom-up.
+   *
+   * @return The number of bottom-up levels
+   */
+  public int getBottomUpLevels() {
+    return bottomUpLevels;
+  }
+
+  private void markVisited(int node) {
+    visited[node >>> 6] |= 1L << node;
+  }
+
+  private int outDegree(int node) {
+    return graph.end(node) - graph.start(node);
+  }
+}
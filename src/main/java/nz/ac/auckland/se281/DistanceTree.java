@@ -0,0 +1,301 @@
+package nz.ac.auckland.se281;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hop distances between a set of seed nodes and every other node, found by one breadth-first
+ * search that starts from all the seeds at once. It costs a single O(V + E) pass however many seeds
+ * there are, instead of one search per seed.
+ *
+ * <p>A tree either runs forwards, giving each node's distance from its nearest seed, or backwards
+ * along incoming edges, giving each node's distance to its nearest seed. The distances and parents
+ * are indexed by the dense IDs of {@link #getGraph()}. Seeds are queued in the order given and
+ * edges are expanded in CSR order, so ties between equally near seeds always go the same way.
+ *
+ * <p>When an edge is added to or removed from the graph, {@link #edgeAdded} and {@link
+ * #edgeRemoved} repair the tree in place instead of searching again. An added edge only pushes
+ * the distances that it shortens, outwards from its far end. A removed edge that is not a tree
+ * edge changes nothing; a removed tree edge only re-settles the subtree that hung from it, seeded
+ * with the best distances reachable from outside that subtree (Ramalingam and Reps). After a
+ * repair the distances are exactly those a fresh search would find, but among equally short paths
+ * a node may keep a different parent. A tree is not thread-safe while it is being repaired.
+ *
+ * @param <T> The type of the nodes
+ */
+public class DistanceTree<T> {
+  /** The distance of a node that no seed reaches. */
+  public static final int UNREACHED = -1;
+
+  private CsrGraph<T> graph;
+  private final boolean towardsSeeds;
+  private int[] distance;
+  private int[] parent;
+
+  // Scratch space for repairs, allocated on the first repair that needs it
+  private int[] queue;
+  private int[] subtreeGeneration;
+  private int generation;
+  private IntMinHeap heap;
+
+  /**
+   * Runs the search.
+   *
+   * @param graph The graph to search
+   * @param seeds The IDs of the seed nodes
+   * @param towardsSeeds whether to follow edges backwards, measuring the distance to the seeds
+   */
+  DistanceTree(CsrGraph<T> graph, int[] seeds, boolean towardsSeeds) {
+    this.graph = graph;
+    this.towardsSeeds = towardsSeeds;
+    int nodeCount = graph.nodeCount();
+    this.distance = new int[nodeCount];
+    this.parent = new int[nodeCount];
+    Arrays.fill(distance, UNREACHED);
+    Arrays.fill(parent, -1);
+
+    this.queue = new int[nodeCount];
+    int head = 0;
+    int tail = 0;
+    for (int seed : seeds) {
+      if (distance[seed] == UNREACHED) {
+        distance[seed] = 0;
+        queue[tail++] = seed;
+      }
+    }
+
+    relax(head, tail);
+  }
+
+  /**
+   * Runs the search on from the queued nodes, lowering the distance of every node it finds a
+   * shorter way to. The queue must hold nodes in order of distance.
+   */
+  private void relax(int head, int tail) {
+    while (head < tail) {
+      int node = queue[head++];
+      int[] edges = towardsSeeds ? graph.sourcesOf(node) : graph.targetsOf(node);
+      int start = towardsSeeds ? graph.inStart(node) : graph.start(node);
+      int end = towardsSeeds ? graph.inEnd(node) : graph.end(node);
+      for (int edge = start; edge < end; edge++) {
+        int next = edges[edge];
+        if (distance[next] == UNREACHED || distance[node] + 1 < distance[next]) {
+          distance[next] = distance[node] + 1;
+          parent[next] = node;
+          queue[tail++] = next;
+        }
+      }
+    }
+  }
+
+  /**
+   * Repairs the tree after an edge was added to the graph.
+   *
+   * @param graph The version of the graph with the edge, which must descend from this tree's
+   * @param from The node the edge leaves
+   * @param to The node the edge enters
+   */
+  public void edgeAdded(CsrGraph<T> graph, T from, T to) {
+    moveTo(graph);
+    // Along the tree's direction of travel the edge runs from near to far
+    int near = graph.idOf(towardsSeeds ? to : from);
+    int far = graph.idOf(towardsSeeds ? from : to);
+    if (near < 0 || far < 0 || distance[near] == UNREACHED) {
+      return;
+    }
+    if (distance[far] != UNREACHED && distance[far] <= distance[near] + 1) {
+      return; // The edge is no shortcut, so nothing changes
+    }
+    distance[far] = distance[near] + 1;
+    parent[far] = near;
+    queue[0] = far;
+    relax(0, 1);
+  }
+
+  /**
+   * Repairs the tree after an edge was removed from the graph.
+   *
+   * @param graph The version of the graph without the edge, which must descend from this tree's
+   * @param from The node the edge left
+   * @param to The node the edge entered
+   */
+  public void edgeRemoved(CsrGraph<T> graph, T from, T to) {
+    moveTo(graph);
+    int near = graph.idOf(towardsSeeds ? to : from);
+    int far = graph.idOf(towardsSeeds ? from : to);
+    if (near < 0 || far < 0 || parent[far] != near) {
+      return; // Not a tree edge, so every distance still has its path
+    }
+
+    // Another parent one step nearer keeps the far node, and so its whole subtree, where it is
+    int[] sources = towardsSeeds ? graph.targetsOf(far) : graph.sourcesOf(far);
+    int start = towardsSeeds ? graph.start(far) : graph.inStart(far);
+    int end = towardsSeeds ? graph.end(far) : graph.inEnd(far);
+    for (int edge = start; edge < end; edge++) {
+      if (distance[sources[edge]] == distance[far] - 1) {
+        parent[far] = sources[edge];
+        return;
+      }
+    }
+
+    int size = collectSubtree(far);
+
+    // Give each subtree node the best distance it can get straight from outside the subtree
+    for (int i = 0; i < size; i++) {
+      distance[queue[i]] = UNREACHED;
+      parent[queue[i]] = -1;
+    }
+    heap.clear();
+    for (int i = 0; i < size; i++) {
+      int node = queue[i];
+      sources = towardsSeeds ? graph.targetsOf(node) : graph.sourcesOf(node);
+      start = towardsSeeds ? graph.start(node) : graph.inStart(node);
+      end = towardsSeeds ? graph.end(node) : graph.inEnd(node);
+      for (int edge = start; edge < end; edge++) {
+        int prev = sources[edge];
+        if (subtreeGeneration[prev] != generation && distance[prev] != UNREACHED) {
+          settle(node, prev);
+        }
+      }
+    }
+
+    // Then settle the subtree in order of distance, like Dijkstra with unit weights
+    while (!heap.isEmpty()) {
+      int node = heap.poll();
+      int[] edges = towardsSeeds ? graph.sourcesOf(node) : graph.targetsOf(node);
+      start = towardsSeeds ? graph.inStart(node) : graph.start(node);
+      end = towardsSeeds ? graph.inEnd(node) : graph.end(node);
+      for (int edge = start; edge < end; edge++) {
+        if (subtreeGeneration[edges[edge]] == generation) {
+          settle(edges[edge], node);
+        }
+      }
+    }
+  }
+
+  /** Lowers a subtree node's distance to one past the given parent's, if that is shorter. */
+  private void settle(int node, int prev) {
+    int candidate = distance[prev] + 1;
+    if (distance[node] == UNREACHED || candidate < distance[node]) {
+      distance[node] = candidate;
+      parent[node] = prev;
+      heap.insertOrDecrease(node, candidate);
+    }
+  }
+
+  /**
+   * Finds every node whose tree path runs through the given node, by following the edges whose
+   * far end has the node before it as parent. The nodes are left in the queue and stamped with the
+   * current generation.
+   *
+   * @return The number of nodes in the subtree, including its root
+   */
+  private int collectSubtree(int root) {
+    if (heap == null) {
+      subtreeGeneration = new int[distance.length];
+      heap = new IntMinHeap(distance.length);
+    }
+    generation++;
+    subtreeGeneration[root] = generation;
+    queue[0] = root;
+    int tail = 1;
+    for (int head = 0; head < tail; head++) {
+      int node = queue[head];
+      int[] edges = towardsSeeds ? graph.sourcesOf(node) : graph.targetsOf(node);
+      int start = towardsSeeds ? graph.inStart(node) : graph.start(node);
+      int end = towardsSeeds ? graph.inEnd(node) : graph.end(node);
+      for (int edge = start; edge < end; edge++) {
+        int next = edges[edge];
+        if (parent[next] == node && subtreeGeneration[next] != generation) {
+          subtreeGeneration[next] = generation;
+          queue[tail++] = next;
+        }
+      }
+    }
+    return tail;
+  }
+
+  /** Switches to a newer version of the graph, making room for any nodes it added. */
+  private void moveTo(CsrGraph<T> next) {
+    int nodeCount = next.nodeCount();
+    if (nodeCount < distance.length) {
+      throw new IllegalArgumentException("Graph has fewer nodes than the tree");
+    }
+    if (nodeCount > distance.length) {
+      int old = distance.length;
+      distance = Arrays.copyOf(distance, nodeCount);
+      parent = Arrays.copyOf(parent, nodeCount);
+      Arrays.fill(distance, old, nodeCount, UNREACHED);
+      Arrays.fill(parent, old, nodeCount, -1);
+      queue = new int[nodeCount];
+      subtreeGeneration = null;
+      heap = null;
+    }
+    graph = next;
+  }
+
+  /**
+   * Gets the graph the tree was built on or last repaired for, whose IDs index the distance and
+   * parent arrays.
+   */
+  public CsrGraph<T> getGraph() {
+    return graph;
+  }
+
+  /**
+   * Gets the hop distance of every node from (or to) its nearest seed. The array is updated in
+   * place by repairs, and replaced when the graph gains nodes.
+   *
+   * @return The distances indexed by node ID, {@link #UNREACHED} for nodes no seed reaches
+   */
+  public int[] getDistances() {
+    return distance;
+  }
+
+  /**
+   * Gets the tree's parent links. In a forward tree the parent is the previous node on the way
+   * from the nearest seed; in a backward tree it is the next node on the way to the nearest seed.
+   *
+   * @return The parent IDs indexed by node ID, -1 for seeds and unreached nodes
+   */
+  public int[] getParents() {
+    return parent;
+  }
+
+  /**
+   * Gets the hop distance of a node from (or to) its nearest seed.
+   *
+   * @param node The node
+   * @return The distance, or {@link #UNREACHED} if no seed reaches it or it is not in the graph
+   */
+  public int distanceOf(T node) {
+    int id = graph.idOf(node);
+    return id < 0 ? UNREACHED : distance[id];
+  }
+
+  /**
+   * Gets a shortest path between a node and its nearest seed, in the direction of travel: from the
+   * seed to the node in a forward tree, and from the node to the seed in a backward tree.
+   *
+   * @param node The node
+   * @return The path, or an empty list if no seed reaches the node
+   */
+  public List<T> pathOf(T node) {
+    List<T> path = new ArrayList<>();
+    int id = graph.idOf(node);
+    if (id < 0 || distance[id] == UNREACHED) {
+      return path;
+    }
+    for (int n = id; n >= 0; n = parent[n]) {
+      path.add(graph.nodeOf(n));
+    }
+    if (!towardsSeeds) {
+      // The parents lead back to the seed, so flip them into route order
+      for (int i = 0, j = path.size() - 1; i < j; i++, j--) {
+        path.set(i, path.set(j, path.get(i)));
+      }
+    }
+    return path;
+  }
+}
@@ -0,0 +1,143 @@
+package nz.ac.auckland.se281;
+
+/**
+ * Reusable accumulator for the fuel a route burns, filled in one pass by {@link
+ * RouteAnalyzer#tally}. Continents are the dense IDs the analyzer numbers them with, and the sums
+ * live in an {@code int[]} indexed by them, so nothing is boxed or hashed. The continents are kept
+ * in the order the route first visits them, and the continent with the most fuel is tracked as the
+ * sums grow, the first one visited winning a tie, the same one {@link
+ * RouteAnalyzer#findHighestFuelContinent} picks.
+ *
+ * <p>A route can also be tallied while it is walked back from its end through a parent table, see
+ * {@link RouteAnalyzer#evaluateTree}. The sums are the same either way, and the visit order is put
+ * right once the walk reaches the start.
+ *
+ * <p>Only the continents the last route visited are cleared before the next one, so a tally can be
+ * reused for any number of routes. It is not thread-safe.
+ */
+public class FuelTally {
+  private final int[] fuel;
+  private final int[] visitRank; // 1 + the position a continent was first visited at, 0 if not
+  private final int[] visited;
+  private int visitedCount;
+  private int totalFuel;
+  private int highest = -1;
+
+  /**
+   * Creates an empty tally.
+   *
+   * @param continentCount The number of continents the analyzer numbered
+   */
+  public FuelTally(int continentCount) {
+    this.fuel = new int[continentCount];
+    this.visitRank = new int[continentCount];
+    this.visited = new int[continentCount];
+  }
+
+  /** Gets the number of continents the tally has room for. */
+  int capacity() {
+    return fuel.length;
+  }
+
+  /** Forgets the last route. */
+  void clear() {
+    for (int i = 0; i < visitedCount; i++) {
+      fuel[visited[i]] = 0;
+      visitRank[visited[i]] = 0;
+    }
+    visitedCount = 0;
+    totalFuel = 0;
+    highest = -1;
+  }
+
+  /** Adds one country of the route, in route order. */
+  void add(int continent, int countryFuel) {
+    if (visitRank[continent] == 0) {
+      visited[visitedCount++] = continent;
+      visitRank[continent] = visitedCount;
+    }
+    int sum = fuel[continent] += countryFuel;
+    totalFuel += countryFuel;
+    // Sums only grow, so the highest so far can only be overtaken by the continent just added to
+    if (highest < 0
+        || sum > fuel[highest]
+        || (sum == fuel[highest] && visitRank[continent] < visitRank[highest])) {
+      highest = continent;
+    }
+  }
+
+  /**
+   * Adds one country of a route that is walked from its end back to its start. The continents are
+   * only in visit order, and the highest one only known, after {@link #finishBackward()}.
+   *
+   * @param position The country's position on the route, 0 being the source
+   */
+  void addBackward(int continent, int countryFuel, int position) {
+    if (visitRank[continent] == 0) {
+      visited[visitedCount++] = continent;
+    }
+    visitRank[continent] = position + 1; // the last country seen is the first one visited
+    fuel[continent] += countryFuel;
+    totalFuel += countryFuel;
+  }
+
+  /** Puts the continents of a backward walk in visit order and finds the highest one. */
+  void finishBackward() {
+    // A route visits few continents, so an insertion sort by first visit is enough
+    for (int i = 1; i < visitedCount; i++) {
+      int continent = visited[i];
+      int j = i;
+      for (; j > 0 && visitRank[visited[j - 1]] > visitRank[continent]; j--) {
+        visited[j] = visited[j - 1];
+      }
+      visited[j] = continent;
+    }
+    highest = -1;
+    for (int i = 0; i < visitedCount; i++) {
+      int continent = visited[i];
+      visitRank[continent] = i + 1;
+      if (highest < 0 || fuel[continent] > fuel[highest]) {
+        highest = continent;
+      }
+    }
+  }
+
+  /** Gets the fuel burnt in the intermediate countries of the route. */
+  public int getTotalFuel() {
+    return totalFuel;
+  }
+
+  /** Gets the number of continents the route visits. */
+  public int getContinentCount() {
+    return visitedCount;
+  }
+
+  /**
+   * Gets a continent the route visits.
+   *
+   * @param index The position among the visited continents, 0 being the source's
+   * @return The continent's ID, see {@link RouteAnalyzer#continentName(int)}
+   */
+  public int continentAt(int index) {
+    return visited[index];
+  }
+
+  /**
+   * Gets the fuel burnt in a continent the route visits.
+   *
+   * @param index The position among the visited continents, 0 being the source's
+   * @return The fuel burnt there
+   */
+  public int fuelAt(int index) {
+    return fuel[visited[index]];
+  }
+
+  /**
+   * Gets the continent where the most fuel is burnt, the first one visited if there is a tie.
+   *
+   * @return The continent's ID, or -1 if the route is empty
+   */
+  public int getHighestContinent() {
+    return highest;
+  }
+}
@@ -1,44 +1,206 @@
 package nz.ac.auckland.se281;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
+/**
+ * Directed graph that is built through {@link #addNode} and {@link #addEdge}, then frozen into an
+ * immutable {@link CsrGraph} once loading is done.
+ *
+ * <p>A frozen graph can still change. Each change publishes a new {@link CsrGraph} version that
+ * copies only the blocks of rows it touches, see {@link #snapshot()}. Changes are serialised with
+ * each other, but reading never takes a lock: a reader works on whichever version it got from
+ * {@link #snapshot()}, and later changes do not affect it. Each search borrows an engine from a
+ * pool and returns it when done, so searches on different threads never share working arrays. At
+ * most one search per core runs at a time, which caps the pool at one engine of each kind per core
+ * however many threads search.
+ */
 public class Graph<T> {
   private Map<T, Set<T>> adjacencyMap;
+  private volatile CsrGraph<T> csr; // null while the adjacency map has unsaved changes
+  private final Map<SearchMode, Queue<PathSearch>> searches = newPools();
+  private final Queue<PathSearch> weightedSearches = new ConcurrentLinkedQueue<>();
+  private final Semaphore searchPermits =
+      new Semaphore(Runtime.getRuntime().availableProcessors());
+  private final Object landmarkLock = new Object();
+  private volatile Landmarks landmarks; // Shared by every LANDMARKS engine, null until first used
+  private ToIntFunction<? super T> nodeWeight;
+  private volatile int version;
 
   public Graph() {
     this.adjacencyMap = new LinkedHashMap<>();
   }
 
-  public void addNode(T node) {
-    if (!adjacencyMap.containsKey(node)) {
+  /**
+   * Creates an already frozen graph from its CSR form.
+   *
+   * @param csr The compressed graph
+   */
+  public Graph(CsrGraph<T> csr) {
+    this.csr = csr;
+    this.version = csr.getVersion();
+  }
+
+  public synchronized void addNode(T node) {
+    if (isFrozen()) {
+      publish(csr.withNode(node));
+    } else if (!adjacencyMap.containsKey(node)) {
       adjacencyMap.put(node, new LinkedHashSet<>());
+      csr = null;
+      version++;
     }
   }
 
-  public void addEdge(T node1, T node2) {
+  public synchronized void addEdge(T node1, T node2) {
     addNode(node1);
     addNode(node2);
 
-    adjacencyMap.get(node1).add(node2);
+    if (isFrozen()) {
+      publish(csr.withEdge(csr.idOf(node1), csr.idOf(node2)));
+    } else if (adjacencyMap.get(node1).add(node2)) {
+      csr = null;
+      version++;
+    }
+  }
+
+  /**
+   * Removes an edge. Nodes cannot be removed, since every node keeps its dense ID for as long as
+   * the graph exists.
+   *
+   * @param node1 The node the edge leaves
+   * @param node2 The node the edge enters
+   * @return Whether the graph had the edge
+   */
+  public synchronized boolean removeEdge(T node1, T node2) {
+    if (!isFrozen()) {
+      Set<T> neighbours = adjacencyMap.get(node1);
+      if (neighbours == null || !neighbours.remove(node2)) {
+        return false;
+      }
+      csr = null;
+      version++;
+      return true;
+    }
+    int from = csr.idOf(node1);
+    int to = csr.idOf(node2);
+    if (from < 0 || to < 0) {
+      return false;
+    }
+    CsrGraph<T> previous = csr;
+    publish(csr.withoutEdge(from, to));
+    return csr != previous;
+  }
+
+  /**
+   * Changes the weight of one node of a frozen graph, see {@link #setNodeWeights}.
+   *
+   * @param node The node
+   * @param weight The new weight, which must not be negative
+   * @throws IllegalStateException if the graph is not frozen or has no node weights
+   * @throws IllegalArgumentException if the node is not in the graph
+   */
+  public synchronized void setNodeWeight(T node, int weight) {
+    if (!isFrozen() || !csr.hasWeights()) {
+      throw new IllegalStateException("Only a frozen graph with node weights can be reweighted");
+    }
+    int id = csr.idOf(node);
+    if (id < 0) {
+      throw new IllegalArgumentException("Node not in graph: " + node);
+    }
+    if (csr.weight(id) != weight) {
+      publish(csr.withWeight(id, weight));
+    }
+  }
+
+  /** Makes a changed CSR form the current version of a frozen graph. */
+  private void publish(CsrGraph<T> next) {
+    if (next != csr) {
+      version++;
+      csr = next.withVersion(version);
+    }
   }
 
   public Set<T> getNeighbors(T node) {
+    if (isFrozen()) {
+      return csr.neighbours(node);
+    }
     return adjacencyMap.getOrDefault(node, new LinkedHashSet<>());
   }
 
   public boolean containsNode(T node) {
+    if (isFrozen()) {
+      return csr.idOf(node) >= 0;
+    }
     return adjacencyMap.containsKey(node);
   }
 
+  /**
+   * Compresses the graph into its CSR form and drops the mutable adjacency map. Later changes make
+   * new CSR versions instead of editing the map.
+   */
+  public synchronized void freeze() {
+    if (!isFrozen()) {
+      csr = snapshot();
+      adjacencyMap = null;
+    }
+  }
+
+  public boolean isFrozen() {
+    return adjacencyMap == null;
+  }
+
+  /**
+   * Gets the CSR form of the graph as it is now, building it if the graph changed since the last
+   * call. Once the graph is frozen this never blocks, and the returned version never changes.
+   */
+  public CsrGraph<T> snapshot() {
+    CsrGraph<T> current = csr;
+    if (current != null) {
+      return current;
+    }
+    synchronized (this) {
+      if (csr == null) {
+        CsrGraph<T> built = new CsrGraph<>(adjacencyMap, version);
+        csr = nodeWeight == null ? built : built.withNodeWeights(nodeWeight);
+      }
+      return csr;
+    }
+  }
+
+  /**
+   * Sets the weight of every node, used by {@link #findCheapestPath}. The weights are read once,
+   * when the CSR form is built, so they must not change while the graph is unchanged; use {@link
+   * #setNodeWeight} to change one of them later.
+   *
+   * @param nodeWeight Gives the weight of each node, which must not be negative
+   */
+  public synchronized void setNodeWeights(ToIntFunction<? super T> nodeWeight) {
+    this.nodeWeight = nodeWeight;
+    version++;
+    if (csr != null) {
+      csr = csr.withNodeWeights(nodeWeight).withVersion(version);
+    }
+  }
+
+  /**
+   * Gets the version of the graph, which changes whenever a node, edge or the node weights change.
+   * Results computed on the graph stay valid for as long as the version stays the same.
+   */
+  public int getVersion() {
+    return version;
+  }
+
   /**
    * Finds the shortest path between two nodes using breadth-first search.
    *
@@ -47,35 +209,152 @@ public class Graph<T> {
    * @return Ordered list of nodes in the shortest path, or empty list if no path exists
    */
   public List<T> findShortestPath(T start, T dest) {
-    List<T> visited = new ArrayList<>();
-    Queue<T> queue = new LinkedList<>();
-    Map<T, T> parentMap = new HashMap<>(); // Tracks path for reconstruction
-
-    parentMap.put(start, null);
-    queue.add(start);
-    visited.add(start);
-
-    while (!queue.isEmpty()) {
-      T node = queue.poll();
-
-      if (node.equals(dest)) {
-        // Reconstruct path from destination to start, then reverse
-        List<T> path = new ArrayList<>();
-        for (T n = dest; n != null; n = parentMap.get(n)) {
-          path.add(n);
-        }
-        Collections.reverse(path);
-        return path;
+    return findShortestPath(start, dest, SearchMode.BREADTH_FIRST);
+  }
+
+  /**
+   * Finds the shortest path between two nodes with the given search strategy. Every strategy
+   * returns a path with the fewest edges, but only {@link SearchMode#BREADTH_FIRST} is guaranteed
+   * to pick the same one as {@link #findShortestPath(Object, Object)} when there are ties.
+   *
+   * @param start The starting node
+   * @param dest The destination node
+   * @param mode The search strategy to use for this query
+   * @return Ordered list of nodes in the shortest path, or empty list if no path exists
+   */
+  public List<T> findShortestPath(T start, T dest, SearchMode mode) {
+    CsrGraph<T> graph = snapshot();
+    int source = graph.idOf(start);
+    int target = graph.idOf(dest);
+    List<T> path = new ArrayList<>();
+
+    if (source < 0 || target < 0) {
+      return path; // Unknown nodes have no path
+    }
+    Function<CsrGraph<T>, PathSearch> engine =
+        mode == SearchMode.LANDMARKS ? g -> new AltSearch(landmarksFor(g)) : mode::createSearch;
+    return runSearch(graph, searches.get(mode), engine, source, target, path);
+  }
+
+  /**
+   * Finds the path between two nodes with the lowest total node weight, using Dijkstra's algorithm.
+   * The source's own weight is not counted, see {@link #setNodeWeights}.
+   *
+   * @param start The starting node
+   * @param dest The destination node
+   * @return Ordered list of nodes in the cheapest path, or empty list if no path exists
+   * @throws IllegalStateException if no node weights have been set
+   */
+  public List<T> findCheapestPath(T start, T dest) {
+    CsrGraph<T> graph = snapshot();
+    if (!graph.hasWeights()) {
+      throw new IllegalStateException("Node weights have not been set");
+    }
+    int source = graph.idOf(start);
+    int target = graph.idOf(dest);
+    List<T> path = new ArrayList<>();
+
+    if (source < 0 || target < 0) {
+      return path; // Unknown nodes have no path
+    }
+    return runSearch(graph, weightedSearches, DijkstraSearch::new, source, target, path);
+  }
+
+  /**
+   * Finds how far every node is from the nearest of a set of seeds, in one breadth-first search
+   * from all the seeds at once.
+   *
+   * @param seeds The nodes to measure from; nodes not in the graph are ignored
+   * @return The distances and BFS parents of every node
+   */
+  public DistanceTree<T> findDistancesFrom(Collection<? extends T> seeds) {
+    CsrGraph<T> graph = snapshot();
+    return new DistanceTree<>(graph, idsOf(graph, seeds), false);
+  }
+
+  /**
+   * Finds how far every node is from the nearest of a set of targets, in one breadth-first search
+   * that walks backwards from all the targets at once.
+   *
+   * @param targets The nodes to measure to; nodes not in the graph are ignored
+   * @return The distances of every node, with parents leading towards the nearest target
+   */
+  public DistanceTree<T> findDistancesTo(Collection<? extends T> targets) {
+    CsrGraph<T> graph = snapshot();
+    return new DistanceTree<>(graph, idsOf(graph, targets), true);
+  }
+
+  private int[] idsOf(CsrGraph<T> graph, Collection<? extends T> nodes) {
+    return nodes.stream().mapToInt(graph::idOf).filter(id -> id >= 0).toArray();
+  }
+
+  /**
+   * Runs a search with an engine borrowed from the pool and appends the nodes of the path it
+   * finds, if any, to the given list. A new engine is made if none is free or the free one was
+   * sized for a graph with a different number of nodes.
+   */
+  private List<T> runSearch(
+      CsrGraph<T> graph,
+      Queue<PathSearch> pool,
+      Function<CsrGraph<T>, PathSearch> engine,
+      int source,
+      int target,
+      List<T> path) {
+    searchPermits.acquireUninterruptibly();
+    PathSearch search = pool.poll();
+    try {
+      if (search == null || search.getGraph().nodeCount() != graph.nodeCount()) {
+        search = engine.apply(graph);
+      } else if (search instanceof AltSearch alt) {
+        alt.setLandmarks(landmarksFor(graph));
+      } else if (search.getGraph() != graph) {
+        search.setGraph(graph);
       }
-      // Explore unvisited neighbors
-      for (T n : adjacencyMap.get(node)) {
-        if (!visited.contains(n)) {
-          visited.add(n);
-          queue.add(n);
-          parentMap.put(n, node);
+      if (search.search(source, target)) {
+        int length = search.tracePath(target);
+        for (int i = 0; i < length; i++) {
+          path.add(graph.nodeOf(search.pathNode(i)));
         }
       }
+      return path;
+    } finally {
+      if (search != null) {
+        pool.offer(search);
+      }
+      searchPermits.release();
+    }
+  }
+
+  /** Gets how many engines of a mode are waiting in the pool, so tests can check its bound. */
+  int pooledSearchCount(SearchMode mode) {
+    return searches.get(mode).size();
+  }
+
+  /** Makes an empty engine pool for each search mode. */
+  private static Map<SearchMode, Queue<PathSearch>> newPools() {
+    Map<SearchMode, Queue<PathSearch>> pools = new EnumMap<>(SearchMode.class);
+    for (SearchMode mode : SearchMode.values()) {
+      pools.put(mode, new ConcurrentLinkedQueue<>());
+    }
+    return pools;
+  }
+
+  /**
+   * Gets the landmarks for a version, measuring them if no thread has yet. They are measured once
+   * per version and shared, so a change costs one measurement and not one per engine.
+   */
+  private Landmarks landmarksFor(CsrGraph<T> graph) {
+    Landmarks current = landmarks;
+    if (current != null && current.getGraph() == graph) {
+      return current;
+    }
+    synchronized (landmarkLock) {
+      current = landmarks;
+      if (current == null || current.getGraph() != graph) {
+        current = new Landmarks(graph, SearchMode.LANDMARK_COUNT, false);
+        landmarks = current;
+      }
+      return current;
     }
-    return new ArrayList<>(); // No path found
   }
 }
@@ -0,0 +1,439 @@
+package nz.ac.auckland.se281;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Contracts the nodes of a graph for a {@link ContractionHierarchy}. Nodes are contracted in
+ * rounds. Each round takes every remaining node whose priority is lower than all of its
+ * neighbours', so no two of them are adjacent, and runs their witness searches in parallel. The
+ * searches decide which shortcuts each node needs while avoiding every node of the round, so they
+ * all see the same graph, and removing the nodes and adding their shortcuts afterwards is cheap
+ * enough to do one node after another.
+ *
+ * <p>A node's priority is its edge difference, the shortcuts contracting it would add minus the
+ * edges it would remove, plus the number of its neighbours already contracted, which spreads the
+ * contraction evenly over the map. Priorities are recomputed for the neighbours of every round.
+ *
+ * <p>Maps with hubs, such as small-world networks, grow denser as they are contracted instead of
+ * thinner. Contraction stops once the nodes left have {@value #CORE_DEGREE} edges each on average,
+ * or all have so many neighbours that simulating them is too costly. Those nodes form the core:
+ * they rank above the rest and keep all their edges, and queries search it like plain Dijkstra.
+ *
+ * <p>Adjacency lists are kept as flat {@code int[]} triples of (other node, weight, middle node),
+ * where the middle node is the node a shortcut bypasses, or -1 for an original edge.
+ */
+class HierarchyBuilder {
+  /** Witness searches give up after settling this many nodes and add the shortcut anyway. */
+  private static final int SETTLE_LIMIT = 100;
+
+  /** Witness searches also give up after relaxing this many edges, which bounds hubs. */
+  private static final int RELAX_LIMIT = 1000;
+
+  /** A node with more pairs of in- and out-neighbours than this is not simulated. */
+  private static final int DENSE_PAIRS = 1000;
+
+  /** The priority of a node that is too dense to simulate, above any simulated node's. */
+  private static final int DENSE = 1 << 29;
+
+  /** Contraction stops once the nodes left have this many edges each on average. */
+  private static final int CORE_DEGREE = 16;
+
+  private static final int STRIDE = 3;
+  private static final int NO_ROUND = 0;
+
+  private final int nodeCount;
+  private final int[][] out;
+  private final int[] outSize;
+  private final int[][] in;
+  private final int[] inSize;
+  private final int[] priority;
+  private final int[] contractedNeighbours;
+  private final int[] roundOf; // the round a node is contracted in, NO_ROUND until then
+  private final int[] touchedRound; // the last round a node's priority was recomputed in
+  private final int[] rank;
+  private final int[][] upEdges;
+  private final int[][] downEdges;
+  private final Queue<WitnessSearch> witnesses = new ConcurrentLinkedQueue<>();
+  private int round = NO_ROUND;
+  private long shortcuts;
+  private int coreSize;
+
+  /**
+   * Copies the graph into mutable adjacency lists.
+   *
+   * @param graph The graph to contract
+   * @param weighted whether an edge costs the weight of the node it enters, instead of 1
+   */
+  HierarchyBuilder(CsrGraph<?> graph, boolean weighted) {
+    this.nodeCount = graph.nodeCount();
+    this.out = new int[nodeCount][];
+    this.outSize = new int[nodeCount];
+    this.in = new int[nodeCount][];
+    this.inSize = new int[nodeCount];
+    this.priority = new int[nodeCount];
+    this.contractedNeighbours = new int[nodeCount];
+    this.roundOf = new int[nodeCount];
+    this.touchedRound = new int[nodeCount];
+    this.rank = new int[nodeCount];
+    this.upEdges = new int[nodeCount][];
+    this.downEdges = new int[nodeCount][];
+
+    for (int node = 0; node < nodeCount; node++) {
+      out[node] = new int[STRIDE * (graph.end(node) - graph.start(node))];
+    }
+    int[] inDegree = new int[nodeCount];
+    for (int node = 0; node < nodeCount; node++) {
+      int[] targets = graph.targetsOf(node);
+      for (int edge = graph.start(node), end = graph.end(node); edge < end; edge++) {
+        inDegree[targets[edge]]++;
+      }
+    }
+    for (int node = 0; node < nodeCount; node++) {
+      in[node] = new int[STRIDE * inDegree[node]];
+    }
+    for (int node = 0; node < nodeCount; node++) {
+      int[] targets = graph.targetsOf(node);
+      for (int edge = graph.start(node), end = graph.end(node); edge < end; edge++) {
+        int target = targets[edge];
+        if (target != node) {
+          addEdge(node, target, weighted ? graph.weight(target) : 1, -1);
+        }
+      }
+    }
+  }
+
+  /**
+   * Contracts the nodes, recording each node's rank and the edges it keeps to higher-ranked
+   * nodes, until only the core is left.
+   */
+  void contract() {
+    IntStream.range(0, nodeCount).parallel().forEach(node -> priority[node] = priorityOf(node));
+
+    int[] remaining = IntStream.range(0, nodeCount).toArray();
+    int nextRank = 0;
+    int[] touched = new int[nodeCount];
+    long edges = IntStream.of(outSize).asLongStream().sum();
+    while (remaining.length > 0 && edges <= (long) CORE_DEGREE * remaining.length) {
+      round++;
+
+      // Pick the nodes whose key is the lowest among their neighbours, so no two are adjacent
+      int[] batch =
+          IntStream.of(remaining)
+              .parallel()
+              .filter(node -> priority[node] != DENSE && lowestAround(node) == key(node))
+              .toArray();
+      if (batch.length == 0) {
+        break; // Only dense nodes are left
+      }
+      for (int node : batch) {
+        roundOf[node] = round;
+      }
+
+      // Witness searches only read the graph, so they all run before anything is changed
+      int[][] found = new int[batch.length][];
+      IntStream.range(0, batch.length)
+          .parallel()
+          .forEach(i -> found[i] = findShortcuts(batch[i]));
+      for (int i = 0; i < batch.length; i++) {
+        remove(batch[i], found[i]);
+        rank[batch[i]] = nextRank++;
+        shortcuts += found[i].length / STRIDE;
+      }
+
+      // Only the neighbours of the contracted nodes have new priorities
+      int neighbours = 0;
+      for (int node : batch) {
+        neighbours = collectNeighbours(upEdges[node], touched, neighbours);
+        neighbours = collectNeighbours(downEdges[node], touched, neighbours);
+      }
+      IntStream.range(0, neighbours)
+          .parallel()
+          .forEach(i -> priority[touched[i]] = priorityOf(touched[i]));
+      remaining = IntStream.of(remaining).filter(node -> roundOf[node] == NO_ROUND).toArray();
+      edges = 0;
+      for (int node : remaining) {
+        edges += outSize[node];
+      }
+    }
+
+    // The core keeps every edge between its nodes, in both directions, and ranks above the rest
+    for (int node : remaining) {
+      upEdges[node] = Arrays.copyOf(out[node], outSize[node] * STRIDE);
+      downEdges[node] = Arrays.copyOf(in[node], inSize[node] * STRIDE);
+      rank[node] = nextRank++;
+    }
+    coreSize = remaining.length;
+    witnesses.clear(); // The searches are sized to the whole graph, so do not keep them
+  }
+
+  /** Adds the uncontracted nodes of an edge list to the touched list, each once per round. */
+  private int collectNeighbours(int[] edges, int[] touched, int size) {
+    for (int i = 0; i < edges.length; i += STRIDE) {
+      int other = edges[i];
+      if (roundOf[other] == NO_ROUND && touchedRound[other] != round) {
+        touchedRound[other] = round;
+        touched[size++] = other;
+      }
+    }
+    return size;
+  }
+
+  /** The order nodes are picked in: by priority, then by ID. */
+  private long key(int node) {
+    return ((long) (priority[node] + (1 << 30)) << 32) | node;
+  }
+
+  /** Gets the lowest key among a node and its uncontracted neighbours. */
+  private long lowestAround(int node) {
+    long lowest = key(node);
+    for (int i = 0; i < outSize[node] * STRIDE; i += STRIDE) {
+      lowest = Math.min(lowest, key(out[node][i]));
+    }
+    for (int i = 0; i < inSize[node] * STRIDE; i += STRIDE) {
+      lowest = Math.min(lowest, key(in[node][i]));
+    }
+    return lowest;
+  }
+
+  private int priorityOf(int node) {
+    if ((long) inSize[node] * outSize[node] > DENSE_PAIRS) {
+      return DENSE;
+    }
+    WitnessSearch search = borrowWitness();
+    try {
+      int added = search.countShortcuts(node);
+      return added - outSize[node] - inSize[node] + contractedNeighbours[node];
+    } finally {
+      witnesses.offer(search);
+    }
+  }
+
+  private int[] findShortcuts(int node) {
+    WitnessSearch search = borrowWitness();
+    try {
+      return search.findShortcuts(node);
+    } finally {
+      witnesses.offer(search);
+    }
+  }
+
+  /**
+   * Borrows a witness search from the pool, making one if none is free. Only the parallel tasks
+   * of {@link #contract} borrow them, so the pool holds at most one per fork-join worker.
+   */
+  private WitnessSearch borrowWitness() {
+    WitnessSearch search = witnesses.poll();
+    return search == null ? new WitnessSearch() : search;
+  }
+
+  /**
+   * Removes a contracted node from its neighbours' lists and links them with its shortcuts. The
+   * node's own lists, which now only lead to higher-ranked nodes, become its final edges.
+   */
+  private void remove(int node, int[] found) {
+    upEdges[node] = Arrays.copyOf(out[node], outSize[node] * STRIDE);
+    downEdges[node] = Arrays.copyOf(in[node], inSize[node] * STRIDE);
+    for (int i = 0; i < upEdges[node].length; i += STRIDE) {
+      int other = upEdges[node][i];
+      removeEntry(in, inSize, other, node);
+      contractedNeighbours[other]++;
+    }
+    for (int i = 0; i < downEdges[node].length; i += STRIDE) {
+      int other = downEdges[node][i];
+      removeEntry(out, outSize, other, node);
+      contractedNeighbours[other]++;
+    }
+    for (int i = 0; i < found.length; i += STRIDE) {
+      addEdge(found[i], found[i + 1], found[i + 2], node);
+    }
+    out[node] = null;
+    in[node] = null;
+  }
+
+  /** Adds an edge, or lowers the weight of the existing edge between the same nodes. */
+  private void addEdge(int from, int to, int weight, int middle) {
+    if (!lowerEntry(out, outSize, from, to, weight, middle)) {
+      appendEntry(out, outSize, from, to, weight, middle);
+      appendEntry(in, inSize, to, from, weight, middle);
+    } else {
+      lowerEntry(in, inSize, to, from, weight, middle);
+    }
+  }
+
+  /** Lowers an existing entry's weight if the new one is lower, returning whether it exists. */
+  private static boolean lowerEntry(
+      int[][] lists, int[] sizes, int node, int other, int weight, int middle) {
+    int[] list = lists[node];
+    for (int i = 0; i < sizes[node] * STRIDE; i += STRIDE) {
+      if (list[i] == other) {
+        if (weight < list[i + 1]) {
+          list[i + 1] = weight;
+          list[i + 2] = middle;
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void appendEntry(
+      int[][] lists, int[] sizes, int node, int other, int weight, int middle) {
+    int at = sizes[node] * STRIDE;
+    if (at == lists[node].length) {
+      lists[node] = Arrays.copyOf(lists[node], Math.max(2 * at, 4 * STRIDE));
+    }
+    lists[node][at] = other;
+    lists[node][at + 1] = weight;
+    lists[node][at + 2] = middle;
+    sizes[node]++;
+  }
+
+  /** Removes an entry by moving the last entry into its place. */
+  private static void removeEntry(int[][] lists, int[] sizes, int node, int other) {
+    int[] list = lists[node];
+    int last = (sizes[node] - 1) * STRIDE;
+    for (int i = 0; i <= last; i += STRIDE) {
+      if (list[i] == other) {
+        System.arraycopy(list, last, list, i, STRIDE);
+        sizes[node]--;
+        return;
+      }
+    }
+  }
+
+  /** Gets the order each node was contracted in. */
+  int[] getRanks() {
+    return rank;
+  }
+
+  /** Gets each node's edges to higher-ranked nodes, as (target, weight, middle) triples. */
+  int[][] getUpEdges() {
+    return upEdges;
+  }
+
+  /** Gets each node's edges from higher-ranked nodes, as (source, weight, middle) triples. */
+  int[][] getDownEdges() {
+    return downEdges;
+  }
+
+  /** Gets the number of nodes left uncontracted because they were too dense. */
+  int getCoreSize() {
+    return coreSize;
+  }
+
+  /** Gets the number of shortcuts added, counting those later replaced by cheaper ones. */
+  long getShortcutCount() {
+    return shortcuts;
+  }
+
+  /** A bounded Dijkstra search for paths that make a shortcut unnecessary, borrowed per task. */
+  private class WitnessSearch {
+    private final IntMinHeap heap = new IntMinHeap(nodeCount);
+    private final int[] distance = new int[nodeCount];
+    private final int[] seenGeneration = new int[nodeCount];
+    private final int[] targetGeneration = new int[nodeCount];
+    private int[] found = new int[4 * STRIDE];
+    private int generation;
+    private int targetStamp;
+    private int targetCount;
+
+    /**
+     * Finds the shortcuts contracting a node needs: one from each in-neighbour to each
+     * out-neighbour whose path through the node is shorter than any path that avoids it.
+     *
+     * @param node The node to contract
+     * @return The shortcuts as (from, to, weight) triples
+     */
+    int[] findShortcuts(int node) {
+      int count = scan(node, true); // may grow the buffer, so read it only afterwards
+      return Arrays.copyOf(found, count * STRIDE);
+    }
+
+    /** Counts the shortcuts contracting a node would add, see {@link #findShortcuts}. */
+    int countShortcuts(int node) {
+      return scan(node, false);
+    }
+
+    private int scan(int node, boolean collect) {
+      int count = 0;
+      int maxOut = 0;
+      targetStamp++;
+      if (targetStamp == 0) {
+        Arrays.fill(targetGeneration, 0);
+        targetStamp = 1;
+      }
+      for (int i = 0; i < outSize[node] * STRIDE; i += STRIDE) {
+        maxOut = Math.max(maxOut, out[node][i + 1]);
+        targetGeneration[out[node][i]] = targetStamp;
+      }
+      targetCount = outSize[node];
+      for (int i = 0; i < inSize[node] * STRIDE; i += STRIDE) {
+        int from = in[node][i];
+        int toNode = in[node][i + 1];
+        search(from, node, toNode + maxOut);
+        for (int j = 0; j < outSize[node] * STRIDE; j += STRIDE) {
+          int to = out[node][j];
+          int via = toNode + out[node][j + 1];
+          if (to == from || (seenGeneration[to] == generation && distance[to] <= via)) {
+            continue;
+          }
+          if (collect) {
+            if (found.length == count * STRIDE) {
+              found = Arrays.copyOf(found, 2 * found.length);
+            }
+            found[count * STRIDE] = from;
+            found[count * STRIDE + 1] = to;
+            found[count * STRIDE + 2] = via;
+          }
+          count++;
+        }
+      }
+      return count;
+    }
+
+    /**
+     * Runs Dijkstra from a source over the uncontracted nodes, avoiding the node being contracted
+     * and every node contracted in the same round, until every out-neighbour of the contracted
+     * node is settled or the cost, settle or edge limit is hit.
+     */
+    private void search(int source, int avoid, int maxCost) {
+      generation++;
+      if (generation == 0) {
+        Arrays.fill(seenGeneration, 0);
+        generation = 1;
+      }
+      heap.clear();
+      seenGeneration[source] = generation;
+      distance[source] = 0;
+      heap.insertOrDecrease(source, 0);
+      int settled = 0;
+      int relaxed = 0;
+      int targetsLeft = targetCount;
+      while (!heap.isEmpty() && settled++ < SETTLE_LIMIT && relaxed < RELAX_LIMIT) {
+        int node = heap.poll();
+        if (distance[node] > maxCost
+            || (targetGeneration[node] == targetStamp && --targetsLeft == 0)) {
+          return;
+        }
+        int[] edges = out[node];
+        relaxed += outSize[node];
+        for (int i = 0; i < outSize[node] * STRIDE; i += STRIDE) {
+          int next = edges[i];
+          // Every node with a round left in the lists is being contracted alongside this one
+          if (next == avoid || roundOf[next] != NO_ROUND) {
+            continue;
+          }
+          int cost = distance[node] + edges[i + 1];
+          if (seenGeneration[next] != generation || cost < distance[next]) {
+            seenGeneration[next] = generation;
+            distance[next] = cost;
+            heap.insertOrDecrease(next, cost);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,275 @@
+package nz.ac.auckland.se281;
+
+import java.util.Arrays;
+
+/**
+ * Bidirectional search over a {@link ContractionHierarchy}. The forward search only follows edges
+ * up to higher-ranked nodes and the backward search only follows edges down from them, so both
+ * climb towards the top of the hierarchy, and the shortest path is the cheapest one through a node
+ * both of them reached. Each side stops once the lowest distance it has left is no better than the
+ * best path found so far. Both searches also stall on demand: a node that is reached more cheaply
+ * through a higher-ranked neighbour the same search has already seen cannot be on a shortest path,
+ * so its edges are not relaxed.
+ *
+ * <p>The path is found in the hierarchy and then unpacked, replacing each shortcut by the two
+ * edges it bypasses, into the nodes of the original graph. It has the same length or cost as one
+ * found by {@link BreadthFirstSearch} or {@link DijkstraSearch}, but where several paths are
+ * equally short it can be a different one. The working arrays are reused between queries, as in
+ * {@link DijkstraSearch}.
+ */
+public class HierarchySearch implements PathSearch {
+  private final ContractionHierarchy<?> hierarchy;
+  private final IntMinHeap forwardHeap;
+  private final IntMinHeap backwardHeap;
+  private final int[] forwardDistance;
+  private final int[] backwardDistance;
+  private final int[] forwardParent;
+  private final int[] backwardParent;
+  private final int[] forwardGeneration;
+  private final int[] backwardGeneration;
+  private int generation;
+  private int meeting;
+  private int best;
+  private int settled;
+  private int[] path;
+  private int[] stack = new int[64];
+
+  /**
+   * Creates a search engine for the graph the hierarchy was built for.
+   *
+   * @param hierarchy The hierarchy to search
+   */
+  public HierarchySearch(ContractionHierarchy<?> hierarchy) {
+    this.hierarchy = hierarchy;
+    int nodeCount = hierarchy.getGraph().nodeCount();
+    this.forwardHeap = new IntMinHeap(nodeCount);
+    this.backwardHeap = new IntMinHeap(nodeCount);
+    this.forwardDistance = new int[nodeCount];
+    this.backwardDistance = new int[nodeCount];
+    this.forwardParent = new int[nodeCount];
+    this.backwardParent = new int[nodeCount];
+    this.forwardGeneration = new int[nodeCount];
+    this.backwardGeneration = new int[nodeCount];
+    this.path = new int[Math.min(nodeCount, 1024)];
+  }
+
+  @Override
+  public CsrGraph<?> getGraph() {
+    return hierarchy.getGraph();
+  }
+
+  /**
+   * Points the engine at another version of the graph. A hierarchy only holds for the version it
+   * was built on, and contracting the graph again takes far longer than a query, so this does not
+   * do it: build a new hierarchy and engine for the new version, or search it another way.
+   *
+   * @throws IllegalArgumentException if the graph is not the one the hierarchy was built on
+   */
+  @Override
+  public void setGraph(CsrGraph<?> graph) {
+    if (graph != hierarchy.getGraph()) {
+      throw new IllegalArgumentException("Hierarchy was built on another version of the graph");
+    }
+  }
+
+  /**
+   * Gets the hierarchy the engine searches.
+   *
+   * @return The hierarchy
+   */
+  public ContractionHierarchy<?> getHierarchy() {
+    return hierarchy;
+  }
+
+  @Override
+  public boolean search(int source, int dest) {
+    nextGeneration();
+    forwardHeap.clear();
+    backwardHeap.clear();
+    settled = 0;
+    meeting = -1;
+    best = Integer.MAX_VALUE;
+
+    forwardGeneration[source] = generation;
+    forwardDistance[source] = 0;
+    forwardParent[source] = -1;
+    forwardHeap.insertOrDecrease(source, 0);
+    backwardGeneration[dest] = generation;
+    backwardDistance[dest] = 0;
+    backwardParent[dest] = -1;
+    backwardHeap.insertOrDecrease(dest, 0);
+
+    boolean forwardDone = false;
+    boolean backwardDone = false;
+    while (!forwardDone || !backwardDone) {
+      forwardDone = forwardDone || forwardHeap.isEmpty() || forwardHeap.peekPriority() >= best;
+      backwardDone =
+          backwardDone || backwardHeap.isEmpty() || backwardHeap.peekPriority() >= best;
+      // Step whichever side has the nearer node left, so both grow at about the same rate
+      if (!forwardDone
+          && (backwardDone || forwardHeap.peekPriority() <= backwardHeap.peekPriority())) {
+        stepForward();
+      } else if (!backwardDone) {
+        stepBackward();
+      }
+    }
+    return meeting >= 0;
+  }
+
+  private void stepForward() {
+    int node = forwardHeap.poll();
+    settled++;
+    int distance = forwardDistance[node];
+    if (backwardGeneration[node] == generation && distance + backwardDistance[node] < best) {
+      best = distance + backwardDistance[node];
+      meeting = node;
+    }
+
+    // A seen higher neighbour with an edge down to this node may offer a cheaper way here
+    int[] sources = hierarchy.downSources();
+    int[] weights = hierarchy.downWeights();
+    for (int edge = hierarchy.downStart(node), end = hierarchy.downEnd(node); edge < end; edge++) {
+      int prev = sources[edge];
+      if (forwardGeneration[prev] == generation
+          && forwardDistance[prev] + weights[edge] < distance) {
+        return;
+      }
+    }
+
+    int[] targets = hierarchy.upTargets();
+    weights = hierarchy.upWeights();
+    for (int edge = hierarchy.upStart(node), end = hierarchy.upEnd(node); edge < end; edge++) {
+      int next = targets[edge];
+      int cost = distance + weights[edge];
+      if (forwardGeneration[next] != generation || cost < forwardDistance[next]) {
+        forwardGeneration[next] = generation;
+        forwardDistance[next] = cost;
+        forwardParent[next] = node;
+        forwardHeap.insertOrDecrease(next, cost);
+      }
+    }
+  }
+
+  private void stepBackward() {
+    int node = backwardHeap.poll();
+    settled++;
+    int distance = backwardDistance[node];
+    if (forwardGeneration[node] == generation && distance + forwardDistance[node] < best) {
+      best = distance + forwardDistance[node];
+      meeting = node;
+    }
+
+    int[] targets = hierarchy.upTargets();
+    int[] weights = hierarchy.upWeights();
+    for (int edge = hierarchy.upStart(node), end = hierarchy.upEnd(node); edge < end; edge++) {
+      int next = targets[edge];
+      if (backwardGeneration[next] == generation
+          && backwardDistance[next] + weights[edge] < distance) {
+        return;
+      }
+    }
+
+    int[] sources = hierarchy.downSources();
+    weights = hierarchy.downWeights();
+    for (int edge = hierarchy.downStart(node), end = hierarchy.downEnd(node); edge < end; edge++) {
+      int prev = sources[edge];
+      int cost = distance + weights[edge];
+      if (backwardGeneration[prev] != generation || cost < backwardDistance[prev]) {
+        backwardGeneration[prev] = generation;
+        backwardDistance[prev] = cost;
+        backwardParent[prev] = node;
+        backwardHeap.insertOrDecrease(prev, cost);
+      }
+    }
+  }
+
+  /**
+   * Gets the length or cost of the path found by the last search.
+   *
+   * @return The number of hops, or the summed weights of every node after the source
+   */
+  public int getDistance() {
+    return best;
+  }
+
+  /** Gets the number of nodes the last search removed from either heap. */
+  public int getSettledCount() {
+    return settled;
+  }
+
+  @Override
+  public int tracePath(int dest) {
+    // The forward parents lead from the meeting node back down to the source
+    int length = 0;
+    for (int n = meeting; n >= 0; n = forwardParent[n]) {
+      append(n, length++);
+    }
+    for (int i = 0, j = length - 1; i < j; i++, j--) {
+      int swap = path[i];
+      path[i] = path[j];
+      path[j] = swap;
+    }
+    for (int n = backwardParent[meeting]; n >= 0; n = backwardParent[n]) {
+      append(n, length++);
+    }
+
+    // Unpack the hierarchy path edge by edge, from the end so it can be rewritten in place
+    int hierarchyLength = length;
+    int[] hops = Arrays.copyOf(path, hierarchyLength);
+    length = 1;
+    for (int i = 1; i < hierarchyLength; i++) {
+      length = unpack(hops[i - 1], hops[i], length);
+    }
+    return length;
+  }
+
+  /**
+   * Appends the original nodes an edge of the hierarchy stands for, after its start and up to and
+   * including its end, and returns the new path length.
+   */
+  private int unpack(int from, int to, int length) {
+    int top = 0;
+    stack[top++] = from;
+    stack[top++] = to;
+    while (top > 0) {
+      to = stack[--top];
+      from = stack[--top];
+      int middle = hierarchy.middleOf(from, to);
+      if (middle < 0) {
+        append(to, length++);
+        continue;
+      }
+      if (top + 4 > stack.length) {
+        stack = Arrays.copyOf(stack, 2 * stack.length);
+      }
+      // Push the second half first, so the first half is unpacked first
+      stack[top++] = middle;
+      stack[top++] = to;
+      stack[top++] = from;
+      stack[top++] = middle;
+    }
+    return length;
+  }
+
+  private void append(int node, int index) {
+    if (index == path.length) {
+      path = Arrays.copyOf(path, 2 * path.length + 1);
+    }
+    path[index] = node;
+  }
+
+  @Override
+  public int pathNode(int index) {
+    return path[index];
+  }
+
+  private void nextGeneration() {
+    generation++;
+    if (generation == 0) {
+      // The stamp wrapped around, so old marks could look current again
+      Arrays.fill(forwardGeneration, 0);
+      Arrays.fill(backwardGeneration, 0);
+      generation = 1;
+    }
+  }
+}
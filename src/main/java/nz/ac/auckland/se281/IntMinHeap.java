@@ -0,0 +1,123 @@
+package nz.ac.auckland.se281;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary min-heap of node IDs keyed by primitive int priorities, with decrease-key. Nodes
+ * with equal priority come out in ascending ID order, so searches that use it are deterministic.
+ * Nothing is boxed and nothing is allocated after construction.
+ */
+public class IntMinHeap {
+  private final int[] heap; // node IDs in heap order
+  private final int[] position; // index of each node in heap, or -1 if absent
+  private final int[] priority;
+  private int size;
+
+  /**
+   * Creates an empty heap that can hold the nodes 0 to capacity - 1.
+   *
+   * @param capacity The number of distinct node IDs
+   */
+  public IntMinHeap(int capacity) {
+    heap = new int[capacity];
+    position = new int[capacity];
+    priority = new int[capacity];
+    Arrays.fill(position, -1);
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Removes every node from the heap, in time proportional to the current size. */
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      position[heap[i]] = -1;
+    }
+    size = 0;
+  }
+
+  /**
+   * Inserts a node, or lowers its priority if it is already in the heap with a higher one.
+   *
+   * @param node The ID of the node
+   * @param newPriority The priority of the node
+   */
+  public void insertOrDecrease(int node, int newPriority) {
+    int index = position[node];
+    if (index < 0) {
+      index = size++;
+      heap[index] = node;
+      position[node] = index;
+    } else if (newPriority >= priority[node]) {
+      return;
+    }
+    priority[node] = newPriority;
+    siftUp(index);
+  }
+
+  /**
+   * Removes the node with the lowest priority.
+   *
+   * @return The ID of the removed node
+   */
+  public int poll() {
+    int top = heap[0];
+    position[top] = -1;
+    size--;
+    if (size > 0) {
+      heap[0] = heap[size];
+      position[heap[0]] = 0;
+      siftDown(0);
+    }
+    return top;
+  }
+
+  /**
+   * Gets the lowest priority in the heap, without removing its node.
+   *
+   * @return The priority of the node {@link #poll()} would remove next
+   */
+  public int peekPriority() {
+    return priority[heap[0]];
+  }
+
+  private boolean less(int a, int b) {
+    return priority[a] < priority[b] || (priority[a] == priority[b] && a < b);
+  }
+
+  private void siftUp(int index) {
+    int node = heap[index];
+    while (index > 0) {
+      int parentIndex = (index - 1) >>> 1;
+      int parent = heap[parentIndex];
+      if (!less(node, parent)) {
+        break;
+      }
+      heap[index] = parent;
+      position[parent] = index;
+      index = parentIndex;
+    }
+    heap[index] = node;
+    position[node] = index;
+  }
+
+  private void siftDown(int index) {
+    int node = heap[index];
+    int half = size >>> 1;
+    while (index < half) {
+      int child = 2 * index + 1;
+      if (child + 1 < size && less(heap[child + 1], heap[child])) {
+        child++;
+      }
+      if (!less(heap[child], node)) {
+        break;
+      }
+      heap[index] = heap[child];
+      position[heap[index]] = index;
+      index = child;
+    }
+    heap[index] = node;
+    position[node] = index;
+  }
+}
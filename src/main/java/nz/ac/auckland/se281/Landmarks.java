@@ -0,0 +1,212 @@
+package nz.ac.auckland.se281;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed distances between a few landmark nodes and every node, for the ALT lower bounds that
+ * {@link AltSearch} steers by (A*, Landmarks, Triangle inequality). For any landmark {@code L} the
+ * triangle inequality gives {@code d(v, t) >= d(L, t) - d(L, v)} and {@code d(v, t) >= d(v, L) -
+ * d(t, L)}, so the largest of these over all landmarks is a lower bound on the distance left.
+ *
+ * <p>The landmarks are picked by farthest-point selection: each new landmark is the node farthest
+ * (there and back) from its nearest landmark so far, with nodes no landmark reaches picked first,
+ * so that they spread out to the edges of the map. Distances either count hops or sum node weights
+ * the way {@link DijkstraSearch} does. They are stored node by node, so the bounds for one node
+ * are next to each other in the two {@code int[]} arrays, {@code 2 * k * n} ints in all.
+ */
+public class Landmarks {
+  /** The distance between a landmark and a node it has no path to or from. */
+  static final int UNREACHED = Integer.MAX_VALUE;
+
+  private final CsrGraph<?> graph;
+  private final boolean weighted;
+  private final int count;
+  private final int[] landmarks;
+  private final int[] fromLandmark; // [node * count + i] = distance from landmark i to node
+  private final int[] toLandmark; // [node * count + i] = distance from node to landmark i
+  private final long buildNanos;
+
+  /**
+   * Picks the landmarks and measures their distances.
+   *
+   * @param graph The graph to measure
+   * @param count The number of landmarks, capped at the number of nodes
+   * @param weighted whether to sum the graph's node weights instead of counting hops
+   * @throws IllegalArgumentException if the count is not positive, or weighted distances are asked
+   *     for on a graph with no node weights
+   */
+  public Landmarks(CsrGraph<?> graph, int count, boolean weighted) {
+    long startTime = System.nanoTime();
+    if (count <= 0) {
+      throw new IllegalArgumentException("Need at least one landmark");
+    }
+    if (weighted && !graph.hasWeights()) {
+      throw new IllegalArgumentException("Graph has no node weights");
+    }
+    this.graph = graph;
+    this.weighted = weighted;
+    int nodeCount = graph.nodeCount();
+    this.count = Math.min(count, nodeCount);
+    this.landmarks = new int[this.count];
+    this.fromLandmark = new int[nodeCount * this.count];
+    this.toLandmark = new int[nodeCount * this.count];
+
+    IntMinHeap heap = new IntMinHeap(nodeCount);
+    int[] forward = new int[nodeCount];
+    int[] backward = new int[nodeCount];
+
+    // The farthest node from node 0 is the first landmark, then each one is the farthest from the
+    // landmarks picked so far
+    long[] nearest = new long[nodeCount];
+    Arrays.fill(nearest, Long.MAX_VALUE);
+    if (nodeCount > 0) {
+      measure(heap, 0, false, forward);
+      measure(heap, 0, true, backward);
+      updateNearest(nearest, forward, backward);
+    }
+    for (int i = 0; i < this.count; i++) {
+      int landmark = farthest(nearest);
+      landmarks[i] = landmark;
+      measure(heap, landmark, false, forward);
+      measure(heap, landmark, true, backward);
+      for (int node = 0; node < nodeCount; node++) {
+        fromLandmark[node * this.count + i] = forward[node];
+        toLandmark[node * this.count + i] = backward[node];
+      }
+      if (i == 0) {
+        Arrays.fill(nearest, Long.MAX_VALUE); // node 0 was only a starting point
+      }
+      updateNearest(nearest, forward, backward);
+      nearest[landmark] = -1; // never pick the same node twice
+    }
+    this.buildNanos = System.nanoTime() - startTime;
+  }
+
+  /** Lowers each node's distance to its nearest landmark, counting a missing way as infinite. */
+  private static void updateNearest(long[] nearest, int[] forward, int[] backward) {
+    for (int node = 0; node < nearest.length; node++) {
+      long there = forward[node] == UNREACHED ? Long.MAX_VALUE / 2 : forward[node];
+      long back = backward[node] == UNREACHED ? Long.MAX_VALUE / 2 : backward[node];
+      nearest[node] = Math.min(nearest[node], there + back);
+    }
+  }
+
+  /** Gets the node farthest from its nearest landmark, the lowest ID on ties. */
+  private static int farthest(long[] nearest) {
+    int best = 0;
+    for (int node = 1; node < nearest.length; node++) {
+      if (nearest[node] > nearest[best]) {
+        best = node;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Measures the distance from a root to every node, or from every node to the root when walking
+   * backwards, with Dijkstra's algorithm. A hop costs the weight of the node it enters.
+   */
+  private void measure(IntMinHeap heap, int root, boolean backward, int[] distance) {
+    Arrays.fill(distance, UNREACHED);
+    heap.clear();
+    distance[root] = 0;
+    heap.insertOrDecrease(root, 0);
+    while (!heap.isEmpty()) {
+      int node = heap.poll();
+      // Walking an edge p -> node backwards still enters node, so it costs node's weight
+      int backwardCost = backward ? cost(node) : 0;
+      int[] edges = backward ? graph.sourcesOf(node) : graph.targetsOf(node);
+      int start = backward ? graph.inStart(node) : graph.start(node);
+      int end = backward ? graph.inEnd(node) : graph.end(node);
+      for (int edge = start; edge < end; edge++) {
+        int next = edges[edge];
+        int candidate = distance[node] + (backward ? backwardCost : cost(next));
+        if (candidate < distance[next]) {
+          distance[next] = candidate;
+          heap.insertOrDecrease(next, candidate);
+        }
+      }
+    }
+  }
+
+  private int cost(int node) {
+    return weighted ? graph.weight(node) : 1;
+  }
+
+  /**
+   * Gets a lower bound on the distance from one node to another.
+   *
+   * @param node The ID of the node to start from
+   * @param target The ID of the node to reach
+   * @return The largest triangle-inequality bound over all the landmarks, or 0 if none applies
+   */
+  public int lowerBound(int node, int target) {
+    int best = 0;
+    int nodeRow = node * count;
+    int targetRow = target * count;
+    for (int i = 0; i < count; i++) {
+      int landmarkToNode = fromLandmark[nodeRow + i];
+      int landmarkToTarget = fromLandmark[targetRow + i];
+      if (landmarkToNode != UNREACHED && landmarkToTarget != UNREACHED) {
+        best = Math.max(best, landmarkToTarget - landmarkToNode);
+      }
+      int nodeToLandmark = toLandmark[nodeRow + i];
+      int targetToLandmark = toLandmark[targetRow + i];
+      if (nodeToLandmark != UNREACHED && targetToLandmark != UNREACHED) {
+        best = Math.max(best, nodeToLandmark - targetToLandmark);
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Checks whether the landmarks prove there is no path between two nodes: some landmark reaches
+   * the source but not the target, or is reached from the target but not from the source.
+   *
+   * @param source The ID of the node to start from
+   * @param target The ID of the node to reach
+   * @return true if there is certainly no path, false if there may be one
+   */
+  public boolean provesUnreachable(int source, int target) {
+    int sourceRow = source * count;
+    int targetRow = target * count;
+    for (int i = 0; i < count; i++) {
+      if (fromLandmark[sourceRow + i] != UNREACHED && fromLandmark[targetRow + i] == UNREACHED) {
+        return true;
+      }
+      if (toLandmark[targetRow + i] != UNREACHED && toLandmark[sourceRow + i] == UNREACHED) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Gets the graph the landmarks were measured on. */
+  public CsrGraph<?> getGraph() {
+    return graph;
+  }
+
+  /** Gets whether the distances sum node weights rather than count hops. */
+  public boolean isWeighted() {
+    return weighted;
+  }
+
+  /**
+   * Gets the landmarks, in the order they were picked.
+   *
+   * @return The IDs of the landmark nodes
+   */
+  public int[] getLandmarks() {
+    return landmarks.clone();
+  }
+
+  /** Gets how long picking and measuring the landmarks took, in milliseconds. */
+  public long getBuildMillis() {
+    return buildNanos / 1_000_000;
+  }
+
+  /** Gets the size of the two distance arrays, in bytes. */
+  public long getMemoryBytes() {
+    return 4L * (fromLandmark.length + toLandmark.length);
+  }
+}
@@ -12,6 +12,9 @@ public class Main {
   public enum Command {
     INFO_COUNTRY(0, "Get info of country"),
     ROUTE(0, "Get shortest path"),
+    FUEL_ROUTE(0, "Get the path that uses the least fuel"),
+    NEAREST(0, "Get the nearest country in a continent"),
+    BATCH_ROUTE(2, "Get the shortest paths listed in a file, as csv or json"),
     HELP(0, "Print usage"),
     EXIT(0, "Exit the application");
 
@@ -215,6 +218,15 @@ public class Main {
       case ROUTE:
         game.showRoute();
         break;
+      case FUEL_ROUTE:
+        game.showFuelRoute();
+        break;
+      case NEAREST:
+        game.showNearestInContinent();
+        break;
+      case BATCH_ROUTE:
+        game.showBatchRoutes(args[1], args[2]);
+        break;
       case HELP:
         System.out.println(help());
         break;
@@ -1,5 +1,10 @@
 package nz.ac.auckland.se281;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -7,93 +12,307 @@ import java.util.Map;
 
 /** This class is the main entry point. */
 public class MapEngine {
+  private static final int ROUTE_CACHE_SIZE = 1024;
+  private static final String BUNDLED_MAP_DIRECTORY = "./src/main/resources";
+
   private Graph<String> countryGraph;
-  private Map<String, Country> countries;
+  private CountryRegistry countries;
+  private CountryNameIndex countryNames;
+  private CountryPrefixIndex countryPrefixes;
+  private RouteAnalyzer routeAnalyzer;
+  private RouteTable<String> routeTable;
+  private final RouteCache routeCache = new RouteCache(ROUTE_CACHE_SIZE);
+  private RouteService routeService;
+  private final Map<String, DistanceTree<String>> continentDistances = new HashMap<>();
+  private int continentDistancesVersion;
+  private ContinentOverlay<String> fuelOverlay;
+
+  private Path mapDirectory;
+  private Path snapshotFile;
+
+  /** What to load and which route preprocessing to build when creating a {@link MapEngine}. */
+  public static class Options {
+    private Path mapDirectory;
+    private Path snapshotFile;
+    private boolean routeTable;
+    private int landmarkCount;
+    private Path hierarchyFile;
+    private boolean continentOverlay;
+
+    /**
+     * Reads the options from system properties. {@code se281.mapDir}, {@code se281.snapshot} and
+     * {@code se281.hierarchy} name the map directory, snapshot file and hierarchy file, {@code
+     * se281.routeTable} and {@code se281.overlay} turn on the route table and continent overlay
+     * when set to true, and {@code se281.landmarks} gives the landmark count. Properties that are
+     * not set leave the defaults.
+     *
+     * @return The options
+     */
+    public static Options fromSystemProperties() {
+      String mapDir = System.getProperty("se281.mapDir");
+      String snapshot = System.getProperty("se281.snapshot");
+      String hierarchy = System.getProperty("se281.hierarchy");
+      return new Options()
+          .setMapDirectory(mapDir == null ? null : Paths.get(mapDir))
+          .setSnapshotFile(snapshot == null ? null : Paths.get(snapshot))
+          .setRouteTable(Boolean.getBoolean("se281.routeTable"))
+          .setLandmarkCount(Integer.getInteger("se281.landmarks", 0))
+          .setHierarchyFile(hierarchy == null ? null : Paths.get(hierarchy))
+          .setContinentOverlay(Boolean.getBoolean("se281.overlay"));
+    }
 
+    /**
+     * Sets the directory holding countries.csv and adjacencies.csv.
+     *
+     * @param mapDirectory The directory, or null for the bundled map (the default)
+     * @return These options
+     */
+    public Options setMapDirectory(Path mapDirectory) {
+      this.mapDirectory = mapDirectory;
+      return this;
+    }
+
+    /**
+     * Sets the binary snapshot to load the map from if it is up to date, and to write otherwise.
+     *
+     * @param snapshotFile The snapshot, or null to always load the CSV files (the default)
+     * @return These options
+     */
+    public Options setSnapshotFile(Path snapshotFile) {
+      this.snapshotFile = snapshotFile;
+      return this;
+    }
+
+    /**
+     * Sets whether to build an all-pairs route table, so that fewest-hop queries are answered by a
+     * table walk instead of a search. Off by default.
+     *
+     * @param routeTable whether to build the table
+     * @return These options
+     */
+    public Options setRouteTable(boolean routeTable) {
+      this.routeTable = routeTable;
+      return this;
+    }
+
+    /**
+     * Sets how many landmarks to measure by fuel cost, so that least-fuel routes are found with A*
+     * instead of Dijkstra.
+     *
+     * @param landmarkCount The number of landmarks, or 0 for none (the default)
+     * @return These options
+     */
+    public Options setLandmarkCount(int landmarkCount) {
+      this.landmarkCount = landmarkCount;
+      return this;
+    }
+
+    /**
+     * Sets the contraction hierarchy to find least-fuel routes in, read from the file if it
+     * matches the map and contracted and written there otherwise.
+     *
+     * @param hierarchyFile The hierarchy file, or null for no hierarchy (the default)
+     * @return These options
+     */
+    public Options setHierarchyFile(Path hierarchyFile) {
+      this.hierarchyFile = hierarchyFile;
+      return this;
+    }
+
+    /**
+     * Sets whether to measure a continent overlay by fuel cost, so that least-fuel routes only
+     * search the continents at either end in full. Off by default.
+     *
+     * @param continentOverlay whether to build the overlay
+     * @return These options
+     */
+    public Options setContinentOverlay(boolean continentOverlay) {
+      this.continentOverlay = continentOverlay;
+      return this;
+    }
+  }
+
+  /**
+   * Creates the engine with the options given by system properties, see {@link
+   * Options#fromSystemProperties}. With none set, this loads the bundled map and builds no route
+   * preprocessing.
+   */
   public MapEngine() {
-    // using LinkedHashMap to maintain insertion order
+    this(Options.fromSystemProperties());
+  }
+
+  /**
+   * Creates the engine and loads the map.
+   *
+   * @param options What to load and which route preprocessing to build
+   */
+  public MapEngine(Options options) {
+    this.mapDirectory = options.mapDirectory;
+    this.snapshotFile = options.snapshotFile;
     countryGraph = new Graph<>();
-    countries = new HashMap<>();
+    countries = new CountryRegistry();
     loadMap(); // keep this mehtod invocation
+    countryNames = new CountryNameIndex(countries);
+    routeAnalyzer = new RouteAnalyzer(countryGraph.snapshot(), countries);
+
+    if (options.routeTable) {
+      routeTable = new RouteTable<>(countryGraph.snapshot());
+      MessageCli.ROUTE_TABLE_INFO.printMessage(
+          String.valueOf(countries.size()),
+          String.valueOf(routeTable.getBuildMillis()),
+          String.valueOf(routeTable.getMemoryBytes()));
+    }
+    Landmarks fuelLandmarks = null;
+    if (options.landmarkCount > 0) {
+      fuelLandmarks = new Landmarks(countryGraph.snapshot(), options.landmarkCount, true);
+      MessageCli.LANDMARKS_INFO.printMessage(
+          String.valueOf(fuelLandmarks.getLandmarks().length),
+          String.valueOf(fuelLandmarks.getBuildMillis()),
+          String.valueOf(fuelLandmarks.getMemoryBytes()));
+    }
+    ContractionHierarchy<String> fuelHierarchy = null;
+    if (options.hierarchyFile != null) {
+      fuelHierarchy = loadHierarchy(options.hierarchyFile);
+      MessageCli.HIERARCHY_INFO.printMessage(
+          String.valueOf(fuelHierarchy.getShortcutCount()),
+          String.valueOf(fuelHierarchy.getCoreSize()),
+          String.valueOf(fuelHierarchy.getBuildMillis()));
+    }
+    routeService =
+        new RouteService(
+            countryGraph, countries, routeTable, fuelLandmarks, fuelHierarchy, routeCache);
+    if (options.continentOverlay) {
+      fuelOverlay =
+          new ContinentOverlay<>(
+              countryGraph.snapshot(), true, name -> countries.countryOf(name).getContinent());
+      routeService.setFuelOverlay(fuelOverlay);
+      MessageCli.OVERLAY_INFO.printMessage(
+          String.valueOf(fuelOverlay.getBoundaryCount()),
+          String.valueOf(fuelOverlay.getCellCount()),
+          String.valueOf(fuelOverlay.getBuildMillis()));
+    }
+  }
+
+  /** Reads the fuel hierarchy if the file matches the map, or contracts it and writes it out. */
+  private ContractionHierarchy<String> loadHierarchy(Path hierarchyFile) {
+    CsrGraph<String> graph = countryGraph.snapshot();
+    try {
+      ContractionHierarchy<String> saved = ContractionHierarchy.read(hierarchyFile, graph, true);
+      if (saved != null) {
+        return saved;
+      }
+    } catch (IOException e) {
+      System.err.println("Could not read the hierarchy: " + e.getMessage());
+    }
+    ContractionHierarchy<String> hierarchy = new ContractionHierarchy<>(graph, true);
+    try {
+      hierarchy.write(hierarchyFile);
+    } catch (IOException e) {
+      System.err.println("Could not write the hierarchy: " + e.getMessage());
+    }
+    return hierarchy;
   }
 
   /** invoked one time only when constracting the MapEngine class. */
   private void loadMap() {
+    Path directory = mapDirectory == null ? Paths.get(BUNDLED_MAP_DIRECTORY) : mapDirectory;
+    Path countriesFile = directory.resolve("countries.csv");
+    Path adjacenciesFile = directory.resolve("adjacencies.csv");
 
-    List<String> countries = Utils.readCountries();
-    List<String> adjacencies = Utils.readAdjacencies();
-
-    // Parse countries data
-    for (String countryLine : countries) {
-      String[] parts = countryLine.split(",");
-      String countryName = parts[0];
-      String continent = parts[1];
-      int fuelCost = Integer.parseInt(parts[2]);
-
-      Country country = new Country(countryName, continent, fuelCost);
-      this.countries.put(countryName, country);
-
-      // Add node to graph
-      countryGraph.addNode(countryName);
+    // Use the snapshot if the CSV files have not changed since it was written
+    Graph<String> snapshotGraph = null;
+    if (snapshotFile != null) {
+      CountryRegistry snapshotCountries = new CountryRegistry();
+      try {
+        snapshotGraph =
+            new MapSnapshot(snapshotFile).read(countriesFile, adjacenciesFile, snapshotCountries);
+      } catch (IOException e) {
+        System.err.println("Could not read the map snapshot: " + e.getMessage());
+      }
+      if (snapshotGraph != null) {
+        countries = snapshotCountries;
+      }
     }
-    // Parse adjacencies data
-    for (String adjacencyLine : adjacencies) {
-      String[] parts = adjacencyLine.split(",");
-      String countryName = parts[0];
 
-      // Skip if country doesn't exist (shouldn't happen with valid data)
-      if (!countryGraph.containsNode(countryName)) {
-        continue;
-      }
-      // Add each neighbour
-      for (int i = 1; i < parts.length; i++) {
-        String neighbour = parts[i];
-        // Only add if neighbour exists
-        if (countryGraph.containsNode(neighbour)) {
-          countryGraph.addEdge(countryName, neighbour);
-        }
+    if (snapshotGraph != null) {
+      countryGraph = snapshotGraph;
+    } else {
+      // Stream both files straight into the graph, with no intermediate list of lines
+      try {
+        countryGraph = new CsvMapLoader(countries).load(countriesFile, adjacenciesFile);
+        writeSnapshot(countriesFile, adjacenciesFile);
+      } catch (IOException | MapFormatException e) {
+        System.err.println("Could not load the map: " + e.getMessage());
+        // Drop the rows read before the failure, so the countries and the graph agree
+        countries = new CountryRegistry();
+        countryGraph = new Graph<>();
       }
     }
+    // Weight the countries by their fuel cost, later changes go through setFuelCost
+    countryGraph.setNodeWeights(name -> countries.fuelOf(countries.idOf(name)));
+    // Sort the country IDs by name for type-ahead, the names themselves are not copied
+    countryPrefixes = new CountryPrefixIndex(countries);
+  }
+
+  /** Writes the loaded map to the snapshot file, if there is one, for the next run to read. */
+  private void writeSnapshot(Path countriesFile, Path adjacenciesFile) {
+    if (snapshotFile == null) {
+      return;
+    }
+    try {
+      new MapSnapshot(snapshotFile)
+          .write(countriesFile, adjacenciesFile, countryGraph.snapshot(), countries);
+    } catch (IOException e) {
+      System.err.println("Could not write the map snapshot: " + e.getMessage());
+    }
   }
 
   /** this method is invoked when the user run the command info-country. */
   public void showInfoCountry() {
     MessageCli.INSERT_COUNTRY.printMessage();
 
-    String formattedCountry = getValidCountryName();
+    Country country = countries.countryOf(getValidCountryId());
 
-    // This shouldn't throw an exception now because getValidCountryName() ensures a valid country
-    try {
-      Country country = getCountry(formattedCountry);
+    // Get neighbors - LinkedHashSet already preserves insertion order
+    List<String> neighbours = new ArrayList<>(countryGraph.getNeighbors(country.getName()));
 
-      // Get neighbors - LinkedHashSet already preserves insertion order
-      List<String> neighbours = new ArrayList<>(countryGraph.getNeighbors(formattedCountry));
-
-      MessageCli.COUNTRY_INFO.printMessage(
-          country.getName(),
-          country.getContinent(),
-          String.valueOf(country.getFuelCost()),
-          neighbours.toString());
-    } catch (CountryNotFoundException e) {
-      // This should never happen, but just in case
-      System.err.println("Unexpected error: " + e.getMessage());
-    }
+    MessageCli.COUNTRY_INFO.printMessage(
+        country.getName(),
+        country.getContinent(),
+        String.valueOf(country.getFuelCost()),
+        neighbours.toString());
   }
 
   /**
-   * Get the country object by name.
+   * Get the ID a country has in the registry and the graph.
    *
    * @throws CountryNotFoundException if the country is not found
    */
-  private Country getCountry(String countryName) throws CountryNotFoundException {
-    if (!countries.containsKey(countryName)) {
+  private int countryIdOf(String countryName) throws CountryNotFoundException {
+    int id = countries.idOf(countryName);
+    if (id < 0) {
       throw new CountryNotFoundException(countryName);
     }
-    return countries.get(countryName);
+    return id;
   }
 
   /** this method is invoked when the user run the command route. */
   public void showRoute() {
+    showRoute(false);
+  }
+
+  /** this method is invoked when the user run the command fuel-route. */
+  public void showFuelRoute() {
+    showRoute(true);
+  }
+
+  /**
+   * Asks for a source and destination and prints the route between them with its fuel breakdown.
+   *
+   * @param leastFuel whether to pick the route that burns the least fuel instead of the one with
+   *     the fewest border crossings
+   */
+  private void showRoute(boolean leastFuel) {
     // Ask for the starting country
     MessageCli.INSERT_SOURCE.printMessage();
     String startCountry = getValidCountryName();
@@ -108,50 +327,248 @@ public class MapEngine {
       return;
     }
 
-    // Create a route analyzer
-    RouteAnalyzer analyzer = new RouteAnalyzer(countries);
+    RouteResult result;
+    try {
+      result = routeService.findRoute(startCountry, endCountry, leastFuel);
+    } catch (CountryNotFoundException e) {
+      // This should never happen, both names were checked by getValidCountryName()
+      System.err.println("Unexpected error: " + e.getMessage());
+      return;
+    }
 
-    // Find the shortest path using BFS via the Graph class
-    List<String> route = countryGraph.findShortestPath(startCountry, endCountry);
+    // Display the results
+    MessageCli.ROUTE_INFO.printMessage(result.getPath().toString());
+    MessageCli.FUEL_INFO.printMessage(String.valueOf(result.getTotalFuel()));
+    MessageCli.CONTINENT_INFO.printMessage(
+        routeAnalyzer.formatContinentFuel(result.getContinentFuel()));
 
-    // Calculate the fuel consumption
-    int totalFuel = analyzer.calculateFuelConsumption(route);
+    String highestFuelContinent = result.getHighestFuelContinent();
+    MessageCli.FUEL_CONTINENT_INFO.printMessage(
+        highestFuelContinent + " (" + result.getContinentFuel().get(highestFuelContinent) + ")");
+  }
 
-    // Get the continents visited with their fuel consumption
-    Map<String, Integer> continentFuel = analyzer.getContinentFuelConsumption(route);
+  /** this method is invoked when the user run the command nearest. */
+  public void showNearestInContinent() {
+    MessageCli.INSERT_COUNTRY.printMessage();
+    String country = getValidCountryName();
 
-    // Find the continent with the highest fuel consumption
-    String highestFuelContinent = analyzer.findHighestFuelContinent(continentFuel);
+    MessageCli.INSERT_CONTINENT.printMessage();
+    String continent = getValidContinentName();
 
-    // Display the results
+    // One backward search per continent answers the question for every country
+    if (continentDistancesVersion != countryGraph.getVersion()) {
+      continentDistances.clear();
+      continentDistancesVersion = countryGraph.getVersion();
+    }
+    DistanceTree<String> distances =
+        continentDistances.computeIfAbsent(continent, this::findDistancesToContinent);
+
+    List<String> route = distances.pathOf(country);
+    if (route.isEmpty()) {
+      MessageCli.NO_COUNTRY_REACHABLE.printMessage(continent, country);
+      return;
+    }
+    MessageCli.NEAREST_COUNTRY_INFO.printMessage(
+        continent, route.get(route.size() - 1), String.valueOf(route.size() - 1));
     MessageCli.ROUTE_INFO.printMessage(route.toString());
-    MessageCli.FUEL_INFO.printMessage(String.valueOf(totalFuel));
-    MessageCli.CONTINENT_INFO.printMessage(analyzer.formatContinentFuel(continentFuel));
+  }
 
-    // Only print if there are intermediate countries (fuel > 0)
+  /** Finds the distance from every country to the nearest country in the given continent. */
+  private DistanceTree<String> findDistancesToContinent(String continent) {
+    CsrGraph<String> graph = countryGraph.snapshot();
+    int continentId = countries.continentIdOf(continent);
+    List<String> members = new ArrayList<>();
+    for (int id = 0; id < graph.nodeCount(); id++) {
+      String name = graph.nodeOf(id);
+      if (countries.continentOf(countries.idOf(name)) == continentId) {
+        members.add(name);
+      }
+    }
+    return countryGraph.findDistancesTo(members);
+  }
 
-    MessageCli.FUEL_CONTINENT_INFO.printMessage(
-        highestFuelContinent + " (" + continentFuel.get(highestFuelContinent) + ")");
+  /**
+   * This method is invoked when the user runs the command batch-route. Every source,destination
+   * line of the file is answered with its shortest route, and the results are printed one line
+   * each in input order.
+   *
+   * @param fileName The file of source,destination lines
+   * @param formatName csv or json
+   */
+  public void showBatchRoutes(String fileName, String formatName) {
+    BatchRouter.Format format;
+    try {
+      format = BatchRouter.Format.valueOf(formatName.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      MessageCli.INVALID_BATCH_FORMAT.printMessage(formatName);
+      return;
+    }
+
+    PrintWriter out = new PrintWriter(System.out);
+    try {
+      new BatchRouter(routeService.getGraph(), countries).route(Paths.get(fileName), format, out);
+    } catch (IOException | InvalidPathException e) {
+      out.flush();
+      MessageCli.BATCH_READ_ERROR.printMessage(fileName);
+    }
   }
 
   /**
-   * Gets a valid country name from user input, prompting until valid. Reuses code from Task 1 for
-   * validation.
+   * Closes the border crossing from one country into another. Route queries that start afterwards
+   * no longer use it, while those already running finish on the map as it was.
+   *
+   * @param from The country the crossing leaves
+   * @param to The country the crossing enters
+   * @return Whether the crossing was open
+   * @throws CountryNotFoundException if either country is not on the map
    */
-  private String getValidCountryName() {
+  public boolean closeBorder(String from, String to) throws CountryNotFoundException {
+    countryIdOf(from);
+    countryIdOf(to);
+    int version = countryGraph.getVersion();
+    if (!countryGraph.removeEdge(from, to)) {
+      return false;
+    }
+    updateOverlay(version, from, to);
+    if (continentDistancesVersion == version) {
+      CsrGraph<String> graph = countryGraph.snapshot();
+      for (DistanceTree<String> distances : continentDistances.values()) {
+        distances.edgeRemoved(graph, from, to);
+      }
+      continentDistancesVersion = graph.getVersion();
+    }
+    return true;
+  }
+
+  /**
+   * Opens a border crossing from one country into another, after any the country already has.
+   *
+   * @param from The country the crossing leaves
+   * @param to The country the crossing enters
+   * @throws CountryNotFoundException if either country is not on the map
+   */
+  public void openBorder(String from, String to) throws CountryNotFoundException {
+    countryIdOf(from);
+    countryIdOf(to);
+    int version = countryGraph.getVersion();
+    countryGraph.addEdge(from, to);
+    updateOverlay(version, from, to);
+    if (continentDistancesVersion == version) {
+      // Repair the cached distances rather than searching every continent again
+      CsrGraph<String> graph = countryGraph.snapshot();
+      for (DistanceTree<String> distances : continentDistances.values()) {
+        distances.edgeAdded(graph, from, to);
+      }
+      continentDistancesVersion = graph.getVersion();
+    }
+  }
+
+  /**
+   * Changes the fuel cost of travelling through a country.
+   *
+   * @param countryName The country
+   * @param fuelCost The new fuel cost, which must not be negative
+   * @throws CountryNotFoundException if the country is not on the map
+   */
+  public void setFuelCost(String countryName, int fuelCost) throws CountryNotFoundException {
+    int id = countryIdOf(countryName);
+    int version = countryGraph.getVersion();
+    // Publish the new weight first, queries take their fuel costs from the graph version
+    countryGraph.setNodeWeight(countryName, fuelCost);
+    updateOverlay(version, countryName);
+    if (continentDistancesVersion == version) {
+      continentDistancesVersion = countryGraph.getVersion(); // Hop distances ignore fuel
+    }
+    countries.setFuelCost(id, fuelCost);
+  }
+
+  /**
+   * Measures again the overlay cells of the countries a change touched, so the overlay follows the
+   * map without being rebuilt for every continent.
+   *
+   * @param version The version of the graph before the change
+   * @param changed The countries whose borders or fuel cost changed
+   */
+  private void updateOverlay(int version, String... changed) {
+    if (fuelOverlay == null || fuelOverlay.getGraph().getVersion() != version) {
+      return;
+    }
+    CsrGraph<String> graph = countryGraph.snapshot();
+    int[] ids = new int[changed.length];
+    for (int i = 0; i < changed.length; i++) {
+      ids[i] = graph.idOf(changed[i]);
+    }
+    fuelOverlay = fuelOverlay.withCellsRebuilt(graph, ids);
+    routeService.setFuelOverlay(fuelOverlay);
+  }
+
+  /**
+   * Gets the thread-safe query API for the loaded map, for answering many route queries at once
+   * without the console.
+   *
+   * @return The route service
+   */
+  public RouteService getRouteService() {
+    return routeService;
+  }
+
+  /**
+   * Gets the index that resolves country names as typed, and suggests close names for those that
+   * are not found.
+   *
+   * @return The country name index
+   */
+  public CountryNameIndex getCountryNames() {
+    return countryNames;
+  }
+
+  /**
+   * Gets the index that completes partly typed country names.
+   *
+   * @return The country prefix index
+   */
+  public CountryPrefixIndex getCountryPrefixes() {
+    return countryPrefixes;
+  }
+
+  /**
+   * Gets the cache of recent route results, for inspecting its hit, miss and eviction counters.
+   *
+   * @return The route cache
+   */
+  public RouteCache getRouteCache() {
+    return routeCache;
+  }
+
+  /** Gets a valid continent name from user input, prompting until valid. */
+  private String getValidContinentName() {
     while (true) {
-      String formattedCountry = null;
-      try {
-        String inputCountry = Utils.scanner.nextLine();
-        formattedCountry = Utils.capitalizeFirstLetterOfEachWord(inputCountry);
+      String continent = CountryNameIndex.normalize(Utils.scanner.nextLine());
+      if (countries.continentIdOf(continent) >= 0) {
+        return continent;
+      }
+      MessageCli.INVALID_CONTINENT.printMessage(continent);
+    }
+  }
 
-        // this will throw an exception when the country is not found
-        getCountry(formattedCountry);
+  /** Gets a valid country name from user input, prompting until valid. */
+  private String getValidCountryName() {
+    return countries.nameOf(getValidCountryId());
+  }
 
-        return formattedCountry;
-      } catch (CountryNotFoundException e) {
-        MessageCli.INVALID_COUNTRY.printMessage(formattedCountry);
+  /**
+   * Gets the ID of a valid country from user input, prompting until valid. The input is resolved
+   * by the name index, so a name that is not found costs no exception, and is only capitalised
+   * for the error message.
+   */
+  private int getValidCountryId() {
+    while (true) {
+      String inputCountry = Utils.scanner.nextLine();
+      int id = countryNames.idOf(inputCountry);
+      if (id >= 0) {
+        return id;
       }
+      MessageCli.INVALID_COUNTRY.printMessage(CountryNameIndex.normalize(inputCountry));
     }
   }
 }
@@ -0,0 +1,43 @@
+package nz.ac.auckland.se281;
+
+/**
+ * Exception thrown when a map file has a row that cannot be parsed. The message names the file and
+ * line so the row can be found and fixed.
+ */
+public class MapFormatException extends Exception {
+  private static final long serialVersionUID = 1L;
+
+  private final String fileName;
+  private final long lineNumber;
+
+  /**
+   * Constructs a new exception for a malformed row.
+   *
+   * @param fileName The name of the file holding the row
+   * @param lineNumber The line number of the row, starting from 1
+   * @param problem What is wrong with the row
+   */
+  public MapFormatException(String fileName, long lineNumber, String problem) {
+    super(fileName + ":" + lineNumber + ": " + problem);
+    this.fileName = fileName;
+    this.lineNumber = lineNumber;
+  }
+
+  /**
+   * Gets the name of the file holding the malformed row.
+   *
+   * @return The file name
+   */
+  public String getFileName() {
+    return fileName;
+  }
+
+  /**
+   * Gets the line number of the malformed row.
+   *
+   * @return The line number, starting from 1
+   */
+  public long getLineNumber() {
+    return lineNumber;
+  }
+}
@@ -0,0 +1,319 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Generates synthetic maps in the same format as {@code countries.csv} and {@code adjacencies.csv},
+ * for load testing. Everything about a country (its fuel cost, position and neighbours) is derived
+ * from the seed and its ID alone, so the files are written row by row in constant memory and the
+ * same options always give the same files.
+ *
+ * <p>Usage: {@code MapGenerator --out=DIR [--countries=N] [--continents=C]
+ * [--topology=grid|geometric|scale-free] [--degree=D] [--min-fuel=A] [--max-fuel=B] [--seed=S]}
+ */
+public class MapGenerator {
+
+  /** How the countries are connected. */
+  public enum Topology {
+    /** A square lattice where every country borders up to four others. */
+    GRID,
+    /** Countries scattered over a plane, bordering every country within a fixed radius. */
+    GEOMETRIC,
+    /** Borders drawn towards a few hub countries, giving a power-law in-degree distribution. */
+    SCALE_FREE
+  }
+
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+  private int countries = 1000;
+  private int continents = 6;
+  private Topology topology = Topology.GRID;
+  private int degree = 4;
+  private int minFuel = 0;
+  private int maxFuel = 9;
+  private long seed = 281;
+  private int[] picked = new int[degree];
+
+  public MapGenerator setCountries(int countries) {
+    if (countries <= 0) {
+      throw new IllegalArgumentException("There must be at least one country");
+    }
+    this.countries = countries;
+    return this;
+  }
+
+  public MapGenerator setContinents(int continents) {
+    if (continents <= 0) {
+      throw new IllegalArgumentException("There must be at least one continent");
+    }
+    this.continents = continents;
+    return this;
+  }
+
+  public MapGenerator setTopology(Topology topology) {
+    this.topology = topology;
+    return this;
+  }
+
+  public MapGenerator setDegree(int degree) {
+    if (degree <= 0 || degree > 200) {
+      throw new IllegalArgumentException("The degree must be between 1 and 200");
+    }
+    this.degree = degree;
+    this.picked = new int[degree];
+    return this;
+  }
+
+  public MapGenerator setFuelRange(int minFuel, int maxFuel) {
+    if (minFuel < 0 || maxFuel < minFuel) {
+      throw new IllegalArgumentException("Invalid fuel range: " + minFuel + " to " + maxFuel);
+    }
+    this.minFuel = minFuel;
+    this.maxFuel = maxFuel;
+    return this;
+  }
+
+  public MapGenerator setSeed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  /**
+   * Writes {@code countries.csv} and {@code adjacencies.csv} into a directory.
+   *
+   * @param directory The directory to write to, created if needed
+   * @throws IOException if the files cannot be written
+   */
+  public void generate(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    try (Writer out =
+        Files.newBufferedWriter(directory.resolve("countries.csv"), StandardCharsets.UTF_8)) {
+      writeCountries(out);
+    }
+    try (Writer out =
+        Files.newBufferedWriter(directory.resolve("adjacencies.csv"), StandardCharsets.UTF_8)) {
+      writeAdjacencies(out);
+    }
+  }
+
+  /**
+   * Writes one {@code name,continent,fuel} line per country.
+   *
+   * @param out Where to write the lines
+   * @throws IOException if writing fails
+   */
+  public void writeCountries(Writer out) throws IOException {
+    for (int id = 0; id < countries; id++) {
+      int fuel = minFuel + (int) Long.remainderUnsigned(random(id, 0), maxFuel - minFuel + 1L);
+      out.write(countryName(id));
+      out.write(',');
+      out.write(continentName(id));
+      out.write(',');
+      out.write(Integer.toString(fuel));
+      out.write('\n');
+    }
+  }
+
+  /**
+   * Writes one {@code name,neighbour,neighbour,...} line per country.
+   *
+   * @param out Where to write the lines
+   * @throws IOException if writing fails
+   */
+  public void writeAdjacencies(Writer out) throws IOException {
+    for (int id = 0; id < countries; id++) {
+      out.write(countryName(id));
+      switch (topology) {
+        case GRID:
+          writeGridNeighbours(out, id);
+          break;
+        case GEOMETRIC:
+          writeGeometricNeighbours(out, id);
+          break;
+        default:
+          writeScaleFreeNeighbours(out, id);
+          break;
+      }
+      out.write('\n');
+    }
+  }
+
+  /** Gets the name of a country, which is a valid input once capitalised. */
+  static String countryName(int id) {
+    return "Country " + id;
+  }
+
+  /** Continents are contiguous ranges of IDs, so they are also connected regions of the map. */
+  private String continentName(int id) {
+    return "Continent " + (int) ((long) id * continents / countries);
+  }
+
+  private void writeGridNeighbours(Writer out, int id) throws IOException {
+    int side = (int) Math.ceil(Math.sqrt(countries));
+    int row = id / side;
+    int column = id % side;
+    if (row > 0) {
+      writeNeighbour(out, id - side);
+    }
+    if (column > 0) {
+      writeNeighbour(out, id - 1);
+    }
+    if (column + 1 < side && id + 1 < countries) {
+      writeNeighbour(out, id + 1);
+    }
+    if (id + side < countries) {
+      writeNeighbour(out, id + side);
+    }
+  }
+
+  /**
+   * The plane is split into square cells, each holding a consecutive run of IDs placed at random
+   * inside it. The border radius equals the cell size, so neighbours can only be in the 3 by 3
+   * block of cells around a country, and each cell holds about degree / pi countries so that
+   * countries have about degree neighbours.
+   */
+  private void writeGeometricNeighbours(Writer out, int id) throws IOException {
+    int perCell = Math.max(1, (int) Math.round(degree / Math.PI));
+    int cells = (countries + perCell - 1) / perCell;
+    int side = (int) Math.ceil(Math.sqrt(cells));
+
+    int cell = id / perCell;
+    double x = cell % side + unit(random(id, 1));
+    double y = cell / side + unit(random(id, 2));
+
+    for (int dy = -1; dy <= 1; dy++) {
+      for (int dx = -1; dx <= 1; dx++) {
+        int cellX = cell % side + dx;
+        int cellY = cell / side + dy;
+        if (cellX < 0 || cellX >= side || cellY < 0) {
+          continue;
+        }
+        int first = (cellY * side + cellX) * perCell;
+        int last = Math.min(first + perCell, countries);
+        for (int other = first; other < last; other++) {
+          if (other == id) {
+            continue;
+          }
+          double distanceX = cellX + unit(random(other, 1)) - x;
+          double distanceY = cellY + unit(random(other, 2)) - y;
+          if (distanceX * distanceX + distanceY * distanceY <= 1.0) {
+            writeNeighbour(out, other);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Each country borders up to degree others, picked as {@code countries * u^3} for uniform
+   * {@code u}. Low IDs are picked far more often, so they become hubs whose in-degree follows a
+   * power law (exponent about 2.5), like preferential attachment but without keeping any state.
+   * The borders are one-way: a hub's own line only lists its own picks.
+   */
+  private void writeScaleFreeNeighbours(Writer out, int id) throws IOException {
+    int count = 0;
+    for (int i = 0; i < degree; i++) {
+      double u = unit(random(id, 3 + i));
+      int other = (int) (countries * u * u * u);
+      if (other == id || contains(picked, count, other)) {
+        continue;
+      }
+      picked[count++] = other;
+      writeNeighbour(out, other);
+    }
+  }
+
+  private static boolean contains(int[] array, int length, int value) {
+    for (int i = 0; i < length; i++) {
+      if (array[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void writeNeighbour(Writer out, int id) throws IOException {
+    out.write(',');
+    out.write(countryName(id));
+  }
+
+  /** Gets a random 64-bit value for a country and purpose, using the SplitMix64 finaliser. */
+  private long random(int id, int stream) {
+    long z = seed + GOLDEN_GAMMA * (((long) id << 8) + stream + 1);
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /** Turns a random 64-bit value into a double in [0, 1). */
+  private static double unit(long random) {
+    return (random >>> 11) * 0x1.0p-53;
+  }
+
+  /**
+   * Generates a map from the command line, see the class description for the options.
+   *
+   * @param args The options, each written as {@code --name=value}
+   */
+  public static void main(String[] args) {
+    MapGenerator generator = new MapGenerator();
+    Path out = null;
+    int minFuel = generator.minFuel;
+    int maxFuel = generator.maxFuel;
+
+    try {
+      for (String arg : args) {
+        int equals = arg.indexOf('=');
+        if (!arg.startsWith("--") || equals < 0) {
+          throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+        }
+        String value = arg.substring(equals + 1);
+        switch (arg.substring(2, equals)) {
+          case "out":
+            out = Paths.get(value);
+            break;
+          case "countries":
+            generator.setCountries(Integer.parseInt(value));
+            break;
+          case "continents":
+            generator.setContinents(Integer.parseInt(value));
+            break;
+          case "topology":
+            generator.setTopology(Topology.valueOf(value.toUpperCase().replace('-', '_')));
+            break;
+          case "degree":
+            generator.setDegree(Integer.parseInt(value));
+            break;
+          case "min-fuel":
+            minFuel = Integer.parseInt(value);
+            break;
+          case "max-fuel":
+            maxFuel = Integer.parseInt(value);
+            break;
+          case "seed":
+            generator.setSeed(Long.parseLong(value));
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option: " + arg);
+        }
+      }
+      if (out == null) {
+        throw new IllegalArgumentException("Missing --out=DIR");
+      }
+      generator.setFuelRange(minFuel, maxFuel);
+      generator.generate(out);
+    } catch (IllegalArgumentException | IOException e) {
+      System.err.println(e.getMessage());
+      System.err.println(
+          "Usage: MapGenerator --out=DIR [--countries=N] [--continents=C]"
+              + " [--topology=grid|geometric|scale-free] [--degree=D] [--min-fuel=A]"
+              + " [--max-fuel=B] [--seed=S]");
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,238 @@
+package nz.ac.auckland.se281;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of a loaded map, so that later runs can skip parsing the CSV files. The file
+ * holds the country and continent names as UTF-8 dictionaries, each country's continent and fuel
+ * cost, and the CSR adjacency arrays, all as fixed-width big-endian sections that are read back
+ * with bulk copies out of a read-only memory mapping.
+ *
+ * <p>The header records the size and modification time of both CSV files, and a CRC-32C checksum
+ * of the whole file is stored at the end. A snapshot whose CSV files have changed since it was
+ * written, or whose checksum does not match, is ignored so the map is loaded from the CSV files.
+ *
+ * <p>Layout, after the header: continent name offsets and bytes, country name offsets and bytes,
+ * continent IDs, fuel costs, CSR offsets and CSR targets, then the checksum.
+ */
+public class MapSnapshot {
+  private static final long MAGIC = 0x53453238314D4150L; // "SE281MAP" in ASCII
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 64;
+  private static final int CHECKSUM_SIZE = 4;
+
+  private final Path file;
+
+  /**
+   * Creates a snapshot stored in the given file.
+   *
+   * @param file Where the snapshot is read from and written to
+   */
+  public MapSnapshot(Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Loads the map from the snapshot, if it is up to date with the CSV files.
+   *
+   * @param countriesFile The {@code countries.csv} the snapshot was written from
+   * @param adjacenciesFile The {@code adjacencies.csv} the snapshot was written from
+   * @param countries An empty registry to fill with the countries, whose IDs become the node IDs.
+   *     It may be left part-filled if the snapshot turns out not to be usable
+   * @return The frozen country graph, or null if the snapshot is missing, stale or corrupt
+   * @throws IOException if the snapshot exists but cannot be read
+   */
+  public Graph<String> read(Path countriesFile, Path adjacenciesFile, CountryRegistry countries)
+      throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_SIZE + CHECKSUM_SIZE || size > Integer.MAX_VALUE) {
+        return null;
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+
+    // Check the header before the checksum, so a stale snapshot is rejected without reading it all
+    if (buffer.getLong(0) != MAGIC
+        || buffer.getInt(8) != FORMAT_VERSION
+        || buffer.getLong(24) != Files.size(countriesFile)
+        || buffer.getLong(32) != Files.getLastModifiedTime(countriesFile).toMillis()
+        || buffer.getLong(40) != Files.size(adjacenciesFile)
+        || buffer.getLong(48) != Files.getLastModifiedTime(adjacenciesFile).toMillis()) {
+      return null;
+    }
+    int checksumAt = buffer.capacity() - CHECKSUM_SIZE;
+    CRC32C checksum = new CRC32C();
+    checksum.update(buffer.slice(0, checksumAt));
+    if ((int) checksum.getValue() != buffer.getInt(checksumAt)) {
+      return null;
+    }
+
+    int nodeCount = buffer.getInt(12);
+    int edgeCount = buffer.getInt(16);
+    int continentCount = buffer.getInt(20);
+    buffer.position(HEADER_SIZE);
+    try {
+      List<String> continents = readNames(buffer, continentCount);
+      List<String> names = readNames(buffer, nodeCount);
+      int[] continentIds = readInts(buffer, nodeCount);
+      int[] fuelCosts = readInts(buffer, nodeCount);
+      int[] offsets = readInts(buffer, nodeCount + 1);
+      int[] targets = readInts(buffer, edgeCount);
+      for (int id = 0; id < nodeCount; id++) {
+        countries.put(names.get(id), continents.get(continentIds[id]), fuelCosts[id]);
+      }
+      return new Graph<>(CsrGraph.of(countries, offsets, targets));
+    } catch (RuntimeException e) {
+      // The checksum matched, so this is a snapshot written by a different build; ignore it
+      return null;
+    }
+  }
+
+  /**
+   * Writes a snapshot of a loaded map. The file is written under a temporary name and then moved
+   * into place, so a reader never sees a half-written snapshot.
+   *
+   * @param countriesFile The {@code countries.csv} the map was loaded from
+   * @param adjacenciesFile The {@code adjacencies.csv} the map was loaded from
+   * @param graph The country graph
+   * @param countries The countries
+   * @throws IOException if the snapshot cannot be written
+   */
+  public void write(
+      Path countriesFile,
+      Path adjacenciesFile,
+      CsrGraph<String> graph,
+      CountryRegistry countries)
+      throws IOException {
+    int nodeCount = graph.nodeCount();
+
+    // Number the continents in order of first appearance
+    Map<String, Integer> continentIds = new LinkedHashMap<>();
+    int[] continentOf = new int[nodeCount];
+    int[] fuelCosts = new int[nodeCount];
+    for (int id = 0; id < nodeCount; id++) {
+      Country country = countries.countryOf(graph.nodeOf(id));
+      continentOf[id] =
+          continentIds.computeIfAbsent(country.getContinent(), c -> continentIds.size());
+      fuelCosts[id] = country.getFuelCost();
+    }
+
+    Path parent = file.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+    try {
+      CRC32C checksum = new CRC32C();
+      try (CheckedOutputStream checked =
+              new CheckedOutputStream(
+                  new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16), checksum);
+          DataOutputStream out = new DataOutputStream(checked)) {
+        out.writeLong(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(nodeCount);
+        out.writeInt(graph.edgeCount());
+        out.writeInt(continentIds.size());
+        out.writeLong(Files.size(countriesFile));
+        out.writeLong(Files.getLastModifiedTime(countriesFile).toMillis());
+        out.writeLong(Files.size(adjacenciesFile));
+        out.writeLong(Files.getLastModifiedTime(adjacenciesFile).toMillis());
+        out.write(new byte[HEADER_SIZE - out.size()]);
+
+        writeNames(out, new ArrayList<>(continentIds.keySet()));
+        List<String> names = new ArrayList<>(nodeCount);
+        for (int id = 0; id < nodeCount; id++) {
+          names.add(graph.nodeOf(id));
+        }
+        writeNames(out, names);
+        writeInts(out, continentOf);
+        writeInts(out, fuelCosts);
+        int offset = 0;
+        for (int id = 0; id < nodeCount; id++) {
+          out.writeInt(offset);
+          offset += graph.end(id) - graph.start(id);
+        }
+        out.writeInt(offset);
+        for (int id = 0; id < nodeCount; id++) {
+          int[] targets = graph.targetsOf(id);
+          for (int edge = graph.start(id), end = graph.end(id); edge < end; edge++) {
+            out.writeInt(targets[edge]);
+          }
+        }
+        out.writeInt((int) checksum.getValue());
+      }
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Writes a dictionary of names: the start of each name in the byte section plus the total
+   * length, then the UTF-8 bytes of every name, padded so the next section stays int-aligned.
+   */
+  private static void writeNames(DataOutputStream out, List<String> names) throws IOException {
+    byte[][] encoded = new byte[names.size()][];
+    int start = 0;
+    for (int i = 0; i < encoded.length; i++) {
+      encoded[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+      out.writeInt(start);
+      start += encoded[i].length;
+    }
+    out.writeInt(start);
+    for (byte[] name : encoded) {
+      out.write(name);
+    }
+    out.write(new byte[padding(start)]);
+  }
+
+  private static List<String> readNames(ByteBuffer buffer, int count) {
+    int[] starts = readInts(buffer, count + 1);
+    byte[] bytes = new byte[starts[count]];
+    buffer.get(bytes);
+    buffer.position(buffer.position() + padding(bytes.length));
+
+    List<String> names = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      names.add(new String(bytes, starts[i], starts[i + 1] - starts[i], StandardCharsets.UTF_8));
+    }
+    return names;
+  }
+
+  static void writeInts(DataOutputStream out, int[] values) throws IOException {
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  /** Copies a section of ints out of the buffer in one bulk transfer. */
+  static int[] readInts(ByteBuffer buffer, int count) {
+    int[] values = new int[count];
+    buffer.asIntBuffer().get(values);
+    buffer.position(buffer.position() + count * Integer.BYTES);
+    return values;
+  }
+
+  private static int padding(int length) {
+    return -length & (Integer.BYTES - 1);
+  }
+}
@@ -20,7 +20,23 @@ public enum MessageCli {
   ROUTE_INFO("The fastest route is: %s"),
   CONTINENT_INFO("You will visit the following continents: %s"),
   FUEL_INFO("You will spend this amount of fuel for your journey: %s units"),
-  FUEL_CONTINENT_INFO("The continent where you will spend the most fuel is: %s");
+  FUEL_CONTINENT_INFO("The continent where you will spend the most fuel is: %s"),
+  // ROUTE TABLE
+  ROUTE_TABLE_INFO("Precomputed the routes between %s countries in %s ms using %s bytes"),
+  // LANDMARKS
+  LANDMARKS_INFO("Measured the fuel costs to and from %s landmarks in %s ms using %s bytes"),
+  // HIERARCHY
+  HIERARCHY_INFO("Prepared a fuel hierarchy with %s shortcuts and a core of %s countries in %s ms"),
+  // OVERLAY
+  OVERLAY_INFO("Measured a continent overlay of %s border countries in %s continents in %s ms"),
+  // NEAREST
+  INSERT_CONTINENT("Insert the name of the continent: "),
+  INVALID_CONTINENT("ERROR! This continent was not found: %s, try again!"),
+  NEAREST_COUNTRY_INFO("The nearest country in %s is %s, %s border crossings away"),
+  NO_COUNTRY_REACHABLE("No country in %s can be reached from %s"),
+  // BATCH ROUTE
+  INVALID_BATCH_FORMAT("ERROR! Unknown output format: %s, use csv or json!"),
+  BATCH_READ_ERROR("ERROR! Could not read the routes file: %s");
 
   private final String msg;
 
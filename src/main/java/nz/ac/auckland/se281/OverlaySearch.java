@@ -0,0 +1,206 @@
+package nz.ac.auckland.se281;
+
+import java.util.Arrays;
+
+/**
+ * Dijkstra search over a {@link ContinentOverlay}. Countries in the continents of the source and
+ * destination are searched through their original borders. Any other continent is only entered
+ * at a boundary country, crossed in one step to each of its other boundary countries at the cost
+ * the overlay measured inside it, and left by a border into another continent, so the countries
+ * inside it are never settled.
+ *
+ * <p>A crossing is unpacked into countries when the path is traced, by a search confined to the
+ * continent from the boundary country it starts at to the one it ends at. The route has the same
+ * length or cost as one found by {@link BreadthFirstSearch} or {@link DijkstraSearch}, but where
+ * several routes are equally cheap it can be a different one. The working arrays are reused
+ * between queries, as in {@link DijkstraSearch}.
+ */
+public class OverlaySearch implements PathSearch {
+  private ContinentOverlay<?> overlay;
+  private final IntMinHeap heap;
+  private final int[] distance;
+  private final int[] parent;
+  private final boolean[] crossed; // whether a node was reached by crossing its whole cell
+  private final int[] seenGeneration;
+  private final ContinentOverlay.CellSearch cellSearch;
+  private int generation;
+  private int settled;
+  private int[] path;
+
+  /**
+   * Creates a search engine for the graph the overlay was built for.
+   *
+   * @param overlay The overlay to search
+   */
+  public OverlaySearch(ContinentOverlay<?> overlay) {
+    this.overlay = overlay;
+    int nodeCount = overlay.getGraph().nodeCount();
+    this.heap = new IntMinHeap(nodeCount);
+    this.distance = new int[nodeCount];
+    this.parent = new int[nodeCount];
+    this.crossed = new boolean[nodeCount];
+    this.seenGeneration = new int[nodeCount];
+    this.cellSearch = new ContinentOverlay.CellSearch(nodeCount);
+    this.path = new int[Math.min(nodeCount, 1024)];
+  }
+
+  @Override
+  public CsrGraph<?> getGraph() {
+    return overlay.getGraph();
+  }
+
+  /**
+   * Points the engine at another version of the graph. An overlay only holds for the version it
+   * was built on, and measuring every cell again takes far longer than a query, so this does not
+   * do it: rebuild the changed cells with {@link ContinentOverlay#withCellsRebuilt} and pass the
+   * result to {@link #setOverlay}.
+   *
+   * @throws IllegalArgumentException if the graph is not the one the overlay was built on
+   */
+  @Override
+  public void setGraph(CsrGraph<?> graph) {
+    if (graph != overlay.getGraph()) {
+      throw new IllegalArgumentException("Overlay was built on another version of the graph");
+    }
+  }
+
+  /**
+   * Points the engine at another overlay over the same nodes, keeping the working arrays it has.
+   *
+   * @param overlay The overlay to search from now on
+   * @throws IllegalArgumentException if the node count differs from the current graph's
+   */
+  public void setOverlay(ContinentOverlay<?> overlay) {
+    if (overlay.getGraph().nodeCount() != distance.length) {
+      throw new IllegalArgumentException("Graph has a different number of nodes");
+    }
+    this.overlay = overlay;
+  }
+
+  /**
+   * Gets the overlay the engine searches.
+   *
+   * @return The overlay
+   */
+  public ContinentOverlay<?> getOverlay() {
+    return overlay;
+  }
+
+  @Override
+  public boolean search(int source, int dest) {
+    nextGeneration();
+    heap.clear();
+    settled = 0;
+    CsrGraph<?> graph = overlay.getGraph();
+    boolean weighted = overlay.isWeighted();
+    int sourceCell = overlay.cellOf(source);
+    int destCell = overlay.cellOf(dest);
+
+    seenGeneration[source] = generation;
+    distance[source] = 0;
+    parent[source] = -1;
+    crossed[source] = false;
+    heap.insertOrDecrease(source, 0);
+
+    while (!heap.isEmpty()) {
+      int node = heap.poll();
+      settled++;
+      if (node == dest) {
+        return true;
+      }
+      int cell = overlay.cellOf(node);
+      boolean endCell = cell == sourceCell || cell == destCell;
+
+      // Away from both ends only boundary countries are reached. One that was entered by a border
+      // crosses its cell, and one reached by a crossing can only leave the cell, since the
+      // measured costs already include every way on through the cell
+      if (!endCell && !crossed[node]) {
+        int[] boundary = overlay.boundary(cell);
+        int[] costs = overlay.costs(cell);
+        int row = overlay.slot(node) * boundary.length;
+        for (int i = 0; i < boundary.length; i++) {
+          if (costs[row + i] != ContinentOverlay.UNREACHED && boundary[i] != node) {
+            relax(node, boundary[i], distance[node] + costs[row + i], true);
+          }
+        }
+      }
+
+      int[] targets = graph.targetsOf(node);
+      for (int edge = graph.start(node), end = graph.end(node); edge < end; edge++) {
+        int next = targets[edge];
+        if (endCell || overlay.cellOf(next) != cell) {
+          relax(node, next, distance[node] + (weighted ? graph.weight(next) : 1), false);
+        }
+      }
+    }
+    return false;
+  }
+
+  private void relax(int node, int next, int cost, boolean crossing) {
+    if (seenGeneration[next] != generation || cost < distance[next]) {
+      seenGeneration[next] = generation;
+      distance[next] = cost;
+      parent[next] = node;
+      crossed[next] = crossing;
+      heap.insertOrDecrease(next, cost);
+    }
+  }
+
+  /**
+   * Gets the total cost of the cheapest path to a node found by the last search.
+   *
+   * @param node The ID of a reached node
+   * @return The number of hops, or the summed weights of every node after the source
+   */
+  public int distanceTo(int node) {
+    return distance[node];
+  }
+
+  /** Gets the number of nodes the last search removed from the heap. */
+  public int getSettledCount() {
+    return settled;
+  }
+
+  @Override
+  public int tracePath(int dest) {
+    // Walk the overlay path back from the destination, unpacking each crossing backwards too
+    int length = 0;
+    for (int n = dest; n >= 0; n = parent[n]) {
+      if (parent[n] >= 0 && crossed[n]) {
+        overlay.searchCell(cellSearch, parent[n], n);
+        for (int m = n; m != parent[n]; m = cellSearch.parent(m)) {
+          append(m, length++);
+        }
+      } else {
+        append(n, length++);
+      }
+    }
+    for (int i = 0, j = length - 1; i < j; i++, j--) {
+      int swap = path[i];
+      path[i] = path[j];
+      path[j] = swap;
+    }
+    return length;
+  }
+
+  private void append(int node, int index) {
+    if (index == path.length) {
+      path = Arrays.copyOf(path, 2 * path.length + 1);
+    }
+    path[index] = node;
+  }
+
+  @Override
+  public int pathNode(int index) {
+    return path[index];
+  }
+
+  private void nextGeneration() {
+    generation++;
+    if (generation == 0) {
+      // The stamp wrapped around, so old marks could look current again
+      Arrays.fill(seenGeneration, 0);
+      generation = 1;
+    }
+  }
+}
@@ -0,0 +1,200 @@
+package nz.ac.auckland.se281;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Level-synchronous breadth-first search that expands each frontier level in parallel on a {@link
+ * ForkJoinPool}. The frontier is cut into fixed-size chunks and each chunk is expanded by one
+ * fork-join task, which claims newly discovered nodes by setting their bit in a shared visited
+ * bitset with a compare-and-set on the whole {@code long} word, so exactly one task becomes each
+ * node's parent. Every chunk writes the nodes it claims into a buffer of its own, and the buffers
+ * are then concatenated into the next frontier in chunk order, so no locks are needed.
+ *
+ * <p>The path has the same length as a plain BFS. Which of several equally near parents a node
+ * gets depends on the thread timing, so the path itself can differ between runs. One search runs
+ * at a time per instance, although each search uses many threads.
+ */
+public class ParallelBreadthFirstSearch implements PathSearch {
+  private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+  /** The number of frontier nodes expanded by one task. */
+  private static final int CHUNK_SIZE = 256;
+
+  private CsrGraph<?> graph;
+  private final ForkJoinPool pool;
+  private final long[] visited;
+  private final int[] parent;
+  private final int[] path;
+  private int[] frontier;
+  private int[] nextFrontier;
+  private int[][] buffers = new int[0][];
+  private int[] counts = new int[0];
+
+  /**
+   * Creates a search engine for the given graph that runs on the common fork-join pool.
+   *
+   * @param graph The graph to search
+   */
+  public ParallelBreadthFirstSearch(CsrGraph<?> graph) {
+    this(graph, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates a search engine for the given graph that runs on the given pool.
+   *
+   * @param graph The graph to search
+   * @param pool The pool whose threads expand the frontier levels
+   */
+  public ParallelBreadthFirstSearch(CsrGraph<?> graph, ForkJoinPool pool) {
+    this.graph = graph;
+    this.pool = pool;
+    int nodeCount = graph.nodeCount();
+    this.visited = new long[(nodeCount + 63) >>> 6];
+    this.parent = new int[nodeCount];
+    this.path = new int[nodeCount];
+    this.frontier = new int[nodeCount];
+    this.nextFrontier = new int[nodeCount];
+  }
+
+  @Override
+  public CsrGraph<?> getGraph() {
+    return graph;
+  }
+
+  @Override
+  public void setGraph(CsrGraph<?> graph) {
+    if (graph.nodeCount() != this.graph.nodeCount()) {
+      throw new IllegalArgumentException("Graph has a different number of nodes");
+    }
+    this.graph = graph;
+  }
+
+  @Override
+  public boolean search(int source, int dest) {
+    Arrays.fill(visited, 0L);
+    visited[source >>> 6] |= 1L << source;
+    parent[source] = -1;
+    if (source == dest) {
+      return true;
+    }
+
+    frontier[0] = source;
+    int frontierSize = 1;
+    while (frontierSize > 0) {
+      int chunks = (frontierSize + CHUNK_SIZE - 1) / CHUNK_SIZE;
+      if (buffers.length < chunks) {
+        buffers = Arrays.copyOf(buffers, Math.max(chunks, buffers.length * 2));
+        counts = new int[buffers.length];
+      }
+      // A single chunk is cheaper to expand on this thread than to hand to the pool
+      if (chunks == 1) {
+        expandChunk(0, frontierSize);
+      } else {
+        pool.invoke(new LevelTask(0, chunks, frontierSize));
+      }
+
+      // Concatenate the chunk buffers into the next frontier, in chunk order
+      int nextSize = 0;
+      for (int chunk = 0; chunk < chunks; chunk++) {
+        System.arraycopy(buffers[chunk], 0, nextFrontier, nextSize, counts[chunk]);
+        nextSize += counts[chunk];
+      }
+      int[] swap = frontier;
+      frontier = nextFrontier;
+      nextFrontier = swap;
+      frontierSize = nextSize;
+
+      if ((visited[dest >>> 6] & (1L << dest)) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Expands one chunk of the frontier into that chunk's own buffer. */
+  private void expandChunk(int chunk, int frontierSize) {
+    int[] buffer = buffers[chunk];
+    if (buffer == null) {
+      buffer = new int[CHUNK_SIZE * 4];
+    }
+    int count = 0;
+    for (int i = chunk * CHUNK_SIZE, end = Math.min(i + CHUNK_SIZE, frontierSize); i < end; i++) {
+      int node = frontier[i];
+      int[] targets = graph.targetsOf(node);
+      for (int edge = graph.start(node), last = graph.end(node); edge < last; edge++) {
+        int next = targets[edge];
+        if (claim(next)) {
+          parent[next] = node;
+          if (count == buffer.length) {
+            buffer = Arrays.copyOf(buffer, count * 2);
+          }
+          buffer[count++] = next;
+        }
+      }
+    }
+    buffers[chunk] = buffer;
+    counts[chunk] = count;
+  }
+
+  /** Marks a node as visited, returning true only for the one caller that marked it first. */
+  private boolean claim(int node) {
+    int word = node >>> 6;
+    long bit = 1L << node;
+    long old = (long) WORDS.getAcquire(visited, word);
+    while ((old & bit) == 0) {
+      long witness = (long) WORDS.compareAndExchange(visited, word, old, old | bit);
+      if (witness == old) {
+        return true;
+      }
+      old = witness;
+    }
+    return false;
+  }
+
+  /** Expands a range of frontier chunks, splitting it in half until one chunk is left. */
+  private class LevelTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+    private final int frontierSize;
+
+    private LevelTask(int from, int to, int frontierSize) {
+      this.from = from;
+      this.to = to;
+      this.frontierSize = frontierSize;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        expandChunk(from, frontierSize);
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new LevelTask(from, middle, frontierSize), new LevelTask(middle, to, frontierSize));
+    }
+  }
+
+  @Override
+  public int tracePath(int dest) {
+    int length = 0;
+    for (int n = dest; n >= 0; n = parent[n]) {
+      length++;
+    }
+    int i = length;
+    for (int n = dest; n >= 0; n = parent[n]) {
+      path[--i] = n;
+    }
+    return length;
+  }
+
+  @Override
+  public int pathNode(int index) {
+    return path[index];
+  }
+}
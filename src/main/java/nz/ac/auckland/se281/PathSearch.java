@@ -0,0 +1,44 @@
+package nz.ac.auckland.se281;
+
+/**
+ * A reusable shortest-path search over the dense node IDs of a {@link CsrGraph}. Implementations
+ * keep their working arrays between queries and are not thread-safe.
+ */
+public interface PathSearch {
+
+  /** Gets the graph this engine searches. */
+  CsrGraph<?> getGraph();
+
+  /**
+   * Points the engine at another version of its graph, keeping the working arrays it has.
+   *
+   * @param graph The version to search from now on, which must have the same number of nodes
+   * @throws IllegalArgumentException if the node count differs from the current graph's
+   */
+  void setGraph(CsrGraph<?> graph);
+
+  /**
+   * Searches for a path from the source to the destination.
+   *
+   * @param source The ID of the starting node
+   * @param dest The ID of the destination node
+   * @return true if a path was found
+   */
+  boolean search(int source, int dest);
+
+  /**
+   * Reconstructs the path found by the last search into an internal buffer.
+   *
+   * @param dest The ID of the destination passed to the last search
+   * @return The number of nodes on the path, including both ends
+   */
+  int tracePath(int dest);
+
+  /**
+   * Gets a node of the path built by the last call to {@link #tracePath(int)}.
+   *
+   * @param index The position on the path, 0 being the source
+   * @return The ID of the node at that position
+   */
+  int pathNode(int index);
+}
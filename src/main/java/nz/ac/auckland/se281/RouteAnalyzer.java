@@ -3,13 +3,257 @@ package nz.ac.auckland.se281;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
-/** Handles analysis of routes for the Risk game. */
+/**
+ * Handles analysis of routes for the Risk game.
+ *
+ * <p>An analyzer made for one graph version also works on the version's dense node IDs: it copies
+ * each country's fuel cost into an {@code int[]} and takes the continent IDs of a {@link
+ * CountryRegistry} as a {@code short[]}, so {@link #tally} finds a route's total fuel, fuel per
+ * continent and highest continent in one pass with no hashing, boxing or allocation. {@link
+ * #evaluateTree} goes further and tallies the route while it reads it off a search's parent table,
+ * giving a {@link RouteEvaluation} that only names its countries when it is printed.
+ */
 public class RouteAnalyzer {
-  private Map<String, Country> countries;
+  private Function<String, String> continentOf;
+  private ToIntFunction<String> fuelCost;
+  private CountryRegistry registry;
+  private CsrGraph<String> graph;
+  private int[] fuelById;
+  private short[] continentById;
+  private String[] continentNames;
 
   public RouteAnalyzer(Map<String, Country> countries) {
-    this.countries = countries;
+    this(countries, name -> countries.get(name).getFuelCost());
+  }
+
+  /**
+   * Creates an analyzer that takes each country's fuel cost from somewhere other than its {@link
+   * Country}, such as the node weights of one graph version.
+   *
+   * @param countries The countries, keyed by name, for their continents
+   * @param fuelCost Gives the fuel cost of each country
+   */
+  public RouteAnalyzer(Map<String, Country> countries, ToIntFunction<String> fuelCost) {
+    this(name -> countries.get(name).getContinent(), fuelCost);
+  }
+
+  private RouteAnalyzer(Function<String, String> continentOf, ToIntFunction<String> fuelCost) {
+    this.continentOf = continentOf;
+    this.fuelCost = fuelCost;
+  }
+
+  /**
+   * Creates an analyzer for the dense node IDs of one graph version, taking the fuel costs from its
+   * node weights, or from the countries if it has none. The continents are numbered as the
+   * registry numbers them, and a graph made over the registry shares its continent IDs outright.
+   *
+   * @param graph The country graph
+   * @param countries The countries, for their continents
+   */
+  public RouteAnalyzer(CsrGraph<String> graph, CountryRegistry countries) {
+    this(graph, countries, null);
+  }
+
+  /**
+   * Creates an analyzer for a newer version of a graph, taking the continents from the analyzer of
+   * an older version with the same nodes and only copying the fuel costs again.
+   */
+  private RouteAnalyzer(
+      CsrGraph<String> graph, CountryRegistry countries, RouteAnalyzer previous) {
+    this(name -> countries.countryOf(name).getContinent(), fuelOf(graph, countries));
+    this.registry = countries;
+    this.graph = graph;
+    int nodeCount = graph.nodeCount();
+    // A graph made over the registry has its IDs, otherwise each node is found by name once
+    int[] countryIds = graph.isIndexedBy(countries) ? null : new int[nodeCount];
+    if (countryIds != null) {
+      for (int id = 0; id < nodeCount; id++) {
+        countryIds[id] = countries.idOf(graph.nodeOf(id));
+      }
+    }
+    this.fuelById = new int[nodeCount];
+    boolean weighted = graph.hasWeights();
+    for (int id = 0; id < nodeCount; id++) {
+      fuelById[id] =
+          weighted ? graph.weight(id) : countries.fuelOf(countryIds == null ? id : countryIds[id]);
+    }
+    if (previous != null) {
+      this.continentById = previous.continentById;
+      this.continentNames = previous.continentNames;
+      return;
+    }
+
+    if (countryIds == null) {
+      this.continentById = countries.continentIds();
+    } else {
+      this.continentById = new short[nodeCount];
+      for (int id = 0; id < nodeCount; id++) {
+        continentById[id] = (short) countries.continentOf(countryIds[id]);
+      }
+    }
+    this.continentNames = new String[countries.getContinentCount()];
+    for (int continent = 0; continent < continentNames.length; continent++) {
+      continentNames[continent] = countries.continentName(continent);
+    }
+  }
+
+  private static ToIntFunction<String> fuelOf(
+      CsrGraph<String> graph, CountryRegistry countries) {
+    if (graph.hasWeights()) {
+      return name -> graph.weight(graph.idOf(name));
+    }
+    return name -> countries.fuelOf(countries.idOf(name));
+  }
+
+  /**
+   * Gets an analyzer for another version of the graph this one was made for, reusing the
+   * continent numbering when the versions have the same nodes.
+   *
+   * @param graph The other version
+   * @return An analyzer for that version, or this one if it is the same version
+   * @throws IllegalStateException if this analyzer was not made for a graph
+   */
+  public RouteAnalyzer forGraph(CsrGraph<String> graph) {
+    if (this.graph == null) {
+      throw new IllegalStateException("Analyzer was not made for a graph");
+    }
+    if (graph == this.graph) {
+      return this;
+    }
+    boolean sameNodes = graph.nodeCount() == this.graph.nodeCount();
+    return new RouteAnalyzer(graph, registry, sameNodes ? this : null);
+  }
+
+  /**
+   * Gets the graph version the analyzer was made for.
+   *
+   * @return The graph, or null if the analyzer works on country names only
+   */
+  public CsrGraph<String> getGraph() {
+    return graph;
+  }
+
+  /**
+   * Gets the number of continents the analyzer numbered, the size a {@link FuelTally} needs.
+   *
+   * @return The number of continents
+   */
+  public int getContinentCount() {
+    return continentNames.length;
+  }
+
+  /**
+   * Gets the name of a continent numbered by the analyzer.
+   *
+   * @param continent The continent's ID, or -1
+   * @return The continent name, or null for -1
+   */
+  public String continentName(int continent) {
+    return continent < 0 ? null : continentNames[continent];
+  }
+
+  /**
+   * Tallies the fuel a route of node IDs burns in one pass. The source and destination are counted
+   * towards their continents but burn no fuel, as in {@link #getContinentFuelConsumption}.
+   *
+   * @param route The node IDs along the route, source first
+   * @param length The number of nodes on the route, from the start of the array
+   * @param tally The tally to fill, which is cleared first
+   */
+  public void tally(int[] route, int length, FuelTally tally) {
+    tally.clear();
+    for (int i = 0; i < length; i++) {
+      int node = route[i];
+      tally.add(continentById[node], i > 0 && i < length - 1 ? fuelById[node] : 0);
+    }
+  }
+
+  /**
+   * Evaluates the route a search found to a node, reconstructing its node IDs from the search's
+   * parent table and tallying its fuel in the same walk, so no country name is looked up.
+   *
+   * @param tree The search, whose last search reached the destination
+   * @param dest The ID of the destination, which must have been reached, see {@link #noRoute}
+   * @param tally The tally to fill on the way, which is cleared first
+   * @return The route and its fuel breakdown
+   */
+  public RouteEvaluation evaluateTree(SearchTree tree, int dest, FuelTally tally) {
+    tally.clear();
+    int length = 0;
+    for (int n = dest; n >= 0; n = tree.parentOf(n)) {
+      length++;
+    }
+    // Walk the parents again, filling the path from the back and tallying each country on the way
+    int[] path = new int[length];
+    int i = length;
+    for (int n = dest; n >= 0; n = tree.parentOf(n)) {
+      path[--i] = n;
+      tally.addBackward(continentById[n], i > 0 && i < length - 1 ? fuelById[n] : 0, i);
+    }
+    tally.finishBackward();
+    return new RouteEvaluation(this, path, tally);
+  }
+
+  /**
+   * Evaluates a route already traced into a search's path buffer, for engines that unpack their
+   * paths instead of keeping a parent table.
+   *
+   * @param search The search whose last traced path is the route
+   * @param length The number of nodes on the path
+   * @param tally The tally to fill, which is cleared first
+   * @return The route and its fuel breakdown
+   */
+  public RouteEvaluation evaluateTraced(PathSearch search, int length, FuelTally tally) {
+    int[] path = new int[length];
+    for (int i = 0; i < length; i++) {
+      path[i] = search.pathNode(i);
+    }
+    tally(path, length, tally);
+    return new RouteEvaluation(this, path, tally);
+  }
+
+  /**
+   * Evaluates the answer to a query whose destination was not reached.
+   *
+   * @param tally The tally to fill, which is cleared first
+   * @return An evaluation with no countries and no fuel
+   */
+  public RouteEvaluation noRoute(FuelTally tally) {
+    tally.clear();
+    return new RouteEvaluation(this, new int[0], tally);
+  }
+
+  /**
+   * Evaluates a route of country names, looking each name up once.
+   *
+   * @param route The countries along the route, source first, or an empty list
+   * @param tally The tally to fill, which is cleared first
+   * @return The route and its fuel breakdown
+   */
+  public RouteEvaluation evaluate(List<String> route, FuelTally tally) {
+    int[] path = new int[route.size()];
+    for (int i = 0; i < path.length; i++) {
+      path[i] = graph.idOf(route.get(i));
+    }
+    tally(path, path.length, tally);
+    return new RouteEvaluation(this, path, tally);
+  }
+
+  /**
+   * Turns a tally into the map {@link #getContinentFuelConsumption} would have built.
+   *
+   * @param tally A filled tally
+   * @return The fuel per continent, in the order the continents are visited
+   */
+  public Map<String, Integer> continentFuelOf(FuelTally tally) {
+    Map<String, Integer> continentFuel = new LinkedHashMap<>();
+    for (int i = 0; i < tally.getContinentCount(); i++) {
+      continentFuel.put(continentNames[tally.continentAt(i)], tally.fuelAt(i));
+    }
+    return continentFuel;
   }
 
   /**
@@ -21,7 +265,7 @@ public class RouteAnalyzer {
 
     // Skip the first and last country
     for (int i = 1; i < route.size() - 1; i++) {
-      totalFuel += countries.get(route.get(i)).getFuelCost();
+      totalFuel += fuelCost.applyAsInt(route.get(i));
     }
 
     return totalFuel;
@@ -36,7 +280,7 @@ public class RouteAnalyzer {
 
     for (int i = 0; i < route.size(); i++) {
       String country = route.get(i);
-      String continent = countries.get(country).getContinent();
+      String continent = continentOf.apply(country);
 
       // Add continent if not already in the map
       if (!continentFuel.containsKey(continent)) {
@@ -46,7 +290,7 @@ public class RouteAnalyzer {
       // Add fuel for intermediate countries only
       if (i > 0 && i < route.size() - 1) {
         int currentFuel = continentFuel.get(continent);
-        continentFuel.put(continent, currentFuel + countries.get(country).getFuelCost());
+        continentFuel.put(continent, currentFuel + fuelCost.applyAsInt(country));
       }
     }
 
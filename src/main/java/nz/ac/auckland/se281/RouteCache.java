@@ -0,0 +1,138 @@
+package nz.ac.auckland.se281;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded, thread-safe cache of route results keyed on source, destination and route kind. When
+ * full, the least recently used entry is evicted. Every entry belongs to one version of the graph,
+ * and the whole cache is dropped as soon as it is asked about a different version.
+ */
+public class RouteCache {
+  private final int capacity;
+  private final Map<Key, RouteResult> entries;
+  private int graphVersion;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param capacity The maximum number of routes to keep
+   */
+  public RouteCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+    // Access order turns the map's iteration order into least to most recently used
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, RouteResult> eldest) {
+            if (size() > RouteCache.this.capacity) {
+              evictions++;
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /**
+   * Looks up a cached route.
+   *
+   * @param graphVersion The current version of the graph
+   * @param source The source country
+   * @param dest The destination country
+   * @param leastFuel Whether the route minimises fuel rather than border crossings
+   * @return The cached result, or null if there is none for this graph version
+   */
+  public synchronized RouteResult get(
+      int graphVersion, String source, String dest, boolean leastFuel) {
+    checkVersion(graphVersion);
+    RouteResult result = entries.get(new Key(source, dest, leastFuel));
+    if (result == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return result;
+  }
+
+  /**
+   * Stores a route, evicting the least recently used one if the cache is full.
+   *
+   * @param graphVersion The version of the graph the route was computed on
+   * @param source The source country
+   * @param dest The destination country
+   * @param leastFuel Whether the route minimises fuel rather than border crossings
+   * @param result The route to cache
+   */
+  public synchronized void put(
+      int graphVersion, String source, String dest, boolean leastFuel, RouteResult result) {
+    checkVersion(graphVersion);
+    entries.put(new Key(source, dest, leastFuel), result);
+  }
+
+  /** Drops every cached route. */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /** Drops the cached routes if they were computed on another version of the graph. */
+  private void checkVersion(int version) {
+    if (version != graphVersion) {
+      entries.clear();
+      graphVersion = version;
+    }
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /** Cache key identifying one route query. */
+  private static class Key {
+    private final String source;
+    private final String dest;
+    private final boolean leastFuel;
+
+    private Key(String source, String dest, boolean leastFuel) {
+      this.source = source;
+      this.dest = dest;
+      this.leastFuel = leastFuel;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return leastFuel == other.leastFuel && source.equals(other.source) && dest.equals(other.dest);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(source, dest, leastFuel);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package nz.ac.auckland.se281;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A route and its fuel breakdown held as dense IDs: the route's node IDs, its total fuel, the IDs
+ * of the continents it visits in visit order with the fuel burnt in each, and the continent with
+ * the most fuel. Nothing is looked up by name while it is built, and country and continent names
+ * are only made when it is turned into a {@link RouteResult} for printing or formatted. Instances
+ * are immutable.
+ */
+public class RouteEvaluation {
+  private final RouteAnalyzer analyzer;
+  private final int[] path;
+  private final int totalFuel;
+  private final int[] continents;
+  private final int[] continentFuel;
+  private final int highestContinent;
+
+  /** Copies the aggregates out of a filled tally. */
+  RouteEvaluation(RouteAnalyzer analyzer, int[] path, FuelTally tally) {
+    this.analyzer = analyzer;
+    this.path = path;
+    this.totalFuel = tally.getTotalFuel();
+    int count = tally.getContinentCount();
+    this.continents = new int[count];
+    this.continentFuel = new int[count];
+    for (int i = 0; i < count; i++) {
+      continents[i] = tally.continentAt(i);
+      continentFuel[i] = tally.fuelAt(i);
+    }
+    this.highestContinent = tally.getHighestContinent();
+  }
+
+  /**
+   * Gets the number of countries on the route.
+   *
+   * @return The route length including both ends, or 0 if there is no route
+   */
+  public int getLength() {
+    return path.length;
+  }
+
+  /**
+   * Gets a country of the route.
+   *
+   * @param index The position on the route, 0 being the source
+   * @return The country's node ID in the graph version the route was found on
+   */
+  public int nodeAt(int index) {
+    return path[index];
+  }
+
+  /**
+   * Gets the node IDs of the route.
+   *
+   * @return A copy of the route, source first
+   */
+  public int[] getPath() {
+    return Arrays.copyOf(path, path.length);
+  }
+
+  /** Gets the fuel burnt in the intermediate countries of the route. */
+  public int getTotalFuel() {
+    return totalFuel;
+  }
+
+  /** Gets the number of continents the route visits. */
+  public int getContinentCount() {
+    return continents.length;
+  }
+
+  /**
+   * Gets a continent the route visits.
+   *
+   * @param index The position among the visited continents, 0 being the source's
+   * @return The continent's ID, see {@link RouteAnalyzer#continentName(int)}
+   */
+  public int continentAt(int index) {
+    return continents[index];
+  }
+
+  /**
+   * Gets the fuel burnt in a continent the route visits.
+   *
+   * @param index The position among the visited continents, 0 being the source's
+   * @return The fuel burnt there
+   */
+  public int fuelAt(int index) {
+    return continentFuel[index];
+  }
+
+  /**
+   * Gets the continent where the most fuel is burnt, the first one visited if there is a tie.
+   *
+   * @return The continent's ID, or -1 if there is no route
+   */
+  public int getHighestContinent() {
+    return highestContinent;
+  }
+
+  /**
+   * Names the countries and continents, for printing.
+   *
+   * @return The same route and breakdown as country and continent names
+   */
+  public RouteResult toRouteResult() {
+    CsrGraph<String> graph = analyzer.getGraph();
+    List<String> names = new ArrayList<>(path.length);
+    for (int node : path) {
+      names.add(graph.nodeOf(node));
+    }
+    Map<String, Integer> fuelByContinent = new LinkedHashMap<>();
+    for (int i = 0; i < continents.length; i++) {
+      fuelByContinent.put(analyzer.continentName(continents[i]), continentFuel[i]);
+    }
+    return new RouteResult(
+        names, totalFuel, fuelByContinent, analyzer.continentName(highestContinent));
+  }
+}
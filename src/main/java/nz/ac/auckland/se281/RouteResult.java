@@ -0,0 +1,71 @@
+package nz.ac.auckland.se281;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of a route query: the countries along the route and how much fuel it burns. Instances
+ * are immutable, so they can be cached and shared.
+ */
+public class RouteResult {
+  private final List<String> path;
+  private final int totalFuel;
+  private final Map<String, Integer> continentFuel;
+  private final String highestFuelContinent;
+
+  /**
+   * Creates a new route result.
+   *
+   * @param path The countries along the route, source first
+   * @param totalFuel The fuel burnt in the intermediate countries
+   * @param continentFuel The fuel burnt per continent, in the order the continents are visited
+   * @param highestFuelContinent The continent where the most fuel is burnt
+   */
+  public RouteResult(
+      List<String> path,
+      int totalFuel,
+      Map<String, Integer> continentFuel,
+      String highestFuelContinent) {
+    this.path = Collections.unmodifiableList(path);
+    this.totalFuel = totalFuel;
+    this.continentFuel = Collections.unmodifiableMap(continentFuel);
+    this.highestFuelContinent = highestFuelContinent;
+  }
+
+  /**
+   * Gets the countries along the route.
+   *
+   * @return The route, source first, or an empty list if there is no route
+   */
+  public List<String> getPath() {
+    return path;
+  }
+
+  /**
+   * Gets the fuel burnt in the intermediate countries of the route.
+   *
+   * @return The total fuel
+   */
+  public int getTotalFuel() {
+    return totalFuel;
+  }
+
+  /**
+   * Gets the fuel burnt in each continent along the route.
+   *
+   * @return The fuel per continent, in the order the continents are visited
+   */
+  public Map<String, Integer> getContinentFuel() {
+    return continentFuel;
+  }
+
+  /**
+   * Gets the continent where the most fuel is burnt, the first one visited if there is a tie.
+   *
+   * @return The continent name
+   */
+  public String getHighestFuelContinent() {
+    return highestFuelContinent;
+  }
+}
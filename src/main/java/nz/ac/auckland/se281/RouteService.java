@@ -0,0 +1,338 @@
+package nz.ac.auckland.se281;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Thread-safe route queries over one loaded map. Unlike {@link MapEngine}, which reads from the
+ * console and prints through {@link MessageCli}, this takes country names and returns a {@link
+ * RouteResult}, so many queries can run at once.
+ *
+ * <p>Each query takes the graph's current CSR version once and answers entirely from it, fuel
+ * costs included, so a border or fuel change made while it runs never mixes two versions into one
+ * result, and the query never waits for the change. The search engines and fuel tallies are not
+ * thread-safe, so each query borrows one of each from a pool. At most one query per core searches
+ * at a time, which caps the pool at one engine of each kind per core no matter how many queries
+ * are waiting. {@link #submit} runs each query on its own virtual thread, so waiting queries cost
+ * no platform threads.
+ */
+public class RouteService implements AutoCloseable {
+  private final Graph<String> graph;
+  private final CountryRegistry countries;
+  private final RouteTable<String> routeTable;
+  private final Landmarks fuelLandmarks;
+  private final ContractionHierarchy<String> fuelHierarchy;
+  private final RouteCache routeCache;
+  private volatile OverlayEngines fuelOverlay;
+  private volatile RouteAnalyzer lastAnalyzer;
+
+  private final Semaphore searchPermits =
+      new Semaphore(Runtime.getRuntime().availableProcessors());
+  private final Queue<PathSearch> hopSearches = new ConcurrentLinkedQueue<>();
+  private final Queue<PathSearch> fuelSearches = new ConcurrentLinkedQueue<>();
+  private final Queue<PathSearch> landmarkSearches = new ConcurrentLinkedQueue<>();
+  private final Queue<PathSearch> hierarchySearches = new ConcurrentLinkedQueue<>();
+  private final Queue<FuelTally> tallies = new ConcurrentLinkedQueue<>();
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  /** An overlay with its own pool of engines, replaced together so no engine outlives it. */
+  private static final class OverlayEngines {
+    private final ContinentOverlay<String> overlay;
+    private final Queue<PathSearch> searches = new ConcurrentLinkedQueue<>();
+
+    private OverlayEngines(ContinentOverlay<String> overlay) {
+      this.overlay = overlay;
+    }
+  }
+
+  /**
+   * Creates a service over a map. Changes made to the graph later are seen by the queries that
+   * start after them.
+   *
+   * @param graph The country graph, with the fuel cost of each country as its node weight
+   * @param countries The countries of the map, for their continents
+   * @param routeTable Precomputed fewest-hop routes, used only while the graph is still at the
+   *     version the table was built on, or null to always search
+   * @param routeCache The cache to keep recent results in, or null to not cache results
+   */
+  public RouteService(
+      Graph<String> graph,
+      CountryRegistry countries,
+      RouteTable<String> routeTable,
+      RouteCache routeCache) {
+    this(graph, countries, routeTable, null, routeCache);
+  }
+
+  /**
+   * Creates a service over a map that answers least-fuel queries with A* over landmark bounds.
+   *
+   * @param graph The country graph, with the fuel cost of each country as its node weight
+   * @param countries The countries of the map, for their continents
+   * @param routeTable Precomputed fewest-hop routes, used only while the graph is still at the
+   *     version the table was built on, or null to always search
+   * @param fuelLandmarks Landmarks measured by fuel cost, used only while the graph is still at
+   *     the version they were measured on, or null to always use Dijkstra
+   * @param routeCache The cache to keep recent results in, or null to not cache results
+   */
+  public RouteService(
+      Graph<String> graph,
+      CountryRegistry countries,
+      RouteTable<String> routeTable,
+      Landmarks fuelLandmarks,
+      RouteCache routeCache) {
+    this(graph, countries, routeTable, fuelLandmarks, null, routeCache);
+  }
+
+  /**
+   * Creates a service over a map that answers least-fuel queries from a contraction hierarchy,
+   * falling back to A* over landmark bounds and then to Dijkstra once the graph has changed.
+   *
+   * @param graph The country graph, with the fuel cost of each country as its node weight
+   * @param countries The countries of the map, for their continents
+   * @param routeTable Precomputed fewest-hop routes, used only while the graph is still at the
+   *     version the table was built on, or null to always search
+   * @param fuelLandmarks Landmarks measured by fuel cost, used only while the graph is still at
+   *     the version they were measured on, or null to always use Dijkstra
+   * @param fuelHierarchy A hierarchy contracted by fuel cost, used only while the graph is still
+   *     at the version it was built on, or null to not use one
+   * @param routeCache The cache to keep recent results in, or null to not cache results
+   */
+  public RouteService(
+      Graph<String> graph,
+      CountryRegistry countries,
+      RouteTable<String> routeTable,
+      Landmarks fuelLandmarks,
+      ContractionHierarchy<String> fuelHierarchy,
+      RouteCache routeCache) {
+    if (fuelLandmarks != null && !fuelLandmarks.isWeighted()) {
+      throw new IllegalArgumentException("Fuel landmarks must be measured by node weight");
+    }
+    if (fuelHierarchy != null && !fuelHierarchy.isWeighted()) {
+      throw new IllegalArgumentException("Fuel hierarchy must be contracted by node weight");
+    }
+    this.graph = graph;
+    this.countries = countries;
+    this.routeTable = routeTable;
+    this.fuelLandmarks = fuelLandmarks;
+    this.fuelHierarchy = fuelHierarchy;
+    this.routeCache = routeCache;
+  }
+
+  /**
+   * Finds the route between two countries along with its fuel breakdown. Safe to call from any
+   * number of threads at once.
+   *
+   * @param source The name of the starting country
+   * @param destination The name of the destination country
+   * @param leastFuel whether to minimise fuel instead of border crossings
+   * @return The route and its fuel consumption, with an empty path if there is no route
+   * @throws CountryNotFoundException if either country is not on the map
+   */
+  public RouteResult findRoute(String source, String destination, boolean leastFuel)
+      throws CountryNotFoundException {
+    CsrGraph<String> graph = this.graph.snapshot();
+    int version = graph.getVersion();
+    int sourceId = idOf(graph, source);
+    int destinationId = idOf(graph, destination);
+
+    if (routeCache != null) {
+      RouteResult cached = routeCache.get(version, source, destination, leastFuel);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    // Names are only made once the route and its fuel are known
+    RouteResult result = evaluate(graph, sourceId, destinationId, leastFuel).toRouteResult();
+    if (routeCache != null) {
+      routeCache.put(version, source, destination, leastFuel, result);
+    }
+    return result;
+  }
+
+  /**
+   * Finds the route between two countries as node IDs, with its fuel breakdown as continent IDs,
+   * without naming a country or continent. Results are not cached. Safe to call from any number of
+   * threads at once.
+   *
+   * @param source The name of the starting country
+   * @param destination The name of the destination country
+   * @param leastFuel whether to minimise fuel instead of border crossings
+   * @return The route and its fuel consumption, with no countries if there is no route
+   * @throws CountryNotFoundException if either country is not on the map
+   */
+  public RouteEvaluation evaluateRoute(String source, String destination, boolean leastFuel)
+      throws CountryNotFoundException {
+    CsrGraph<String> graph = this.graph.snapshot();
+    return evaluate(graph, idOf(graph, source), idOf(graph, destination), leastFuel);
+  }
+
+  private static int idOf(CsrGraph<String> graph, String country)
+      throws CountryNotFoundException {
+    int id = graph.idOf(country);
+    if (id < 0) {
+      throw new CountryNotFoundException(country);
+    }
+    return id;
+  }
+
+  /**
+   * Finds and evaluates a route on one graph version: by fuel with the hierarchy, overlay, A* or
+   * Dijkstra, or by hops from the table or BFS. Fuel comes from the same version as the route, not
+   * from a possibly newer country.
+   */
+  private RouteEvaluation evaluate(
+      CsrGraph<String> graph, int sourceId, int destinationId, boolean leastFuel) {
+    int version = graph.getVersion();
+    RouteAnalyzer analyzer = analyzerFor(graph);
+    // The evaluation copies what it needs out of the tally, so the tally can go straight back
+    FuelTally tally = tallies.poll();
+    if (tally == null || tally.capacity() != analyzer.getContinentCount()) {
+      tally = new FuelTally(analyzer.getContinentCount());
+    }
+    try {
+      if (!leastFuel && routeTable != null && routeTable.getGraph().getVersion() == version) {
+        List<String> route =
+            routeTable.findShortestPath(graph.nodeOf(sourceId), graph.nodeOf(destinationId));
+        return analyzer.evaluate(route, tally);
+      }
+
+      OverlayEngines overlay = fuelOverlay;
+      Queue<PathSearch> pool;
+      Function<CsrGraph<String>, PathSearch> engine;
+      if (!leastFuel) {
+        pool = hopSearches;
+        engine = BreadthFirstSearch::new;
+      } else if (fuelHierarchy != null && fuelHierarchy.getGraph().getVersion() == version) {
+        pool = hierarchySearches;
+        engine = g -> new HierarchySearch(fuelHierarchy);
+      } else if (overlay != null && overlay.overlay.getGraph().getVersion() == version) {
+        pool = overlay.searches;
+        engine = g -> new OverlaySearch(overlay.overlay);
+      } else if (fuelLandmarks != null && fuelLandmarks.getGraph().getVersion() == version) {
+        pool = landmarkSearches;
+        engine = g -> new AltSearch(fuelLandmarks);
+      } else {
+        pool = fuelSearches;
+        engine = DijkstraSearch::new;
+      }
+      return search(pool, graph, engine, sourceId, destinationId, analyzer, tally);
+    } finally {
+      tallies.offer(tally);
+    }
+  }
+
+  /**
+   * Sets the continent overlay to answer least-fuel queries with while the graph is at the version
+   * it was built on, ahead of landmarks and Dijkstra. Queries already running keep the overlay
+   * they started with, so a newer version's overlay, rebuilt from this one with {@link
+   * ContinentOverlay#withCellsRebuilt}, can be set after every change to the map.
+   *
+   * @param fuelOverlay An overlay measured by fuel cost, or null to stop using one
+   * @throws IllegalArgumentException if the overlay does not use node weights as costs
+   */
+  public void setFuelOverlay(ContinentOverlay<String> fuelOverlay) {
+    if (fuelOverlay != null && !fuelOverlay.isWeighted()) {
+      throw new IllegalArgumentException("Fuel overlay must be measured by node weight");
+    }
+    this.fuelOverlay = fuelOverlay == null ? null : new OverlayEngines(fuelOverlay);
+  }
+
+  /**
+   * Finds a route on a virtual thread of its own.
+   *
+   * @param source The name of the starting country
+   * @param destination The name of the destination country
+   * @param leastFuel whether to minimise fuel instead of border crossings
+   * @return A future holding the route, completed exceptionally with a {@link
+   *     CountryNotFoundException} if either country is not on the map
+   */
+  public CompletableFuture<RouteResult> submit(
+      String source, String destination, boolean leastFuel) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return findRoute(source, destination, leastFuel);
+          } catch (CountryNotFoundException e) {
+            throw new CompletionException(e);
+          }
+        },
+        executor);
+  }
+
+  /**
+   * Gets the analyzer for a graph version, making it from the last one used when the version has
+   * moved on, so the continents are only numbered once.
+   */
+  private RouteAnalyzer analyzerFor(CsrGraph<String> graph) {
+    RouteAnalyzer analyzer = lastAnalyzer;
+    if (analyzer == null) {
+      analyzer = new RouteAnalyzer(graph, countries);
+    } else if (analyzer.getGraph() != graph) {
+      analyzer = analyzer.forGraph(graph);
+    } else {
+      return analyzer;
+    }
+    lastAnalyzer = analyzer;
+    return analyzer;
+  }
+
+  /**
+   * Runs one search with an engine borrowed from the pool, creating the engine if none is free or
+   * the free one was sized for a graph with fewer nodes, and evaluates the route it finds while
+   * the engine still holds it.
+   */
+  private RouteEvaluation search(
+      Queue<PathSearch> pool,
+      CsrGraph<String> graph,
+      Function<CsrGraph<String>, PathSearch> engine,
+      int source,
+      int target,
+      RouteAnalyzer analyzer,
+      FuelTally tally) {
+    searchPermits.acquireUninterruptibly();
+    PathSearch search = pool.poll();
+    try {
+      if (search == null || search.getGraph().nodeCount() != graph.nodeCount()) {
+        search = engine.apply(graph);
+      } else if (search.getGraph() != graph) {
+        search.setGraph(graph);
+      }
+      if (!search.search(source, target)) {
+        return analyzer.noRoute(tally);
+      }
+      // Engines with a parent table are walked once, the others unpack their path first
+      if (search instanceof SearchTree tree) {
+        return analyzer.evaluateTree(tree, target, tally);
+      }
+      return analyzer.evaluateTraced(search, search.tracePath(target), tally);
+    } finally {
+      if (search != null) {
+        pool.offer(search);
+      }
+      searchPermits.release();
+    }
+  }
+
+  /**
+   * Gets the current version of the graph the service answers queries on.
+   *
+   * @return The immutable country graph, as it is now
+   */
+  public CsrGraph<String> getGraph() {
+    return graph.snapshot();
+  }
+
+  /** Stops accepting submitted queries and waits for the running ones to finish. */
+  @Override
+  public void close() {
+    executor.close();
+  }
+}
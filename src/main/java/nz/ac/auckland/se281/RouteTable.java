@@ -0,0 +1,135 @@
+package nz.ac.auckland.se281;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Precomputed shortest paths between every pair of nodes of a frozen graph. One BFS is run per
+ * source, in parallel, and the BFS tree of each source is kept as a row of a parent matrix. A route
+ * is then read back by walking the row from the destination to the source, which takes time
+ * proportional to the path length and gives exactly the path {@link Graph#findShortestPath} would.
+ *
+ * <p>The matrix uses {@code short} entries when the IDs fit, and {@code int} entries otherwise, so
+ * it needs {@code 2 * n * n} or {@code 4 * n * n} bytes for {@code n} nodes.
+ *
+ * @param <T> The type of the nodes
+ */
+public class RouteTable<T> {
+  private static final int NO_PARENT = -1;
+  private static final int UNREACHABLE = -2;
+
+  private final CsrGraph<T> graph;
+  private final int nodeCount;
+  private final short[] shortParents;
+  private final int[] intParents;
+  private final long buildNanos;
+
+  /**
+   * Builds the table for the given graph using all available cores.
+   *
+   * @param graph The graph to precompute
+   * @throws IllegalArgumentException if the graph is too large for an n by n matrix
+   */
+  public RouteTable(CsrGraph<T> graph) {
+    this(graph, graph.nodeCount() <= Short.MAX_VALUE);
+  }
+
+  /**
+   * Builds the table with {@code short} or {@code int} entries, so tests can use {@code int}
+   * entries on a small graph.
+   */
+  RouteTable(CsrGraph<T> graph, boolean compact) {
+    long startTime = System.nanoTime();
+    this.graph = graph;
+    this.nodeCount = graph.nodeCount();
+
+    long cells = (long) nodeCount * nodeCount;
+    if (cells > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException(
+          "Too many nodes for an all-pairs route table: " + nodeCount);
+    }
+    if (compact && nodeCount > Short.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many nodes for short entries: " + nodeCount);
+    }
+    this.shortParents = compact ? new short[(int) cells] : null;
+    this.intParents = compact ? null : new int[(int) cells];
+
+    // Each row borrows a search engine and returns it, so there is one per busy worker thread
+    Queue<BreadthFirstSearch> searches = new ConcurrentLinkedQueue<>();
+    IntStream.range(0, nodeCount)
+        .parallel()
+        .forEach(
+            source -> {
+              BreadthFirstSearch search = searches.poll();
+              if (search == null) {
+                search = new BreadthFirstSearch(graph);
+              }
+              fillRow(search, source);
+              searches.offer(search);
+            });
+
+    this.buildNanos = System.nanoTime() - startTime;
+  }
+
+  /** Runs a full BFS from the source and stores its parent tree as the source's row. */
+  private void fillRow(BreadthFirstSearch search, int source) {
+    search.search(source, -1);
+    int row = source * nodeCount;
+    for (int node = 0; node < nodeCount; node++) {
+      int parent = search.isReached(node) ? search.parentOf(node) : UNREACHABLE;
+      if (shortParents != null) {
+        shortParents[row + node] = (short) parent;
+      } else {
+        intParents[row + node] = parent;
+      }
+    }
+  }
+
+  private int parent(int source, int node) {
+    int index = source * nodeCount + node;
+    return shortParents != null ? shortParents[index] : intParents[index];
+  }
+
+  /**
+   * Looks up the shortest path between two nodes.
+   *
+   * @param start The starting node
+   * @param dest The destination node
+   * @return Ordered list of nodes in the shortest path, or empty list if no path exists
+   */
+  public List<T> findShortestPath(T start, T dest) {
+    int source = graph.idOf(start);
+    int target = graph.idOf(dest);
+    List<T> path = new ArrayList<>();
+
+    if (source < 0 || target < 0 || parent(source, target) == UNREACHABLE) {
+      return path;
+    }
+    for (int n = target; n != NO_PARENT; n = parent(source, n)) {
+      path.add(graph.nodeOf(n));
+    }
+    // The parents lead from the destination back to the source, so flip them into route order
+    for (int i = 0, j = path.size() - 1; i < j; i++, j--) {
+      path.set(i, path.set(j, path.get(i)));
+    }
+    return path;
+  }
+
+  /** Gets the graph the table was built from. */
+  public CsrGraph<T> getGraph() {
+    return graph;
+  }
+
+  /** Gets how long the table took to build, in milliseconds. */
+  public long getBuildMillis() {
+    return buildNanos / 1_000_000;
+  }
+
+  /** Gets the size of the parent matrix, in bytes. */
+  public long getMemoryBytes() {
+    return shortParents != null ? 2L * shortParents.length : 4L * intParents.length;
+  }
+}
@@ -0,0 +1,43 @@
+package nz.ac.auckland.se281;
+
+/** The strategies {@link Graph#findShortestPath(Object, Object, SearchMode)} can search with. */
+public enum SearchMode {
+  /** One-way breadth-first search from the source. */
+  BREADTH_FIRST,
+  /** Breadth-first search from both ends that stops when the two frontiers meet. */
+  BIDIRECTIONAL,
+  /** Breadth-first search that expands large frontiers bottom-up, for dense low-diameter maps. */
+  DIRECTION_OPTIMIZING,
+  /** Breadth-first search that expands each level in parallel on the common fork-join pool. */
+  PARALLEL,
+  /**
+   * A* search steered by hop distances to and from {@value #LANDMARK_COUNT} landmarks. {@link
+   * Graph} measures them on the first such query after each change and shares them between
+   * threads.
+   */
+  LANDMARKS;
+
+  /** The number of landmarks a {@link #LANDMARKS} engine measures. */
+  public static final int LANDMARK_COUNT = 8;
+
+  /**
+   * Creates a search engine of this kind for the given graph.
+   *
+   * @param graph The graph to search
+   * @return A new engine sized for the graph
+   */
+  public PathSearch createSearch(CsrGraph<?> graph) {
+    switch (this) {
+      case BIDIRECTIONAL:
+        return new BidirectionalSearch(graph);
+      case DIRECTION_OPTIMIZING:
+        return new DirectionOptimizingSearch(graph);
+      case PARALLEL:
+        return new ParallelBreadthFirstSearch(graph);
+      case LANDMARKS:
+        return new AltSearch(new Landmarks(graph, LANDMARK_COUNT, false));
+      default:
+        return new BreadthFirstSearch(graph);
+    }
+  }
+}
@@ -0,0 +1,16 @@
+package nz.ac.auckland.se281;
+
+/**
+ * A {@link PathSearch} whose last search leaves a parent table behind, so the path to a reached
+ * node can be walked back from its end without tracing it into the engine's path buffer first.
+ */
+public interface SearchTree extends PathSearch {
+
+  /**
+   * Gets the parent of a node in the last search's tree.
+   *
+   * @param node The ID of a reached node
+   * @return The ID of its parent, or -1 for the source
+   */
+  int parentOf(int node);
+}
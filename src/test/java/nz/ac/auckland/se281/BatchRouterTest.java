@@ -0,0 +1,68 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Checks that {@link BatchRouter} answers queries that have no route without hanging. */
+public class BatchRouterTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private BatchRouter router;
+  private Path input;
+
+  /** Two islands of two countries each, with no border between them. */
+  @Before
+  public void setUp() throws Exception {
+    Path directory = folder.newFolder("map").toPath();
+    Files.writeString(directory.resolve("countries.csv"), "A,X,1\nB,X,2\nC,Y,3\nD,Y,4\n");
+    Files.writeString(directory.resolve("adjacencies.csv"), "A,B\nB,A\nC,D\nD,C\n");
+    CountryRegistry countries = new CountryRegistry();
+    router = new BatchRouter(TestMaps.load(directory, countries).snapshot(), countries);
+
+    // A lone query with no route, then a group from one source where one query has no route
+    input = folder.getRoot().toPath().resolve("routes.txt");
+    Files.writeString(input, "C,A\nA,C\nA,B\nc,d\n");
+  }
+
+  private List<String> route(BatchRouter.Format format) throws Exception {
+    StringWriter out = new StringWriter();
+    router.route(input, format, out);
+    return out.toString().lines().toList();
+  }
+
+  /** Unreachable pairs get an empty route in CSV, alone or among reachable ones. */
+  @Test(timeout = 10_000)
+  public void unreachablePairsAsCsv() throws Exception {
+    assertEquals(
+        List.of(
+            "source,destination,fuel,highestFuelContinent,route,error",
+            "C,A,0,,,",
+            "A,C,0,,,",
+            "A,B,0,X,A;B,",
+            "C,D,0,Y,C;D,"),
+        route(BatchRouter.Format.CSV));
+  }
+
+  /** Unreachable pairs get an empty route in JSON too. */
+  @Test(timeout = 10_000)
+  public void unreachablePairsAsJson() throws Exception {
+    List<String> lines = route(BatchRouter.Format.JSON);
+    assertEquals(4, lines.size());
+    assertEquals(
+        "{\"source\":\"C\",\"destination\":\"A\",\"route\":[],\"fuel\":0,\"continents\":{},"
+            + "\"highestFuelContinent\":null}",
+        lines.get(0));
+    assertEquals(
+        "{\"source\":\"A\",\"destination\":\"B\",\"route\":[\"A\",\"B\"],\"fuel\":0,"
+            + "\"continents\":{\"X\":0},\"highestFuelContinent\":\"X\"}",
+        lines.get(2));
+  }
+}
@@ -0,0 +1,107 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks that {@link BidirectionalSearch} finds paths as short as {@link BreadthFirstSearch} where
+ * its two frontiers meet, including on one-way borders the backward search follows in reverse.
+ */
+public class BidirectionalSearchTest {
+
+  /** A node is its own path, one node long. */
+  @Test
+  public void sameNode() {
+    BidirectionalSearch search = new BidirectionalSearch(TestMaps.graphOf(3, 0, 1, 1, 2));
+    assertTrue(search.search(1, 1));
+    assertEquals(1, search.tracePath(1));
+    assertEquals(1, search.pathNode(0));
+  }
+
+  /**
+   * Paths of every length from 1 to 9 along a line, so the frontiers meet after an odd and after
+   * an even number of levels.
+   */
+  @Test
+  public void oddAndEvenLengths() {
+    int[] edges = new int[4 * 9];
+    for (int node = 0; node < 9; node++) {
+      edges[4 * node] = node;
+      edges[4 * node + 1] = node + 1;
+      edges[4 * node + 2] = node + 1;
+      edges[4 * node + 3] = node;
+    }
+    CsrGraph<Integer> graph = TestMaps.graphOf(10, edges);
+    BreadthFirstSearch expected = new BreadthFirstSearch(graph);
+    BidirectionalSearch search = new BidirectionalSearch(graph);
+    for (int target = 0; target < 10; target++) {
+      TestMaps.checkFewestHops(expected, search, 0, target);
+      TestMaps.checkFewestHops(expected, search, target, 0);
+    }
+  }
+
+  /**
+   * One-way borders are only crossed forwards: the backward search walks them in reverse, so a
+   * one-way chain is found in its own direction and not in the other.
+   */
+  @Test
+  public void oneWayBorders() {
+    BidirectionalSearch search = new BidirectionalSearch(TestMaps.graphOf(4, 0, 1, 1, 2, 2, 3));
+    assertTrue(search.search(0, 3));
+    assertEquals(4, search.tracePath(3));
+    assertFalse(search.search(3, 0));
+    assertFalse(search.search(2, 1));
+  }
+
+  /** A source with no way out, or a destination with no way in, ends the search at once. */
+  @Test
+  public void deadEnds() {
+    BidirectionalSearch search = new BidirectionalSearch(TestMaps.graphOf(3, 0, 1, 2, 0));
+    assertFalse(search.search(1, 0));
+    assertFalse(search.search(0, 2));
+    assertTrue(search.search(2, 1));
+  }
+
+  /**
+   * One engine answers many queries in a row on a sparse random graph, where about a fifth of the
+   * pairs have no path, so nothing from one search leaks into the next.
+   */
+  @Test
+  public void reusedOnRandomGraph() {
+    CsrGraph<Integer> graph = TestMaps.random(2_000, 2, 0, 3).snapshot();
+    BreadthFirstSearch expected = new BreadthFirstSearch(graph);
+    BidirectionalSearch search = new BidirectionalSearch(graph);
+    Random random = new Random(3);
+    for (int i = 0; i < 2_000; i++) {
+      TestMaps.checkFewestHops(expected, search, random.nextInt(2_000), random.nextInt(2_000));
+    }
+  }
+
+  /** Where several paths are equally short, the same query always gets the same one. */
+  @Test
+  public void tiesBrokenTheSameWay() {
+    CsrGraph<Integer> graph = TestMaps.random(1_000, 4, 0, 9).snapshot();
+    BidirectionalSearch first = new BidirectionalSearch(graph);
+    BidirectionalSearch second = new BidirectionalSearch(graph);
+    Random random = new Random(9);
+    for (int i = 0; i < 500; i++) {
+      int source = random.nextInt(1_000);
+      int target = random.nextInt(1_000);
+      // Run a different query on the second engine first, so its arrays hold other values
+      second.search(target, source);
+      if (first.search(source, target)) {
+        assertTrue(second.search(source, target));
+        assertEquals(path(first, target), path(second, target));
+      }
+    }
+  }
+
+  private static List<Integer> path(PathSearch search, int target) {
+    return TestMaps.checkedPath(search.getGraph(), search, search.tracePath(target));
+  }
+}
@@ -0,0 +1,299 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import org.junit.Test;
+
+/**
+ * Checks that {@link OverlaySearch} over a {@link ContinentOverlay} finds routes as short or cheap
+ * as {@link DijkstraSearch} and {@link BreadthFirstSearch}, and that rebuilding only the changed
+ * cells gives the overlay a full rebuild does.
+ */
+public class ContinentOverlayTest {
+
+  /** Every pair of countries on the bundled map, by fuel cost and by border crossings. */
+  @Test
+  public void bundledMap() throws Exception {
+    CountryRegistry countries = new CountryRegistry();
+    CsrGraph<String> graph = TestMaps.bundled(countries).snapshot();
+    for (boolean weighted : new boolean[] {true, false}) {
+      ContinentOverlay<String> overlay =
+          new ContinentOverlay<>(graph, weighted, name -> countries.countryOf(name).getContinent());
+      Checker checker = new Checker(overlay);
+      for (int source = 0; source < graph.nodeCount(); source++) {
+        for (int target = 0; target < graph.nodeCount(); target++) {
+          checker.check(source, target);
+        }
+      }
+    }
+  }
+
+  /**
+   * Random pairs on sparse random graphs split into blocks of 100 nodes. Most edges cross between
+   * blocks, so routes often leave a block and come back to it, and many blocks have boundary
+   * nodes with no way between them inside the block.
+   */
+  @Test
+  public void randomGraphs() {
+    for (long seed = 1; seed <= 3; seed++) {
+      for (boolean weighted : new boolean[] {true, false}) {
+        CsrGraph<Integer> graph = TestMaps.random(1_000, 2, 9, seed).snapshot();
+        Checker checker = new Checker(new ContinentOverlay<>(graph, weighted, block(100)));
+        Random random = new Random(seed);
+        for (int i = 0; i < 1_000; i++) {
+          checker.check(random.nextInt(1_000), random.nextInt(1_000));
+        }
+      }
+    }
+  }
+
+  /**
+   * The cheapest way across a middle continent leaves it and comes back, instead of taking the
+   * dear border inside it.
+   */
+  @Test
+  public void routeLeavesAndReentersContinent() {
+    Map<String, String> continents =
+        Map.of("s", "S", "m1", "M", "m2", "M", "m3", "M", "n", "N", "d", "D");
+    Graph<String> graph =
+        graph(
+            continents,
+            Map.of("s", 1, "m1", 1, "m2", 50, "m3", 1, "n", 1, "d", 1),
+            "s", "m1", "m1", "m2", "m2", "m3", "m1", "n", "n", "m3", "m3", "d");
+    ContinentOverlay<String> overlay =
+        new ContinentOverlay<>(graph.snapshot(), true, continents::get);
+    OverlaySearch search = new OverlaySearch(overlay);
+    CsrGraph<String> csr = overlay.getGraph();
+
+    assertTrue(search.search(csr.idOf("s"), csr.idOf("d")));
+    assertEquals(4, search.distanceTo(csr.idOf("d")));
+    assertEquals(List.of("s", "m1", "n", "m3", "d"), nodesOf(csr, search, csr.idOf("d")));
+    new Checker(overlay).check(csr.idOf("s"), csr.idOf("d"));
+  }
+
+  /**
+   * A continent whose boundary countries have no way between them inside it can only be crossed
+   * by going around it, and a destination behind it alone cannot be reached.
+   */
+  @Test
+  public void routeThroughUnreachableCell() {
+    Map<String, String> continents =
+        Map.of("s", "S", "m1", "M", "m2", "M", "x", "X", "d", "D", "e", "E");
+    Graph<String> graph =
+        graph(
+            continents,
+            Map.of("s", 1, "m1", 1, "m2", 1, "x", 5, "d", 1, "e", 1),
+            "s", "m1", "m1", "x", "x", "d", "m2", "d", "m2", "e");
+    ContinentOverlay<String> overlay =
+        new ContinentOverlay<>(graph.snapshot(), true, continents::get);
+    CsrGraph<String> csr = overlay.getGraph();
+    int m = overlay.cellOf(csr.idOf("m1"));
+    assertEquals(2, overlay.boundary(m).length);
+    assertTrue(
+        overlay.costs(m)[overlay.slot(csr.idOf("m1")) * 2 + overlay.slot(csr.idOf("m2"))]
+            == ContinentOverlay.UNREACHED);
+
+    OverlaySearch search = new OverlaySearch(overlay);
+    assertTrue(search.search(csr.idOf("s"), csr.idOf("d")));
+    assertEquals(List.of("s", "m1", "x", "d"), nodesOf(csr, search, csr.idOf("d")));
+    assertFalse(search.search(csr.idOf("s"), csr.idOf("e")));
+    Checker checker = new Checker(overlay);
+    for (int source = 0; source < csr.nodeCount(); source++) {
+      for (int target = 0; target < csr.nodeCount(); target++) {
+        checker.check(source, target);
+      }
+    }
+  }
+
+  /** Fuel cost changes and closed and opened borders on the bundled map, as the CLI makes them. */
+  @Test
+  public void changedCellsMatchFullRebuild() throws Exception {
+    CountryRegistry countries = new CountryRegistry();
+    Graph<String> graph = TestMaps.bundled(countries);
+    Function<String, String> continentOf = name -> countries.countryOf(name).getContinent();
+    ContinentOverlay<String> overlay = new ContinentOverlay<>(graph.snapshot(), true, continentOf);
+
+    graph.setNodeWeight("China", 100);
+    overlay = overlay.withCellsRebuilt(graph.snapshot(), graph.snapshot().idOf("China"));
+    checkSameAsFullRebuild(overlay, continentOf);
+
+    graph.removeEdge("India", "Siam");
+    overlay = rebuilt(overlay, graph.snapshot(), "India", "Siam");
+    checkSameAsFullRebuild(overlay, continentOf);
+
+    graph.removeEdge("Brazil", "North Africa");
+    overlay = rebuilt(overlay, graph.snapshot(), "Brazil", "North Africa");
+    checkSameAsFullRebuild(overlay, continentOf);
+
+    graph.addEdge("Peru", "Siam");
+    overlay = rebuilt(overlay, graph.snapshot(), "Peru", "Siam");
+    checkSameAsFullRebuild(overlay, continentOf);
+  }
+
+  /** Random weight changes and edge removals and additions on a random graph. */
+  @Test
+  public void randomChangesMatchFullRebuild() {
+    Graph<Integer> graph = TestMaps.random(500, 3, 9, 5);
+    Function<Integer, String> continentOf = block(50);
+    ContinentOverlay<Integer> overlay =
+        new ContinentOverlay<>(graph.snapshot(), true, continentOf);
+    Random random = new Random(5);
+    for (int step = 0; step < 60; step++) {
+      CsrGraph<Integer> before = graph.snapshot();
+      int from = random.nextInt(500);
+      int choice = random.nextInt(3);
+      if (choice == 0) {
+        graph.setNodeWeight(from, random.nextInt(10));
+        overlay = overlay.withCellsRebuilt(graph.snapshot(), from);
+      } else if (choice == 1 && before.end(from) > before.start(from)) {
+        int to = before.targetsOf(from)[before.start(from)];
+        graph.removeEdge(from, to);
+        overlay = overlay.withCellsRebuilt(graph.snapshot(), from, to);
+      } else {
+        int to = random.nextInt(500);
+        graph.addEdge(from, to);
+        overlay = overlay.withCellsRebuilt(graph.snapshot(), from, to);
+      }
+      checkSameAsFullRebuild(overlay, continentOf);
+    }
+  }
+
+  /**
+   * An engine stays on the version its overlay was built on unless it is given the overlay for a
+   * newer one, rather than measuring every cell in the middle of a query.
+   */
+  @Test
+  public void newVersionNeedsNewOverlay() {
+    Graph<Integer> graph = TestMaps.random(500, 3, 9, 3);
+    CsrGraph<Integer> built = graph.snapshot();
+    ContinentOverlay<Integer> overlay = new ContinentOverlay<>(built, true, block(50));
+    OverlaySearch search = new OverlaySearch(overlay);
+    graph.setNodeWeight(7, built.weight(7) + 1);
+    CsrGraph<Integer> changed = graph.snapshot();
+    try {
+      search.setGraph(changed);
+      fail("Expected the newer version to be rejected");
+    } catch (IllegalArgumentException e) {
+      assertSame(built, search.getGraph());
+    }
+
+    search.setOverlay(overlay.withCellsRebuilt(changed, 7));
+    assertSame(changed, search.getGraph());
+    search.setGraph(changed);
+  }
+
+  /**
+   * A continent with too many boundary countries for one array of costs is rejected before any of
+   * them is measured.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsTooManyBoundaryCountries() {
+    int half = 46_341;
+    Graph<Integer> graph = new Graph<>();
+    for (int node = 0; node < 2 * half; node++) {
+      graph.addNode(node);
+    }
+    // Every country has a border into the other continent
+    for (int node = 0; node < half; node++) {
+      graph.addEdge(node, node + half);
+    }
+    graph.freeze();
+    new ContinentOverlay<>(graph.snapshot(), false, node -> node < half ? "A" : "B");
+  }
+
+  private static ContinentOverlay<String> rebuilt(
+      ContinentOverlay<String> overlay, CsrGraph<String> graph, String from, String to) {
+    return overlay.withCellsRebuilt(graph, graph.idOf(from), graph.idOf(to));
+  }
+
+  /** Checks an overlay against one built from scratch, cell by cell and on a sample of routes. */
+  private static <T> void checkSameAsFullRebuild(
+      ContinentOverlay<T> overlay, Function<? super T, String> continentOf) {
+    CsrGraph<T> graph = overlay.getGraph();
+    ContinentOverlay<T> fresh = new ContinentOverlay<>(graph, overlay.isWeighted(), continentOf);
+    assertEquals(fresh.getCellCount(), overlay.getCellCount());
+    for (int cell = 0; cell < fresh.getCellCount(); cell++) {
+      assertArrayEquals(fresh.boundary(cell), overlay.boundary(cell));
+      assertArrayEquals(fresh.costs(cell), overlay.costs(cell));
+    }
+    for (int node = 0; node < graph.nodeCount(); node++) {
+      assertEquals(fresh.slot(node), overlay.slot(node));
+    }
+
+    Checker checker = new Checker(overlay);
+    Random random = new Random(graph.getVersion());
+    for (int i = 0; i < 100; i++) {
+      checker.check(random.nextInt(graph.nodeCount()), random.nextInt(graph.nodeCount()));
+    }
+  }
+
+  /** Puts nodes into continents of consecutive IDs. */
+  private static Function<Integer, String> block(int size) {
+    return node -> "C" + node / size;
+  }
+
+  /** Builds a frozen graph from pairs of node names, one directed edge per pair. */
+  private static Graph<String> graph(
+      Map<String, String> continents, Map<String, Integer> weights, String... edges) {
+    Graph<String> graph = new Graph<>();
+    for (String node : continents.keySet()) {
+      graph.addNode(node);
+    }
+    for (int i = 0; i < edges.length; i += 2) {
+      graph.addEdge(edges[i], edges[i + 1]);
+    }
+    graph.setNodeWeights(weights::get);
+    graph.freeze();
+    return graph;
+  }
+
+  private static List<String> nodesOf(CsrGraph<String> graph, PathSearch search, int target) {
+    return TestMaps.checkedPath(graph, search, search.tracePath(target)).stream()
+        .map(graph::nodeOf)
+        .toList();
+  }
+
+  /** Compares the overlay search with a plain search, one pair of nodes at a time. */
+  private static class Checker {
+    private final CsrGraph<?> graph;
+    private final boolean weighted;
+    private final OverlaySearch search;
+    private final DijkstraSearch dijkstra;
+    private final BreadthFirstSearch bfs;
+
+    Checker(ContinentOverlay<?> overlay) {
+      this.graph = overlay.getGraph();
+      this.weighted = overlay.isWeighted();
+      this.search = new OverlaySearch(overlay);
+      this.dijkstra = new DijkstraSearch(graph);
+      this.bfs = new BreadthFirstSearch(graph);
+    }
+
+    void check(int source, int target) {
+      String pair = source + " to " + target;
+      int expected;
+      if (weighted) {
+        expected = dijkstra.search(source, target) ? dijkstra.distanceTo(target) : -1;
+      } else {
+        expected = bfs.search(source, target) ? bfs.tracePath(target) - 1 : -1;
+      }
+
+      assertEquals(pair, expected >= 0, search.search(source, target));
+      if (expected >= 0) {
+        assertEquals(pair, expected, search.distanceTo(target));
+        List<Integer> path = TestMaps.checkedPath(graph, search, search.tracePath(target));
+        assertTrue(pair, path.get(0) == source && path.get(path.size() - 1) == target);
+        assertEquals(pair, expected, weighted ? TestMaps.costOf(graph, path) : path.size() - 1);
+      }
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that {@link HierarchySearch} over a {@link ContractionHierarchy} finds paths as short or
+ * cheap as {@link DijkstraSearch} and {@link BreadthFirstSearch}, and that a hierarchy file only
+ * loads for the map it was built from.
+ */
+public class ContractionHierarchyTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  /** Every pair of countries on the bundled map, by fuel cost and by border crossings. */
+  @Test
+  public void bundledMap() throws Exception {
+    CsrGraph<String> graph = TestMaps.bundled(new CountryRegistry()).snapshot();
+    for (boolean weighted : new boolean[] {true, false}) {
+      HierarchySearch search = new HierarchySearch(new ContractionHierarchy<>(graph, weighted));
+      for (int source = 0; source < graph.nodeCount(); source++) {
+        for (int target = 0; target < graph.nodeCount(); target++) {
+          checkPath(search, weighted, source, target);
+        }
+      }
+    }
+  }
+
+  /** Random pairs on sparse random graphs with random weights, many of them with no path. */
+  @Test
+  public void randomGraphsByWeight() {
+    for (long seed = 1; seed <= 3; seed++) {
+      checkRandomPairs(TestMaps.random(500, 2, 9, seed).snapshot(), true, seed);
+    }
+  }
+
+  /** Random pairs on random graphs, counting hops. */
+  @Test
+  public void randomGraphsByHops() {
+    for (long seed = 1; seed <= 3; seed++) {
+      checkRandomPairs(TestMaps.random(500, 3, 0, seed).snapshot(), false, seed);
+    }
+  }
+
+  /** Weights of 0 make many paths tie, and give shortcuts that cost nothing. */
+  @Test
+  public void zeroWeights() {
+    checkRandomPairs(TestMaps.random(500, 3, 0, 7).snapshot(), true, 7);
+  }
+
+  /**
+   * An engine stays on the version its hierarchy was built on, rather than contracting a newer
+   * version in the middle of a query.
+   */
+  @Test
+  public void setGraphRejectsOtherVersions() {
+    Graph<Integer> graph = TestMaps.random(100, 3, 9, 1);
+    CsrGraph<Integer> built = graph.snapshot();
+    HierarchySearch search = new HierarchySearch(new ContractionHierarchy<>(built, true));
+    search.setGraph(built);
+    graph.setNodeWeight(0, built.weight(0) + 1);
+    try {
+      search.setGraph(graph.snapshot());
+      fail("Expected the newer version to be rejected");
+    } catch (IllegalArgumentException e) {
+      assertSame(built, search.getGraph());
+    }
+  }
+
+  /** A hierarchy read back from its file gives the same distances as the one that wrote it. */
+  @Test
+  public void writeAndReadRoundTrip() throws Exception {
+    CsrGraph<Integer> graph = TestMaps.random(500, 3, 9, 11).snapshot();
+    ContractionHierarchy<Integer> built = new ContractionHierarchy<>(graph, true);
+    Path file = folder.getRoot().toPath().resolve("hierarchy.bin");
+    built.write(file);
+
+    ContractionHierarchy<Integer> read = ContractionHierarchy.read(file, graph, true);
+    assertNotNull(read);
+    assertEquals(built.getShortcutCount(), read.getShortcutCount());
+    assertEquals(built.getCoreSize(), read.getCoreSize());
+    HierarchySearch expected = new HierarchySearch(built);
+    HierarchySearch actual = new HierarchySearch(read);
+    Random random = new Random(11);
+    for (int i = 0; i < 500; i++) {
+      int source = random.nextInt(graph.nodeCount());
+      int target = random.nextInt(graph.nodeCount());
+      boolean found = expected.search(source, target);
+      assertEquals(found, actual.search(source, target));
+      if (found) {
+        assertEquals(expected.getDistance(), actual.getDistance());
+      }
+      checkPath(actual, true, source, target);
+    }
+  }
+
+  /** A file written for one map is not read for another, even with the same number of nodes. */
+  @Test
+  public void readRejectsAnotherMap() throws Exception {
+    CsrGraph<Integer> graph = TestMaps.random(500, 3, 9, 1).snapshot();
+    Path file = folder.getRoot().toPath().resolve("hierarchy.bin");
+    new ContractionHierarchy<>(graph, true).write(file);
+
+    assertNull(ContractionHierarchy.read(file, TestMaps.random(500, 3, 9, 2).snapshot(), true));
+    assertNull(ContractionHierarchy.read(file, graph.withWeight(0, graph.weight(0) + 1), true));
+    int target = graph.targetsOf(0)[graph.start(0)];
+    assertNull(ContractionHierarchy.read(file, graph.withoutEdge(0, target), true));
+    assertNull(ContractionHierarchy.read(file, graph, false));
+    assertNull(ContractionHierarchy.read(file, TestMaps.random(501, 3, 9, 1).snapshot(), true));
+  }
+
+  /** A missing or corrupt file is not an error, the hierarchy is built instead. */
+  @Test
+  public void readIgnoresMissingOrCorruptFile() throws Exception {
+    CsrGraph<Integer> graph = TestMaps.random(500, 3, 9, 1).snapshot();
+    Path file = folder.getRoot().toPath().resolve("hierarchy.bin");
+    assertNull(ContractionHierarchy.read(file, graph, true));
+
+    new ContractionHierarchy<>(graph, true).write(file);
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[bytes.length / 2] ^= 1;
+    Files.write(file, bytes);
+    assertNull(ContractionHierarchy.read(file, graph, true));
+  }
+
+  private static void checkRandomPairs(CsrGraph<?> graph, boolean weighted, long seed) {
+    HierarchySearch search = new HierarchySearch(new ContractionHierarchy<>(graph, weighted));
+    Random random = new Random(seed);
+    for (int i = 0; i < 1_000; i++) {
+      int source = random.nextInt(graph.nodeCount());
+      checkPath(search, weighted, source, random.nextInt(graph.nodeCount()));
+    }
+  }
+
+  /**
+   * Compares one query with a plain search, and checks that the unpacked path follows edges of the
+   * original graph and costs what the hierarchy says it does.
+   */
+  private static void checkPath(HierarchySearch search, boolean weighted, int source, int target) {
+    CsrGraph<?> graph = search.getGraph();
+    String pair = source + " to " + target;
+    int expected;
+    if (weighted) {
+      DijkstraSearch dijkstra = new DijkstraSearch(graph);
+      expected = dijkstra.search(source, target) ? dijkstra.distanceTo(target) : -1;
+    } else {
+      BreadthFirstSearch bfs = new BreadthFirstSearch(graph);
+      expected = bfs.search(source, target) ? bfs.tracePath(target) - 1 : -1;
+    }
+
+    assertEquals(pair, expected >= 0, search.search(source, target));
+    if (expected >= 0) {
+      assertEquals(pair, expected, search.getDistance());
+      List<Integer> path = TestMaps.checkedPath(graph, search, search.tracePath(target));
+      assertTrue(pair, path.get(0) == source && path.get(path.size() - 1) == target);
+      assertEquals(pair, expected, weighted ? TestMaps.costOf(graph, path) : path.size() - 1);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that {@link CountryNameIndex} reads typed names the way {@link
+ * Utils#capitalizeFirstLetterOfEachWord} does, and ranks its suggestions by shared trigrams.
+ */
+public class CountryNameIndexTest {
+  private static final String[] TYPED = {
+    "india",
+    "  new   guinea ",
+    "irkuTsK",
+    "NORTHWEST TERRITORY",
+    "northwest-territory",
+    "great\tbritain",
+    "\r\nwestern  europe\n",
+    "a",
+    ""
+  };
+
+  private CountryRegistry countries;
+  private CountryNameIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    countries = new CountryRegistry();
+    TestMaps.bundled(countries);
+    index = new CountryNameIndex(countries);
+  }
+
+  /** The hash of the normalised input is the hash of the string the regex capitalisation makes. */
+  @Test
+  public void normalizedHashMatchesCapitalizedName() {
+    for (String typed : TYPED) {
+      String capitalized = Utils.capitalizeFirstLetterOfEachWord(typed);
+      assertEquals(typed, capitalized.hashCode(), CountryNameIndex.normalizedHash(typed));
+      assertEquals(typed, capitalized, CountryNameIndex.normalize(typed));
+    }
+  }
+
+  /** A name matches the normalised input exactly when it equals the regex capitalisation. */
+  @Test
+  public void matchesNormalizedAgreesWithCapitalizedName() {
+    for (String typed : TYPED) {
+      String capitalized = Utils.capitalizeFirstLetterOfEachWord(typed);
+      for (int id = 0; id < countries.size(); id++) {
+        String name = countries.nameOf(id);
+        assertEquals(
+            typed + " against " + name,
+            name.equals(capitalized),
+            CountryNameIndex.matchesNormalized(name, typed));
+      }
+    }
+  }
+
+  /** Typed names resolve to the country the capitalised name does, and no further. */
+  @Test
+  public void idOfAcceptsPromptSpellings() {
+    assertEquals(countries.idOf("India"), index.idOf("india"));
+    assertEquals(countries.idOf("New Guinea"), index.idOf("  new   guinea "));
+    assertEquals(countries.idOf("Northwest Territory"), index.idOf("northwest territory"));
+    assertEquals(-1, index.idOf("irkuTsK"));
+    assertEquals(-1, index.idOf("NORTHWEST TERRITORY"));
+    assertEquals(-1, index.idOf("Indi"));
+    assertEquals(-1, index.idOf(""));
+  }
+
+  /** Misspelt names suggest the country they were meant to be first. */
+  @Test
+  public void suggestRanksClosestFirst() {
+    assertEquals("Alaska", index.suggest("Alsaka", 3).get(0));
+    assertEquals(List.of("Ukraine"), index.suggest("ukrane", 3));
+    assertEquals(List.of("Irkutsk", "Yakutsk"), index.suggest("irkuTsK", 3));
+    assertEquals("New Guinea", index.suggest("new gunea", 3).get(0));
+  }
+
+  /** Ties in similarity go to the country registered first, and the limit cuts the list. */
+  @Test
+  public void suggestKeepsLimitAndRegistryOrder() {
+    List<String> europes = index.suggest("europe", 3);
+    assertEquals(List.of("Western Europe", "Northern Europe", "Southern Europe"), europes);
+    assertEquals(europes.subList(0, 2), index.suggest("europe", 2));
+    assertTrue(index.suggest("europe", 0).isEmpty());
+  }
+
+  /** Names with too little in common with any country suggest nothing. */
+  @Test
+  public void suggestNothingForUnrelatedNames() {
+    assertTrue(index.suggest("Atlantis", 3).isEmpty());
+    assertTrue(index.suggest("", 3).isEmpty());
+    assertFalse(index.suggest("siam", 3).isEmpty());
+  }
+
+  /** A negative limit is rejected. */
+  @Test(expected = IllegalArgumentException.class)
+  public void suggestRejectsNegativeLimit() {
+    index.suggest("siam", -1);
+  }
+}
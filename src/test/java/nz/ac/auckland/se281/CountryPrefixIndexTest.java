@@ -0,0 +1,69 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Checks that {@link CountryPrefixIndex} completes prefixes in any case, in name order. */
+public class CountryPrefixIndexTest {
+  private CountryRegistry countries;
+  private CountryPrefixIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    countries = new CountryRegistry();
+    TestMaps.bundled(countries);
+    index = new CountryPrefixIndex(countries);
+  }
+
+  /** Completions come in name order, whatever the case of the prefix. */
+  @Test
+  public void completesIgnoringCase() {
+    List<String> westerns = List.of("Western Australia", "Western Europe", "Western United States");
+    assertEquals(westerns, index.complete("Western", 10));
+    assertEquals(westerns, index.complete("wESTERN", 10));
+    assertEquals(List.of("Siam", "Siberia"), index.complete("si", 10));
+    assertEquals(List.of("Great Britain"), index.complete("great britain", 10));
+  }
+
+  /** The limit cuts the completions, but not the count of them. */
+  @Test
+  public void limitCutsCompletions() {
+    assertEquals(List.of("Western Australia", "Western Europe"), index.complete("w", 2));
+    assertTrue(index.complete("w", 0).isEmpty());
+    assertEquals(3, index.countCompletions("w"));
+  }
+
+  /** Prefixes no name starts with, including ones longer than any name, complete to nothing. */
+  @Test
+  public void noMatch() {
+    assertTrue(index.complete("Atlantis", 10).isEmpty());
+    assertTrue(index.complete("Siamese", 10).isEmpty());
+    assertTrue(index.complete("zz", 10).isEmpty());
+    assertEquals(0, index.countCompletions("Atlantis"));
+  }
+
+  /** Every country completes an empty prefix, and each one completes its own name. */
+  @Test
+  public void everyNameCompletesItself() {
+    assertEquals(countries.size(), index.countCompletions(""));
+    List<String> all = index.complete("", countries.size());
+    List<String> sorted = new ArrayList<>(all);
+    sorted.sort(String.CASE_INSENSITIVE_ORDER);
+    assertEquals(sorted, all);
+    for (int id = 0; id < countries.size(); id++) {
+      String name = countries.nameOf(id);
+      assertTrue(name, index.complete(name.toUpperCase(), 10).contains(name));
+    }
+  }
+
+  /** A negative limit is rejected. */
+  @Test(expected = IllegalArgumentException.class)
+  public void completeRejectsNegativeLimit() {
+    index.complete("a", -1);
+  }
+}
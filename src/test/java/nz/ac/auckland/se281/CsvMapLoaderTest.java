@@ -0,0 +1,67 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Checks that {@link CsvMapLoader} names the file and line of a malformed row. */
+public class CsvMapLoaderTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private MapFormatException loadFailure(String countries, String adjacencies) throws Exception {
+    Path directory = folder.getRoot().toPath();
+    Files.writeString(directory.resolve("countries.csv"), countries);
+    Files.writeString(directory.resolve("adjacencies.csv"), adjacencies);
+    try {
+      TestMaps.load(directory, new CountryRegistry());
+    } catch (MapFormatException e) {
+      return e;
+    }
+    fail("The map loaded without an error");
+    return null;
+  }
+
+  /** A country row missing its fuel cost is reported with its line number. */
+  @Test
+  public void reportsMissingField() throws Exception {
+    MapFormatException e = loadFailure("A,X,1\nB,X\n", "A,B\nB,A\n");
+    assertEquals("countries.csv", e.getFileName());
+    assertEquals(2, e.getLineNumber());
+    assertEquals("countries.csv:2: expected 3 fields: name,continent,fuel", e.getMessage());
+  }
+
+  /** Line numbers count the rows before the bad one, including one without a line break. */
+  @Test
+  public void reportsBadFuelOnLastLine() throws Exception {
+    MapFormatException e = loadFailure("A,X,1\r\nB,X,2\r\nC,Y,two", "");
+    assertEquals(3, e.getLineNumber());
+    assertEquals("countries.csv:3: fuel cost is not a non-negative integer", e.getMessage());
+  }
+
+  /** A malformed adjacency row is reported against its own file. */
+  @Test
+  public void reportsBadAdjacencyRow() throws Exception {
+    MapFormatException e = loadFailure("A,X,1\nB,X,2\n", "A,B\n,A\n");
+    assertEquals("adjacencies.csv", e.getFileName());
+    assertEquals(2, e.getLineNumber());
+  }
+
+  /** Rows and neighbours naming unknown countries are skipped, and repeated borders dropped. */
+  @Test
+  public void skipsUnknownCountries() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    Files.writeString(directory.resolve("countries.csv"), "A,X,1\nB,X,2\nC,Y,3\n");
+    Files.writeString(directory.resolve("adjacencies.csv"), "A,B,Z,B,C\nZ,A\nC,A\n");
+    Graph<String> graph = TestMaps.load(directory, new CountryRegistry());
+
+    assertEquals(List.of("B", "C"), List.copyOf(graph.getNeighbors("A")));
+    assertEquals(List.of(), List.copyOf(graph.getNeighbors("B")));
+    assertEquals(List.of("A"), List.copyOf(graph.getNeighbors("C")));
+  }
+}
@@ -0,0 +1,97 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks that {@link DirectionOptimizingSearch} finds paths as short as {@link BreadthFirstSearch}
+ * whether its levels are expanded top-down, bottom-up, or some of each.
+ */
+public class DirectionOptimizingSearchTest {
+
+  /** A node is its own path, without expanding a level. */
+  @Test
+  public void sameNode() {
+    DirectionOptimizingSearch search =
+        new DirectionOptimizingSearch(TestMaps.graphOf(3, 0, 1, 1, 2));
+    assertTrue(search.search(2, 2));
+    assertEquals(1, search.tracePath(2));
+    assertEquals(0, search.getBottomUpLevels());
+  }
+
+  /**
+   * Every path along a one-way line. Near the end of the line the few edges left make even a
+   * one-node frontier go bottom-up, which must still follow the line and not jump back along it.
+   */
+  @Test
+  public void oneWayLine() {
+    int[] edges = new int[2 * 99];
+    for (int node = 0; node < 99; node++) {
+      edges[2 * node] = node;
+      edges[2 * node + 1] = node + 1;
+    }
+    CsrGraph<Integer> graph = TestMaps.graphOf(100, edges);
+    BreadthFirstSearch expected = new BreadthFirstSearch(graph);
+    DirectionOptimizingSearch search = new DirectionOptimizingSearch(graph);
+    for (int target = 0; target < 100; target++) {
+      TestMaps.checkFewestHops(expected, search, 0, target);
+      TestMaps.checkFewestHops(expected, search, 99, target);
+    }
+    assertTrue(search.search(0, 99));
+    assertTrue(search.getBottomUpLevels() > 0);
+    assertFalse(search.search(99, 0));
+  }
+
+  /**
+   * On a dense random graph the frontier soon covers much of the map, so the search goes
+   * bottom-up, where each node looks for its parent along its incoming, one-way edges.
+   */
+  @Test
+  public void denseGraphGoesBottomUp() {
+    CsrGraph<Integer> graph = TestMaps.random(5_000, 16, 0, 11).snapshot();
+    BreadthFirstSearch expected = new BreadthFirstSearch(graph);
+    DirectionOptimizingSearch search = new DirectionOptimizingSearch(graph);
+    Random random = new Random(11);
+    int bottomUp = 0;
+    for (int i = 0; i < 300; i++) {
+      TestMaps.checkFewestHops(expected, search, random.nextInt(5_000), random.nextInt(5_000));
+      bottomUp += search.getBottomUpLevels();
+    }
+    assertTrue(bottomUp > 0);
+  }
+
+  /**
+   * A dense core with a long one-way tail: the search goes bottom-up in the core, and must come
+   * back top-down, or keep going bottom-up correctly, along the tail.
+   */
+  @Test
+  public void denseCoreWithLongTail() {
+    int core = 2_000;
+    int tail = 50;
+    Random random = new Random(13);
+    int[] edges = new int[2 * (core * 16 + tail)];
+    int next = 0;
+    for (int node = 0; node < core; node++) {
+      for (int i = 0; i < 16; i++) {
+        edges[next++] = node;
+        edges[next++] = random.nextInt(core);
+      }
+    }
+    for (int node = core - 1; node < core + tail - 1; node++) {
+      edges[next++] = node;
+      edges[next++] = node + 1;
+    }
+    CsrGraph<Integer> graph = TestMaps.graphOf(core + tail, edges);
+    BreadthFirstSearch expected = new BreadthFirstSearch(graph);
+    DirectionOptimizingSearch search = new DirectionOptimizingSearch(graph);
+    for (int source = 0; source < core; source += 97) {
+      TestMaps.checkFewestHops(expected, search, source, core + tail - 1);
+      assertTrue(search.getBottomUpLevels() > 0);
+      TestMaps.checkFewestHops(expected, search, core + tail - 1, source);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/** Checks that {@link DistanceTree} repairs give the distances of a fresh search. */
+public class DistanceTreeTest {
+
+  /** Forward trees, measuring each node's distance from its nearest seed. */
+  @Test
+  public void repairsFromSeeds() {
+    for (long seed = 1; seed <= 5; seed++) {
+      checkRepairs(seed, false);
+    }
+  }
+
+  /** Backward trees, measuring each node's distance to its nearest seed. */
+  @Test
+  public void repairsTowardsSeeds() {
+    for (long seed = 1; seed <= 5; seed++) {
+      checkRepairs(seed, true);
+    }
+  }
+
+  /**
+   * Adds and removes random edges of a sparse random graph, repairing a tree after each change and
+   * comparing it with a tree built from scratch.
+   */
+  private static void checkRepairs(long seed, boolean towardsSeeds) {
+    Graph<Integer> graph = TestMaps.random(300, 2, 0, seed);
+    Random random = new Random(seed);
+    List<Integer> seeds = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      seeds.add(random.nextInt(300));
+    }
+    DistanceTree<Integer> tree = distances(graph, seeds, towardsSeeds);
+
+    for (int step = 0; step < 400; step++) {
+      CsrGraph<Integer> before = graph.snapshot();
+      int from = random.nextInt(300);
+      if (random.nextBoolean() && before.end(from) > before.start(from)) {
+        int edge = before.start(from) + random.nextInt(before.end(from) - before.start(from));
+        int to = before.targetsOf(from)[edge];
+        assertTrue(graph.removeEdge(from, to));
+        tree.edgeRemoved(graph.snapshot(), from, to);
+      } else {
+        int to = random.nextInt(300);
+        graph.addEdge(from, to);
+        tree.edgeAdded(graph.snapshot(), from, to);
+      }
+
+      String change = "step " + step + " of seed " + seed;
+      DistanceTree<Integer> fresh = distances(graph, seeds, towardsSeeds);
+      assertArrayEquals(change, fresh.getDistances(), tree.getDistances());
+      checkParents(change, tree, towardsSeeds);
+    }
+  }
+
+  private static DistanceTree<Integer> distances(
+      Graph<Integer> graph, List<Integer> seeds, boolean towardsSeeds) {
+    return towardsSeeds ? graph.findDistancesTo(seeds) : graph.findDistancesFrom(seeds);
+  }
+
+  /** Checks that every reached node other than a seed hangs from a neighbour one step nearer. */
+  private static void checkParents(String change, DistanceTree<Integer> tree, boolean towards) {
+    CsrGraph<Integer> graph = tree.getGraph();
+    int[] distances = tree.getDistances();
+    int[] parents = tree.getParents();
+    for (int node = 0; node < graph.nodeCount(); node++) {
+      if (distances[node] <= 0) {
+        continue;
+      }
+      int parent = parents[node];
+      assertEquals(change, distances[node] - 1, distances[parent]);
+      assertTrue(
+          change,
+          towards ? TestMaps.hasEdge(graph, node, parent) : TestMaps.hasEdge(graph, parent, node));
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+/** Checks the copy-on-write changes of a frozen {@link Graph}, and searching it on many threads. */
+public class GraphTest {
+
+  /** Removing an edge leaves the versions taken before it untouched. */
+  @Test
+  public void removeEdgeKeepsOlderVersions() throws Exception {
+    Graph<String> graph = TestMaps.bundled(new CountryRegistry());
+    CsrGraph<String> before = graph.snapshot();
+
+    assertTrue(graph.removeEdge("India", "Siam"));
+
+    CsrGraph<String> after = graph.snapshot();
+    assertTrue(before.neighbours("India").contains("Siam"));
+    assertFalse(after.neighbours("India").contains("Siam"));
+    assertNotEquals(before.getVersion(), after.getVersion());
+    assertEquals(before.edgeCount() - 1, after.edgeCount());
+    assertEquals(List.of("India", "China", "Siam"), graph.findShortestPath("India", "Siam"));
+  }
+
+  /** Removing an edge the graph does not have changes nothing, not even the version. */
+  @Test
+  public void removeMissingEdge() throws Exception {
+    Graph<String> graph = TestMaps.bundled(new CountryRegistry());
+    int version = graph.getVersion();
+
+    assertFalse(graph.removeEdge("India", "Peru"));
+    assertFalse(graph.removeEdge("India", "Atlantis"));
+    assertEquals(version, graph.getVersion());
+  }
+
+  /** Adding an edge to a frozen graph shortens the routes that can use it. */
+  @Test
+  public void addEdgeKeepsOlderVersions() throws Exception {
+    Graph<String> graph = TestMaps.bundled(new CountryRegistry());
+    CsrGraph<String> before = graph.snapshot();
+
+    graph.addEdge("Peru", "Siam");
+
+    assertFalse(before.neighbours("Peru").contains("Siam"));
+    assertEquals(List.of("Peru", "Siam"), graph.findShortestPath("Peru", "Siam"));
+    assertTrue(pathLength(before, "Peru", "Siam") > 2);
+  }
+
+  /** Changing a node's weight leaves older versions with the old weight, and reroutes by fuel. */
+  @Test
+  public void setNodeWeightKeepsOlderVersions() throws Exception {
+    Graph<String> graph = TestMaps.bundled(new CountryRegistry());
+    CsrGraph<String> before = graph.snapshot();
+    int china = before.idOf("China");
+    int fuel = before.weight(china);
+    List<String> cheapest = graph.findCheapestPath("India", "Mongolia");
+    assertTrue(cheapest.contains("China"));
+
+    graph.setNodeWeight("China", 100);
+
+    assertEquals(fuel, before.weight(china));
+    assertEquals(100, graph.snapshot().weight(china));
+    assertFalse(graph.findCheapestPath("India", "Mongolia").contains("China"));
+  }
+
+  /** Setting a node's weight to the weight it has publishes no new version. */
+  @Test
+  public void setSameNodeWeight() throws Exception {
+    Graph<String> graph = TestMaps.bundled(new CountryRegistry());
+    int version = graph.getVersion();
+    graph.setNodeWeight("China", graph.snapshot().weight(graph.snapshot().idOf("China")));
+
+    assertEquals(version, graph.getVersion());
+  }
+
+  /** Only a frozen graph with node weights can be reweighted one node at a time. */
+  @Test(expected = IllegalStateException.class)
+  public void setNodeWeightNeedsFrozenGraph() {
+    Graph<String> graph = new Graph<>();
+    graph.addEdge("A", "B");
+    graph.setNodeWeights(node -> 1);
+    graph.setNodeWeight("A", 2);
+  }
+
+  /** Searches running on many threads at once each get the path a lone search finds. */
+  @Test
+  public void concurrentSearchesAgree() throws Exception {
+    Graph<Integer> graph = TestMaps.random(5_000, 3, 9, 281);
+    Random random = new Random(281);
+    int queries = 400;
+    int[] sources = new int[queries];
+    int[] targets = new int[queries];
+    List<List<Integer>> shortest = new ArrayList<>();
+    List<List<Integer>> cheapest = new ArrayList<>();
+    for (int i = 0; i < queries; i++) {
+      sources[i] = random.nextInt(5_000);
+      targets[i] = random.nextInt(5_000);
+      shortest.add(graph.findShortestPath(sources[i], targets[i]));
+      cheapest.add(graph.findCheapestPath(sources[i], targets[i]));
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> runs = new ArrayList<>();
+      for (int thread = 0; thread < 8; thread++) {
+        int offset = thread;
+        runs.add(
+            pool.submit(
+                () -> {
+                  for (int j = 0; j < queries; j++) {
+                    int i = (j + offset * 50) % queries;
+                    assertEquals(shortest.get(i), graph.findShortestPath(sources[i], targets[i]));
+                    assertEquals(cheapest.get(i), graph.findCheapestPath(sources[i], targets[i]));
+                  }
+                }));
+      }
+      for (Future<?> run : runs) {
+        run.get();
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Many virtual threads searching at once share a pool of engines that never holds more than one
+   * per core, and each still gets the path a lone search finds.
+   */
+  @Test
+  public void virtualThreadsShareBoundedPool() throws Exception {
+    Graph<Integer> graph = TestMaps.random(2_000, 3, 0, 7);
+    List<Integer> expected = graph.findShortestPath(0, 1_999, SearchMode.BIDIRECTIONAL);
+    try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+      List<Future<List<Integer>>> runs = new ArrayList<>();
+      for (int i = 0; i < 500; i++) {
+        runs.add(pool.submit(() -> graph.findShortestPath(0, 1_999, SearchMode.BIDIRECTIONAL)));
+      }
+      for (Future<List<Integer>> run : runs) {
+        assertEquals(expected.size(), run.get().size());
+      }
+    }
+    int cores = Runtime.getRuntime().availableProcessors();
+    assertTrue(graph.pooledSearchCount(SearchMode.BIDIRECTIONAL) <= cores);
+  }
+
+  private static int pathLength(CsrGraph<String> graph, String from, String to) {
+    BreadthFirstSearch search = new BreadthFirstSearch(graph);
+    search.search(graph.idOf(from), graph.idOf(to));
+    return search.tracePath(graph.idOf(to));
+  }
+}
@@ -0,0 +1,151 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks that {@link Landmarks} bounds never overestimate a distance, and that {@link AltSearch}
+ * finds paths as short or cheap as {@link DijkstraSearch} and {@link BreadthFirstSearch}.
+ */
+public class LandmarksTest {
+
+  /** Every pair of countries on the bundled map, summing fuel costs. */
+  @Test
+  public void bundledMapByFuel() throws Exception {
+    checkAllPairs(TestMaps.bundled(new CountryRegistry()).snapshot(), true);
+  }
+
+  /** Every pair of countries on the bundled map, counting border crossings. */
+  @Test
+  public void bundledMapByHops() throws Exception {
+    checkAllPairs(TestMaps.bundled(new CountryRegistry()).snapshot(), false);
+  }
+
+  /** Random pairs on sparse random graphs with random weights, many of them with no path. */
+  @Test
+  public void randomGraphsByWeight() {
+    for (long seed = 1; seed <= 3; seed++) {
+      checkRandomPairs(TestMaps.random(1_000, 2, 9, seed).snapshot(), true, seed);
+    }
+  }
+
+  /** Random pairs on sparse random graphs, counting hops. */
+  @Test
+  public void randomGraphsByHops() {
+    for (long seed = 1; seed <= 3; seed++) {
+      checkRandomPairs(TestMaps.random(1_000, 2, 0, seed).snapshot(), false, seed);
+    }
+  }
+
+  /** Weights of 0 make many paths tie, which the bounds and search must still get right. */
+  @Test
+  public void zeroWeights() {
+    checkRandomPairs(TestMaps.random(1_000, 3, 0, 7).snapshot(), true, 7);
+  }
+
+  /** Asking for more landmarks than nodes picks each node once. */
+  @Test
+  public void countCappedAtNodeCount() {
+    CsrGraph<Integer> graph = TestMaps.random(5, 2, 3, 1).snapshot();
+    assertEquals(5, new Landmarks(graph, 16, true).getLandmarks().length);
+  }
+
+  /** A landmark count that is not positive is rejected. */
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNoLandmarks() {
+    new Landmarks(TestMaps.random(10, 2, 3, 1).snapshot(), 0, false);
+  }
+
+  /**
+   * An engine stays on the version its landmarks were measured on unless it is given landmarks for
+   * a newer one, rather than measuring them in the middle of a query.
+   */
+  @Test
+  public void newVersionNeedsNewLandmarks() {
+    Graph<Integer> graph = TestMaps.random(100, 3, 9, 1);
+    CsrGraph<Integer> measured = graph.snapshot();
+    AltSearch search = new AltSearch(new Landmarks(measured, 4, true));
+    graph.setNodeWeight(0, measured.weight(0) + 1);
+    CsrGraph<Integer> changed = graph.snapshot();
+    try {
+      search.setGraph(changed);
+      fail("Expected the newer version to be rejected");
+    } catch (IllegalArgumentException e) {
+      assertSame(measured, search.getGraph());
+    }
+
+    search.setLandmarks(new Landmarks(changed, 4, true));
+    assertSame(changed, search.getGraph());
+    search.setGraph(changed);
+  }
+
+  private static void checkAllPairs(CsrGraph<?> graph, boolean weighted) {
+    Checker checker = new Checker(graph, weighted);
+    for (int source = 0; source < graph.nodeCount(); source++) {
+      for (int target = 0; target < graph.nodeCount(); target++) {
+        checker.check(source, target);
+      }
+    }
+  }
+
+  private static void checkRandomPairs(CsrGraph<?> graph, boolean weighted, long seed) {
+    Checker checker = new Checker(graph, weighted);
+    Random random = new Random(seed);
+    for (int i = 0; i < 1_000; i++) {
+      checker.check(random.nextInt(graph.nodeCount()), random.nextInt(graph.nodeCount()));
+    }
+  }
+
+  /** Compares the landmarks and ALT search with a plain search, one pair of nodes at a time. */
+  private static class Checker {
+    private final CsrGraph<?> graph;
+    private final boolean weighted;
+    private final Landmarks landmarks;
+    private final AltSearch alt;
+    private final DijkstraSearch dijkstra;
+    private final BreadthFirstSearch bfs;
+
+    Checker(CsrGraph<?> graph, boolean weighted) {
+      this.graph = graph;
+      this.weighted = weighted;
+      this.landmarks = new Landmarks(graph, 8, weighted);
+      this.alt = new AltSearch(landmarks);
+      this.dijkstra = new DijkstraSearch(graph);
+      this.bfs = new BreadthFirstSearch(graph);
+    }
+
+    /** Gets the true distance between two nodes, or -1 if there is no path. */
+    private int distance(int source, int target) {
+      if (weighted) {
+        return dijkstra.search(source, target) ? dijkstra.distanceTo(target) : -1;
+      }
+      return bfs.search(source, target) ? bfs.tracePath(target) - 1 : -1;
+    }
+
+    void check(int source, int target) {
+      String pair = source + " to " + target;
+      int expected = distance(source, target);
+      if (expected < 0) {
+        assertFalse(pair, alt.search(source, target));
+        return;
+      }
+
+      assertFalse(pair, landmarks.provesUnreachable(source, target));
+      int bound = landmarks.lowerBound(source, target);
+      assertTrue(pair + ": bound " + bound + " over " + expected, bound <= expected);
+
+      assertTrue(pair, alt.search(source, target));
+      assertEquals(pair, expected, alt.distanceTo(target));
+      List<Integer> path = TestMaps.checkedPath(graph, alt, alt.tracePath(target));
+      assertTrue(pair, path.get(0) == source && path.get(path.size() - 1) == target);
+      assertEquals(pair, expected, weighted ? TestMaps.costOf(graph, path) : path.size() - 1);
+    }
+  }
+}
@@ -675,5 +675,83 @@ public class MainTest {
       assertContains(FUEL_INFO.getMessage("6"));
       assertContains(FUEL_CONTINENT_INFO.getMessage("Europe (6)"));
     }
+
+    /**
+     * This test checks if the FUEL_ROUTE command picks the route that burns the least fuel, even
+     * when it crosses more borders than the route printed by the ROUTE command.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void T3_01_fuel_route_cheaper_than_shortest() throws Exception {
+      runCommands(FUEL_ROUTE, "Ural", "Venezuela");
+      assertContains(
+          ROUTE_INFO.getMessage(
+              "[Ural, Afghanistan, Middle East, East Africa, North Africa, Brazil, Venezuela]"));
+      assertContains(FUEL_INFO.getMessage("17"));
+      assertContains(CONTINENT_INFO.getMessage("[Asia (8), Africa (7), South America (2)]"));
+      assertContains(FUEL_CONTINENT_INFO.getMessage("Asia (8)"));
+      assertDoesNotContain(FUEL_INFO.getMessage("18"));
+    }
+
+    /**
+     * This test checks if the BATCH_ROUTE command answers every line of a routes file as CSV, in
+     * input order, with an error column for unknown countries instead of stopping. Country names
+     * are accepted with the same spellings as at the prompts.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void T3_02_batch_route_csv() throws Exception {
+      runCommands(BATCH_ROUTE + " src/test/resources/batch-routes.txt csv");
+      assertContains("source,destination,fuel,highestFuelContinent,route,error");
+      assertContains("India,Peru,17,Africa,India;Middle East;Egypt;North Africa;Brazil;Peru,");
+      assertContains("Ural,Venezuela,18,Europe,");
+      assertContains("India,Atlantis,,,,unknown country: Atlantis");
+      assertContains("Peru,Peru,0,South America,Peru,");
+      assertContains("New Guinea,Siam,3,Australia,New Guinea;Indonesia;Siam,");
+      assertContains("IrkuTsK,Siam,,,,unknown country: IrkuTsK");
+    }
+
+    /**
+     * This test checks if the BATCH_ROUTE command prints one JSON object per route, and reports
+     * unknown countries in an error field without printing the CSV header.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void T3_03_batch_route_json() throws Exception {
+      runCommands(BATCH_ROUTE + " src/test/resources/batch-routes.txt json");
+      assertContains(
+          "{\"source\":\"India\",\"destination\":\"Siam\",\"route\":[\"India\",\"Siam\"],"
+              + "\"fuel\":0,\"continents\":{\"Asia\":0},\"highestFuelContinent\":\"Asia\"}");
+      assertContains("{\"source\":\"India\",\"destination\":\"Atlantis\",\"error\":");
+      assertDoesNotContain("source,destination");
+    }
+
+    /**
+     * This test checks if the BATCH_ROUTE command rejects an output format other than csv or json.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void T3_04_batch_route_bad_format() throws Exception {
+      runCommands(BATCH_ROUTE + " src/test/resources/batch-routes.txt xml");
+      assertContains(INVALID_BATCH_FORMAT.getMessage("xml"));
+    }
+
+    /**
+     * This test checks if the NEAREST command asks again for an unknown continent, then prints the
+     * nearest country in the continent along with the route to it.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void T3_05_nearest_in_continent() throws Exception {
+      runCommands(NEAREST, "india", "atlantis", "australia");
+      assertContains(INVALID_CONTINENT.getMessage("Atlantis"));
+      assertContains(NEAREST_COUNTRY_INFO.getMessage("Australia", "Indonesia", "2"));
+      assertContains(ROUTE_INFO.getMessage("[India, Siam, Indonesia]"));
+    }
   }
 }
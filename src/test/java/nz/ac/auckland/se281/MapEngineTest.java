@@ -0,0 +1,193 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Checks how {@link MapEngine} loads a map and follows changes to it. */
+public class MapEngineTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private PrintStream origOut;
+  private PrintStream origErr;
+  private ByteArrayOutputStream captureErr;
+
+  @Before
+  public void setUp() {
+    origOut = System.out;
+    origErr = System.err;
+    System.setOut(new PrintStream(new ByteArrayOutputStream()));
+    captureErr = new ByteArrayOutputStream();
+    System.setErr(new PrintStream(captureErr));
+  }
+
+  @After
+  public void tearDown() {
+    System.setOut(origOut);
+    System.setErr(origErr);
+  }
+
+  /** A malformed countries file is reported, and none of the rows before it are kept. */
+  @Test
+  public void malformedMapLeavesNoCountries() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    Files.writeString(directory.resolve("countries.csv"), "A,X,1\nB,X\n");
+    Files.writeString(directory.resolve("adjacencies.csv"), "A,B\nB,A\n");
+    MapEngine engine = new MapEngine(new MapEngine.Options().setMapDirectory(directory));
+
+    assertTrue(
+        captureErr
+            .toString()
+            .contains(
+                "Could not load the map: countries.csv:2: expected 3 fields: name,continent,fuel"));
+    assertEquals(-1, engine.getCountryNames().idOf("A"));
+    assertEquals(0, engine.getRouteService().getGraph().nodeCount());
+    assertEquals(0, engine.getCountryPrefixes().countCompletions(""));
+  }
+
+  /** A map directory without the CSV files is reported the same way. */
+  @Test
+  public void missingMapLeavesNoCountries() {
+    Path missing = folder.getRoot().toPath().resolve("missing");
+    MapEngine engine = new MapEngine(new MapEngine.Options().setMapDirectory(missing));
+
+    assertTrue(captureErr.toString().startsWith("Could not load the map: "));
+    assertEquals(0, engine.getRouteService().getGraph().nodeCount());
+  }
+
+  /** The no-argument constructor takes its options from the system properties. */
+  @Test
+  public void optionsFromSystemProperties() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    Files.writeString(directory.resolve("countries.csv"), "A,X,1\nB,X,2\n");
+    Files.writeString(directory.resolve("adjacencies.csv"), "A,B\nB,A\n");
+    System.setProperty("se281.mapDir", directory.toString());
+    System.setProperty("se281.routeTable", "true");
+    try {
+      MapEngine engine = new MapEngine();
+      assertEquals(2, engine.getRouteService().getGraph().nodeCount());
+      assertEquals(
+          List.of("A", "B"), engine.getRouteService().findRoute("A", "B", false).getPath());
+    } finally {
+      System.clearProperty("se281.mapDir");
+      System.clearProperty("se281.routeTable");
+    }
+  }
+
+  /** Closing a border reroutes the queries after it, but not a version taken before it. */
+  @Test
+  public void closeBorderReroutes() throws Exception {
+    MapEngine engine = new MapEngine(new MapEngine.Options());
+    RouteService service = engine.getRouteService();
+    CsrGraph<String> before = service.getGraph();
+    assertEquals(List.of("India", "Siam"), service.findRoute("India", "Siam", false).getPath());
+
+    assertTrue(engine.closeBorder("India", "Siam"));
+    assertFalse(engine.closeBorder("India", "Siam"));
+
+    assertEquals(
+        List.of("India", "China", "Siam"), service.findRoute("India", "Siam", false).getPath());
+    assertTrue(before.neighbours("India").contains("Siam"));
+    assertFalse(service.getGraph().neighbours("India").contains("Siam"));
+  }
+
+  /** Opening a border gives the queries after it a shorter route. */
+  @Test
+  public void openBorderReroutes() throws Exception {
+    MapEngine engine = new MapEngine(new MapEngine.Options());
+    RouteService service = engine.getRouteService();
+    CsrGraph<String> before = service.getGraph();
+    int hops = service.findRoute("Peru", "Siam", false).getPath().size();
+
+    engine.openBorder("Peru", "Siam");
+
+    assertTrue(hops > 2);
+    assertEquals(List.of("Peru", "Siam"), service.findRoute("Peru", "Siam", false).getPath());
+    assertFalse(before.neighbours("Peru").contains("Siam"));
+  }
+
+  /** A new fuel cost reroutes least-fuel queries, but not a version taken before it. */
+  @Test
+  public void setFuelCostReroutes() throws Exception {
+    MapEngine engine = new MapEngine(new MapEngine.Options());
+    RouteService service = engine.getRouteService();
+    CsrGraph<String> before = service.getGraph();
+    int china = before.idOf("China");
+    int fuel = before.weight(china);
+    assertTrue(service.findRoute("India", "Mongolia", true).getPath().contains("China"));
+
+    engine.setFuelCost("China", 100);
+
+    assertEquals(fuel, before.weight(china));
+    assertEquals(100, service.getGraph().weight(china));
+    assertFalse(service.findRoute("India", "Mongolia", true).getPath().contains("China"));
+  }
+
+  /** Changes to countries that are not on the map are rejected before anything changes. */
+  @Test(expected = CountryNotFoundException.class)
+  public void closeBorderOfUnknownCountry() throws Exception {
+    new MapEngine(new MapEngine.Options()).closeBorder("India", "Atlantis");
+  }
+
+  /** A tally reused from a longer route keeps none of that route's continents or fuel. */
+  @Test
+  public void reusedTallyForgetsLastRoute() throws Exception {
+    RouteService service = new MapEngine(new MapEngine.Options()).getRouteService();
+    service.findRoute("Peru", "Kamchatka", true);
+    RouteResult route = service.findRoute("India", "Siam", true);
+
+    RouteResult fresh =
+        new MapEngine(new MapEngine.Options()).getRouteService().findRoute("India", "Siam", true);
+    assertEquals(fresh.getPath(), route.getPath());
+    assertEquals(fresh.getTotalFuel(), route.getTotalFuel());
+    assertEquals(
+        List.copyOf(fresh.getContinentFuel().entrySet()),
+        List.copyOf(route.getContinentFuel().entrySet()));
+    assertEquals(fresh.getHighestFuelContinent(), route.getHighestFuelContinent());
+  }
+
+  /**
+   * After the map changes, the landmarks, hierarchy and overlay stop answering or follow the
+   * change, so every least-fuel route costs what Dijkstra finds on the changed map.
+   */
+  @Test
+  public void changesReachEveryFuelEngine() throws Exception {
+    Path hierarchy = folder.getRoot().toPath().resolve("hierarchy.bin");
+    MapEngine fast =
+        new MapEngine(
+            new MapEngine.Options()
+                .setLandmarkCount(4)
+                .setHierarchyFile(hierarchy)
+                .setContinentOverlay(true));
+    MapEngine plain = new MapEngine(new MapEngine.Options());
+    for (MapEngine engine : List.of(fast, plain)) {
+      engine.closeBorder("India", "Siam");
+      engine.openBorder("Peru", "Siam");
+      engine.setFuelCost("China", 100);
+      engine.setFuelCost("Brazil", 0);
+    }
+
+    CsrGraph<String> graph = plain.getRouteService().getGraph();
+    for (int source = 0; source < graph.nodeCount(); source++) {
+      for (int target = 0; target < graph.nodeCount(); target++) {
+        String from = graph.nodeOf(source);
+        String to = graph.nodeOf(target);
+        assertEquals(
+            from + " to " + to,
+            plain.getRouteService().findRoute(from, to, true).getTotalFuel(),
+            fast.getRouteService().findRoute(from, to, true).getTotalFuel());
+      }
+    }
+  }
+}
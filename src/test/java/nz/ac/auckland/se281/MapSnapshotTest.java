@@ -0,0 +1,103 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Checks that {@link MapSnapshot} gives back the map it wrote, and only while it is current. */
+public class MapSnapshotTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path countriesFile;
+  private Path adjacenciesFile;
+  private Path snapshotFile;
+
+  @Before
+  public void setUp() throws Exception {
+    Path directory = folder.newFolder("map").toPath();
+    countriesFile = directory.resolve("countries.csv");
+    adjacenciesFile = directory.resolve("adjacencies.csv");
+    Files.copy(TestMaps.BUNDLED_MAP.resolve("countries.csv"), countriesFile);
+    Files.copy(TestMaps.BUNDLED_MAP.resolve("adjacencies.csv"), adjacenciesFile);
+    snapshotFile = folder.getRoot().toPath().resolve("map.bin");
+
+    CountryRegistry countries = new CountryRegistry();
+    CsrGraph<String> graph = TestMaps.load(directory, countries).snapshot();
+    new MapSnapshot(snapshotFile).write(countriesFile, adjacenciesFile, graph, countries);
+  }
+
+  private Graph<String> read(CountryRegistry countries) throws Exception {
+    return new MapSnapshot(snapshotFile).read(countriesFile, adjacenciesFile, countries);
+  }
+
+  /** The snapshot holds the same countries, continents, fuel costs and borders as the CSV files. */
+  @Test
+  public void roundTrips() throws Exception {
+    CountryRegistry expectedCountries = new CountryRegistry();
+    CsrGraph<String> expected = TestMaps.bundled(expectedCountries).snapshot();
+    CountryRegistry countries = new CountryRegistry();
+    Graph<String> graph = read(countries);
+
+    assertNotNull(graph);
+    CsrGraph<String> actual = graph.snapshot();
+    assertEquals(expected.nodeCount(), actual.nodeCount());
+    assertEquals(expected.edgeCount(), actual.edgeCount());
+    assertEquals(expectedCountries.size(), countries.size());
+    for (int id = 0; id < expected.nodeCount(); id++) {
+      String name = expected.nodeOf(id);
+      assertEquals(name, actual.nodeOf(id));
+      assertEquals(expectedCountries.fuelOf(id), countries.fuelOf(id));
+      assertEquals(
+          expectedCountries.continentName(expectedCountries.continentOf(id)),
+          countries.continentName(countries.continentOf(id)));
+      assertEquals(List.copyOf(expected.neighbours(name)), List.copyOf(actual.neighbours(name)));
+    }
+  }
+
+  /** Changing the size of a CSV file makes the snapshot stale. */
+  @Test
+  public void rejectedWhenSizeChanges() throws Exception {
+    FileTime modified = Files.getLastModifiedTime(countriesFile);
+    Files.writeString(countriesFile, "Atlantis,Ocean,1\n", StandardOpenOption.APPEND);
+    Files.setLastModifiedTime(countriesFile, modified);
+
+    assertNull(read(new CountryRegistry()));
+  }
+
+  /** Touching a CSV file makes the snapshot stale, even if its size is the same. */
+  @Test
+  public void rejectedWhenModifiedTimeChanges() throws Exception {
+    FileTime modified = Files.getLastModifiedTime(adjacenciesFile);
+    Files.setLastModifiedTime(adjacenciesFile, FileTime.fromMillis(modified.toMillis() + 2000));
+
+    assertNull(read(new CountryRegistry()));
+  }
+
+  /** A snapshot whose body no longer matches its CRC-32C checksum is ignored. */
+  @Test
+  public void rejectedOnChecksumMismatch() throws Exception {
+    byte[] bytes = Files.readAllBytes(snapshotFile);
+    bytes[bytes.length / 2] ^= 1;
+    Files.write(snapshotFile, bytes);
+
+    assertNull(read(new CountryRegistry()));
+  }
+
+  /** A snapshot that was never written is not an error, the CSV files are loaded instead. */
+  @Test
+  public void missingSnapshotIsIgnored() throws Exception {
+    Files.delete(snapshotFile);
+
+    assertNull(read(new CountryRegistry()));
+  }
+}
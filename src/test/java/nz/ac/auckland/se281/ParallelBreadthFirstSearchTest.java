@@ -0,0 +1,90 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+/**
+ * Checks that {@link ParallelBreadthFirstSearch} finds paths as short as {@link
+ * BreadthFirstSearch}, with frontiers of one chunk, of exactly a chunk boundary, and of many chunks
+ * expanded by many threads at once.
+ */
+public class ParallelBreadthFirstSearchTest {
+
+  /** A node is its own path, without expanding a level. */
+  @Test
+  public void sameNode() {
+    ParallelBreadthFirstSearch search =
+        new ParallelBreadthFirstSearch(TestMaps.graphOf(3, 0, 1, 1, 2));
+    assertTrue(search.search(0, 0));
+    assertEquals(1, search.tracePath(0));
+    assertEquals(0, search.pathNode(0));
+  }
+
+  /**
+   * Hubs whose leaves make a frontier just under, at and just over one chunk, then one far more
+   * than a chunk, each leaf leading on to one of a few shared nodes that many chunks race to claim.
+   */
+  @Test
+  public void chunkBoundaries() {
+    for (int leaves : new int[] {255, 256, 257, 20_000}) {
+      checkStar(leaves, new ParallelBreadthFirstSearch(star(leaves)));
+    }
+  }
+
+  /** The frontier is expanded on the pool it is given, here a small one of its own. */
+  @Test
+  public void ownPool() {
+    ForkJoinPool pool = new ForkJoinPool(3);
+    try {
+      checkStar(20_000, new ParallelBreadthFirstSearch(star(20_000), pool));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * One engine answers many queries in a row on a sparse random graph, where about a fifth of the
+   * pairs have no path, so no claimed node or buffer from one search leaks into the next.
+   */
+  @Test
+  public void reusedOnRandomGraph() {
+    CsrGraph<Integer> graph = TestMaps.random(20_000, 2, 0, 17).snapshot();
+    BreadthFirstSearch expected = new BreadthFirstSearch(graph);
+    ParallelBreadthFirstSearch search = new ParallelBreadthFirstSearch(graph);
+    Random random = new Random(17);
+    for (int i = 0; i < 300; i++) {
+      TestMaps.checkFewestHops(expected, search, random.nextInt(20_000), random.nextInt(20_000));
+    }
+  }
+
+  /**
+   * Builds a hub, node 0, with one-way edges out to the given number of leaves, each of which
+   * leads on to one of ten shared nodes after them.
+   */
+  private static CsrGraph<Integer> star(int leaves) {
+    int[] edges = new int[4 * leaves];
+    for (int leaf = 1; leaf <= leaves; leaf++) {
+      edges[4 * (leaf - 1)] = 0;
+      edges[4 * (leaf - 1) + 1] = leaf;
+      edges[4 * (leaf - 1) + 2] = leaf;
+      edges[4 * (leaf - 1) + 3] = leaves + 1 + leaf % 10;
+    }
+    return TestMaps.graphOf(leaves + 11, edges);
+  }
+
+  private static void checkStar(int leaves, ParallelBreadthFirstSearch search) {
+    CsrGraph<?> graph = search.getGraph();
+    BreadthFirstSearch expected = new BreadthFirstSearch(graph);
+    for (int target = 0; target < graph.nodeCount(); target += 1 + leaves / 300) {
+      TestMaps.checkFewestHops(expected, search, 0, target);
+    }
+    for (int shared = leaves + 1; shared < graph.nodeCount(); shared++) {
+      TestMaps.checkFewestHops(expected, search, 0, shared);
+      TestMaps.checkFewestHops(expected, search, shared, 0);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks that the one-pass {@link FuelTally} evaluations of {@link RouteAnalyzer} give the same
+ * fuel, continents and highest continent as its name-based methods.
+ */
+public class RouteAnalyzerTest {
+
+  /** Every pair of countries on the bundled map, including each country to itself. */
+  @Test
+  public void bundledMap() throws Exception {
+    CountryRegistry countries = new CountryRegistry();
+    Checker checker = new Checker(TestMaps.bundled(countries).snapshot(), countries);
+    int nodeCount = checker.graph.nodeCount();
+    for (int source = 0; source < nodeCount; source++) {
+      for (int target = 0; target < nodeCount; target++) {
+        checker.check(source, target);
+      }
+    }
+  }
+
+  /**
+   * Random pairs on sparse random maps, where many pairs have no route, and fuel costs of 0 to 2
+   * make continents tie for the most fuel.
+   */
+  @Test
+  public void randomMaps() {
+    for (long seed = 1; seed <= 3; seed++) {
+      CountryRegistry countries = new CountryRegistry();
+      Checker checker = new Checker(randomMap(500, seed, countries), countries);
+      Random random = new Random(seed);
+      for (int i = 0; i < 1_000; i++) {
+        checker.check(random.nextInt(500), random.nextInt(500));
+      }
+      for (int node = 0; node < 500; node += 50) {
+        checker.check(node, node);
+      }
+    }
+  }
+
+  /**
+   * Names the nodes of a sparse random graph and puts them on eight continents, so the graph is
+   * not indexed by the registry and the analyzer looks each country up by name.
+   */
+  private static CsrGraph<String> randomMap(int nodes, long seed, CountryRegistry countries) {
+    CsrGraph<Integer> ids = TestMaps.random(nodes, 2, 2, seed).snapshot();
+    Graph<String> graph = new Graph<>();
+    // Register the countries in reverse, so registry IDs differ from node IDs
+    for (int node = nodes - 1; node >= 0; node--) {
+      countries.put("N" + node, "C" + node % 8, ids.weight(node));
+    }
+    for (int node = 0; node < nodes; node++) {
+      graph.addNode("N" + node);
+    }
+    for (int node = 0; node < nodes; node++) {
+      int[] targets = ids.targetsOf(node);
+      for (int edge = ids.start(node); edge < ids.end(node); edge++) {
+        graph.addEdge("N" + node, "N" + targets[edge]);
+      }
+    }
+    graph.setNodeWeights(name -> countries.fuelOf(countries.idOf(name)));
+    graph.freeze();
+    return graph.snapshot();
+  }
+
+  /** Evaluates each route every way the analyzer can, one tally for all, against its names. */
+  private static class Checker {
+    private final CsrGraph<String> graph;
+    private final RouteAnalyzer analyzer;
+    private final RouteAnalyzer byName;
+    private final FuelTally tally;
+    private final BreadthFirstSearch bfs;
+    private final DijkstraSearch dijkstra;
+
+    Checker(CsrGraph<String> graph, CountryRegistry countries) {
+      this.graph = graph;
+      this.analyzer = new RouteAnalyzer(graph, countries);
+      Map<String, Country> byNameMap = new HashMap<>();
+      for (int id = 0; id < countries.size(); id++) {
+        byNameMap.put(countries.nameOf(id), countries.countryOf(id));
+      }
+      this.byName = new RouteAnalyzer(byNameMap);
+      this.tally = new FuelTally(analyzer.getContinentCount());
+      this.bfs = new BreadthFirstSearch(graph);
+      this.dijkstra = new DijkstraSearch(graph);
+    }
+
+    void check(int source, int target) {
+      String pair = source + " to " + target;
+      for (SearchTree tree : new SearchTree[] {bfs, dijkstra}) {
+        if (!tree.search(source, target)) {
+          expect(pair, List.of(), analyzer.noRoute(tally));
+          continue;
+        }
+        List<String> route = new ArrayList<>();
+        int length = tree.tracePath(target);
+        for (int i = 0; i < length; i++) {
+          route.add(graph.nodeOf(tree.pathNode(i)));
+        }
+        expect(pair, route, analyzer.evaluateTree(tree, target, tally));
+        expect(pair, route, analyzer.evaluateTraced(tree, length, tally));
+        expect(pair, route, analyzer.evaluate(route, tally));
+      }
+    }
+
+    private void expect(String pair, List<String> route, RouteEvaluation evaluation) {
+      RouteResult result = evaluation.toRouteResult();
+      Map<String, Integer> continentFuel = byName.getContinentFuelConsumption(route);
+      assertEquals(pair, route, result.getPath());
+      assertEquals(pair, byName.calculateFuelConsumption(route), result.getTotalFuel());
+      assertEquals(
+          pair,
+          List.copyOf(continentFuel.entrySet()),
+          List.copyOf(result.getContinentFuel().entrySet()));
+      assertEquals(
+          pair,
+          byName.findHighestFuelContinent(continentFuel),
+          result.getHighestFuelContinent());
+    }
+  }
+}
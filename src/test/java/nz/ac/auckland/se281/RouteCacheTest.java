@@ -0,0 +1,107 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/** Checks the counters, eviction order and version checks of {@link RouteCache}. */
+public class RouteCacheTest {
+  private static final int VERSION = 7;
+
+  private static RouteResult route(String... countries) {
+    return new RouteResult(List.of(countries), 0, Map.of(), "Asia");
+  }
+
+  /** Misses and hits are counted separately, and a put does not count as either. */
+  @Test
+  public void countsHitsAndMisses() {
+    RouteCache cache = new RouteCache(4);
+    RouteResult result = route("India", "Siam");
+
+    assertNull(cache.get(VERSION, "India", "Siam", false));
+    cache.put(VERSION, "India", "Siam", false, result);
+    assertSame(result, cache.get(VERSION, "India", "Siam", false));
+    assertSame(result, cache.get(VERSION, "India", "Siam", false));
+
+    assertEquals(2, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(0, cache.getEvictions());
+  }
+
+  /** The same pair of countries is cached separately for each kind of route. */
+  @Test
+  public void keysOnRouteKind() {
+    RouteCache cache = new RouteCache(4);
+    RouteResult fewestHops = route("Ural", "Venezuela");
+    RouteResult leastFuel = route("Ural", "Afghanistan", "Venezuela");
+    cache.put(VERSION, "Ural", "Venezuela", false, fewestHops);
+    cache.put(VERSION, "Ural", "Venezuela", true, leastFuel);
+
+    assertSame(fewestHops, cache.get(VERSION, "Ural", "Venezuela", false));
+    assertSame(leastFuel, cache.get(VERSION, "Ural", "Venezuela", true));
+    assertNull(cache.get(VERSION, "Venezuela", "Ural", false));
+    assertEquals(2, cache.size());
+  }
+
+  /** A full cache evicts the route that was used longest ago, not the one stored first. */
+  @Test
+  public void evictsLeastRecentlyUsed() {
+    RouteCache cache = new RouteCache(2);
+    cache.put(VERSION, "A", "B", false, route("A", "B"));
+    cache.put(VERSION, "B", "C", false, route("B", "C"));
+    cache.get(VERSION, "A", "B", false);
+    cache.put(VERSION, "C", "D", false, route("C", "D"));
+
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictions());
+    assertNull(cache.get(VERSION, "B", "C", false));
+    assertEquals(List.of("A", "B"), cache.get(VERSION, "A", "B", false).getPath());
+    assertEquals(List.of("C", "D"), cache.get(VERSION, "C", "D", false).getPath());
+  }
+
+  /** Replacing a cached route does not evict anything. */
+  @Test
+  public void replacesWithoutEvicting() {
+    RouteCache cache = new RouteCache(1);
+    cache.put(VERSION, "A", "B", false, route("A", "B"));
+    RouteResult replacement = route("A", "C", "B");
+    cache.put(VERSION, "A", "B", false, replacement);
+
+    assertEquals(0, cache.getEvictions());
+    assertSame(replacement, cache.get(VERSION, "A", "B", false));
+  }
+
+  /** Asking about another graph version drops every route cached for the old one. */
+  @Test
+  public void dropsRoutesOfOtherVersions() {
+    RouteCache cache = new RouteCache(4);
+    cache.put(VERSION, "A", "B", false, route("A", "B"));
+    cache.put(VERSION, "B", "C", true, route("B", "C"));
+
+    assertNull(cache.get(VERSION + 1, "A", "B", false));
+    assertEquals(0, cache.size());
+    assertNull(cache.get(VERSION, "B", "C", true));
+    assertEquals(0, cache.getEvictions());
+  }
+
+  /** Storing a route computed on another version drops the routes of the old one. */
+  @Test
+  public void putOnNewVersionDropsOldRoutes() {
+    RouteCache cache = new RouteCache(4);
+    cache.put(VERSION, "A", "B", false, route("A", "B"));
+    cache.put(VERSION + 1, "B", "C", false, route("B", "C"));
+
+    assertEquals(1, cache.size());
+    assertNull(cache.get(VERSION + 1, "A", "B", false));
+  }
+
+  /** A cache must have room for at least one route. */
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsZeroCapacity() {
+    new RouteCache(0);
+  }
+}
@@ -0,0 +1,148 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that {@link RouteTable} walks give exactly the paths {@link BreadthFirstSearch} finds,
+ * with either size of matrix entry, and that {@link RouteService} answers from the table.
+ */
+public class RouteTableTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private PrintStream origOut;
+
+  @Before
+  public void setUp() {
+    origOut = System.out;
+    System.setOut(new PrintStream(new ByteArrayOutputStream()));
+  }
+
+  @After
+  public void tearDown() {
+    System.setOut(origOut);
+  }
+
+  /** Every pair of countries on the bundled map, each country to itself included. */
+  @Test
+  public void bundledMap() throws Exception {
+    CsrGraph<String> graph = TestMaps.bundled(new CountryRegistry()).snapshot();
+    checkAllPairs(new RouteTable<>(graph));
+    checkAllPairs(new RouteTable<>(graph, false));
+  }
+
+  /** Every pair of a sparse random graph, where about a fifth of the pairs have no path. */
+  @Test
+  public void unreachablePairs() {
+    CsrGraph<Integer> graph = TestMaps.random(400, 2, 0, 42).snapshot();
+    checkAllPairs(new RouteTable<>(graph));
+    checkAllPairs(new RouteTable<>(graph, false));
+  }
+
+  /** Smaller entries take half the memory of larger ones. */
+  @Test
+  public void entrySizes() {
+    CsrGraph<Integer> graph = TestMaps.random(100, 2, 0, 1).snapshot();
+    assertEquals(2L * 100 * 100, new RouteTable<>(graph).getMemoryBytes());
+    assertEquals(4L * 100 * 100, new RouteTable<>(graph, false).getMemoryBytes());
+  }
+
+  /** A graph whose matrix would not fit in one array is rejected before anything is allocated. */
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsTooManyCells() {
+    new RouteTable<>(TestMaps.random(46_341, 0, 0, 1).snapshot());
+  }
+
+  /** Nodes that are not in the graph have no route. */
+  @Test
+  public void unknownNodes() throws Exception {
+    CsrGraph<String> graph = TestMaps.bundled(new CountryRegistry()).snapshot();
+    RouteTable<String> table = new RouteTable<>(graph);
+    assertTrue(table.findShortestPath("India", "Atlantis").isEmpty());
+    assertTrue(table.findShortestPath("Atlantis", "India").isEmpty());
+  }
+
+  /**
+   * The route service answers fewest-hop queries from the table while the map is unchanged, and by
+   * searching once it has changed, giving the paths a plain engine gives either way.
+   */
+  @Test
+  public void routeServiceUsesTable() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    Files.copy(TestMaps.BUNDLED_MAP.resolve("countries.csv"), directory.resolve("countries.csv"));
+    // Cut the Americas off from the rest of the map, so some pairs have no route
+    Set<String> cut = Set.of("Alaska,Kamchatka", "Greenland,Iceland", "Brazil,North Africa");
+    List<String> adjacencies = new ArrayList<>();
+    for (String line : Files.readAllLines(TestMaps.BUNDLED_MAP.resolve("adjacencies.csv"))) {
+      String[] parts = line.split(",");
+      StringBuilder kept = new StringBuilder(parts[0]);
+      for (int i = 1; i < parts.length; i++) {
+        if (!cut.contains(parts[0] + "," + parts[i]) && !cut.contains(parts[i] + "," + parts[0])) {
+          kept.append(',').append(parts[i]);
+        }
+      }
+      adjacencies.add(kept.toString());
+    }
+    Files.write(directory.resolve("adjacencies.csv"), adjacencies);
+    MapEngine tabled =
+        new MapEngine(new MapEngine.Options().setMapDirectory(directory).setRouteTable(true));
+    MapEngine plain = new MapEngine(new MapEngine.Options().setMapDirectory(directory));
+
+    checkSameRoutes(tabled, plain);
+    for (MapEngine engine : List.of(tabled, plain)) {
+      engine.closeBorder("India", "Siam");
+    }
+    checkSameRoutes(tabled, plain);
+  }
+
+  private static void checkSameRoutes(MapEngine tabled, MapEngine plain) throws Exception {
+    CsrGraph<String> graph = plain.getRouteService().getGraph();
+    int unreachable = 0;
+    for (int source = 0; source < graph.nodeCount(); source++) {
+      for (int target = 0; target < graph.nodeCount(); target++) {
+        String from = graph.nodeOf(source);
+        String to = graph.nodeOf(target);
+        RouteResult expected = plain.getRouteService().findRoute(from, to, false);
+        RouteResult actual = tabled.getRouteService().findRoute(from, to, false);
+        assertEquals(from + " to " + to, expected.getPath(), actual.getPath());
+        assertEquals(from + " to " + to, expected.getTotalFuel(), actual.getTotalFuel());
+        unreachable += expected.getPath().isEmpty() ? 1 : 0;
+      }
+    }
+    assertTrue(unreachable > 0);
+  }
+
+  private static <T> void checkAllPairs(RouteTable<T> table) {
+    CsrGraph<T> graph = table.getGraph();
+    BreadthFirstSearch search = new BreadthFirstSearch(graph);
+    for (int source = 0; source < graph.nodeCount(); source++) {
+      search.search(source, -1);
+      for (int target = 0; target < graph.nodeCount(); target++) {
+        List<T> expected = new ArrayList<>();
+        if (search.isReached(target)) {
+          int length = search.tracePath(target);
+          for (int i = 0; i < length; i++) {
+            expected.add(graph.nodeOf(search.pathNode(i)));
+          }
+        }
+        assertEquals(
+            source + " to " + target,
+            expected,
+            table.findShortestPath(graph.nodeOf(source), graph.nodeOf(target)));
+      }
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package nz.ac.auckland.se281;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Checks that every {@link SearchMode} finds paths with as few border crossings as {@link
+ * BreadthFirstSearch}, and that each of their steps crosses a real border.
+ */
+@RunWith(Parameterized.class)
+public class SearchModeTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final SearchMode mode;
+
+  public SearchModeTest(SearchMode mode) {
+    this.mode = mode;
+  }
+
+  @Parameters(name = "{0}")
+  public static List<Object[]> modes() {
+    List<Object[]> modes = new ArrayList<>();
+    for (SearchMode mode : SearchMode.values()) {
+      modes.add(new Object[] {mode});
+    }
+    return modes;
+  }
+
+  /** Every pair of countries on the bundled map. */
+  @Test
+  public void bundledMap() throws Exception {
+    CsrGraph<String> graph = TestMaps.bundled(new CountryRegistry()).snapshot();
+    BreadthFirstSearch expected = new BreadthFirstSearch(graph);
+    PathSearch search = mode.createSearch(graph);
+    for (int source = 0; source < graph.nodeCount(); source++) {
+      for (int target = 0; target < graph.nodeCount(); target++) {
+        checkPath(expected, search, source, target);
+      }
+    }
+  }
+
+  /** Random pairs on a generated map, where large frontiers make the parallel modes kick in. */
+  @Test
+  public void generatedMap() throws Exception {
+    MapGenerator generator =
+        new MapGenerator()
+            .setCountries(20_000)
+            .setTopology(MapGenerator.Topology.SCALE_FREE)
+            .setDegree(6);
+    CsrGraph<String> graph =
+        TestMaps.generated(generator, folder.getRoot().toPath(), new CountryRegistry()).snapshot();
+    checkRandomPairs(graph, 200);
+  }
+
+  /** A sparse random graph, where about a fifth of the pairs have no path at all. */
+  @Test
+  public void unreachablePairs() {
+    checkRandomPairs(TestMaps.random(2_000, 2, 0, 42).snapshot(), 500);
+  }
+
+  /**
+   * The graph's engines for the mode follow each change to the map, landmarks included, rather
+   * than searching an older version.
+   */
+  @Test
+  public void graphFollowsChanges() {
+    Graph<Integer> graph = TestMaps.random(300, 3, 0, 5);
+    Random random = new Random(281);
+    for (int change = 0; change < 5; change++) {
+      for (int i = 0; i < 100; i++) {
+        int source = random.nextInt(300);
+        int target = random.nextInt(300);
+        List<Integer> expected = graph.findShortestPath(source, target, SearchMode.BREADTH_FIRST);
+        List<Integer> path = graph.findShortestPath(source, target, mode);
+        assertEquals(source + " to " + target, expected.size(), path.size());
+      }
+      // Cut every border of one node, which changes many of the shortest paths
+      int node = random.nextInt(300);
+      for (Integer neighbor : graph.getNeighbors(node)) {
+        graph.removeEdge(node, neighbor);
+      }
+    }
+  }
+
+  private void checkRandomPairs(CsrGraph<?> graph, int pairs) {
+    BreadthFirstSearch expected = new BreadthFirstSearch(graph);
+    PathSearch search = mode.createSearch(graph);
+    Random random = new Random(281);
+    for (int i = 0; i < pairs; i++) {
+      int source = random.nextInt(graph.nodeCount());
+      checkPath(expected, search, source, random.nextInt(graph.nodeCount()));
+    }
+  }
+
+  private static void checkPath(
+      BreadthFirstSearch expected, PathSearch search, int source, int target) {
+    CsrGraph<?> graph = search.getGraph();
+    boolean found = expected.search(source, target);
+    String pair = source + " to " + target;
+
+    assertEquals(pair, found, search.search(source, target));
+    if (found) {
+      List<Integer> path = TestMaps.checkedPath(graph, search, search.tracePath(target));
+      assertEquals(pair, expected.tracePath(target), path.size());
+      assertTrue(pair, path.get(0) == source && path.get(path.size() - 1) == target);
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package nz.ac.auckland.se281;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Builds the maps the unit tests run against. */
+final class TestMaps {
+  /** The directory holding the bundled map's CSV files. */
+  static final Path BUNDLED_MAP = Paths.get("./src/main/resources");
+
+  private TestMaps() {}
+
+  /**
+   * Loads the bundled map the same way {@link MapEngine} does.
+   *
+   * @param countries The empty registry to fill with the bundled countries
+   * @return The frozen country graph, weighted by fuel cost
+   */
+  static Graph<String> bundled(CountryRegistry countries) throws IOException, MapFormatException {
+    return load(BUNDLED_MAP, countries);
+  }
+
+  /**
+   * Writes a map with a generator and loads it the same way {@link MapEngine} does.
+   *
+   * @param generator The generator, set up with the size and shape of the map
+   * @param directory The directory to write the CSV files to
+   * @param countries The empty registry to fill with the generated countries
+   * @return The frozen country graph, weighted by fuel cost
+   */
+  static Graph<String> generated(MapGenerator generator, Path directory, CountryRegistry countries)
+      throws IOException, MapFormatException {
+    generator.generate(directory);
+    return load(directory, countries);
+  }
+
+  /** Loads the map in a directory and weights each country by its fuel cost. */
+  static Graph<String> load(Path directory, CountryRegistry countries)
+      throws IOException, MapFormatException {
+    Graph<String> graph =
+        new CsvMapLoader(countries)
+            .load(directory.resolve("countries.csv"), directory.resolve("adjacencies.csv"));
+    graph.setNodeWeights(name -> countries.fuelOf(countries.idOf(name)));
+    return graph;
+  }
+
+  /**
+   * Builds a frozen random graph where every node has up to the given number of outgoing edges to
+   * uniformly chosen nodes, and a random weight. Up to a degree of about 2, many pairs of nodes
+   * have no path between them.
+   *
+   * @param nodes The number of nodes
+   * @param degree The number of outgoing edges to try per node
+   * @param maxWeight The highest node weight, or 0 to give every node weight 0
+   * @param seed The random seed, so runs are reproducible
+   * @return The random graph, with node weights set
+   */
+  static Graph<Integer> random(int nodes, int degree, int maxWeight, long seed) {
+    Random random = new Random(seed);
+    Graph<Integer> graph = new Graph<>();
+    int[] weights = new int[nodes];
+    for (int node = 0; node < nodes; node++) {
+      graph.addNode(node);
+      weights[node] = random.nextInt(maxWeight + 1);
+    }
+    for (int node = 0; node < nodes; node++) {
+      for (int i = 0; i < degree; i++) {
+        graph.addEdge(node, random.nextInt(nodes));
+      }
+    }
+    graph.setNodeWeights(node -> weights[node]);
+    graph.freeze();
+    return graph;
+  }
+
+  /**
+   * Builds a small frozen graph from a list of one-way edges.
+   *
+   * @param nodes The number of nodes, numbered from 0
+   * @param edges The edges as (from, to) pairs of node numbers
+   * @return The graph, without node weights
+   */
+  static CsrGraph<Integer> graphOf(int nodes, int... edges) {
+    Graph<Integer> graph = new Graph<>();
+    for (int node = 0; node < nodes; node++) {
+      graph.addNode(node);
+    }
+    for (int i = 0; i < edges.length; i += 2) {
+      graph.addEdge(edges[i], edges[i + 1]);
+    }
+    graph.freeze();
+    return graph.snapshot();
+  }
+
+  /**
+   * Checks that an engine finds a path exactly when {@link BreadthFirstSearch} does, and that the
+   * path runs from the source to the destination along edges, with as few of them as BFS's.
+   *
+   * @param expected A BFS engine over the same graph
+   * @param search The engine to check
+   * @param source The ID of the starting node
+   * @param target The ID of the destination node
+   * @throws AssertionError if the engine disagrees with BFS
+   */
+  static void checkFewestHops(
+      BreadthFirstSearch expected, PathSearch search, int source, int target) {
+    String pair = source + " to " + target;
+    boolean found = expected.search(source, target);
+    if (search.search(source, target) != found) {
+      throw new AssertionError(pair + ": BFS " + (found ? "found" : "did not find") + " a path");
+    }
+    if (found) {
+      List<Integer> path = checkedPath(search.getGraph(), search, search.tracePath(target));
+      if (path.size() != expected.tracePath(target)) {
+        throw new AssertionError(pair + ": " + path + " is longer or shorter than BFS's path");
+      }
+      if (path.get(0) != source || path.get(path.size() - 1) != target) {
+        throw new AssertionError(pair + ": " + path + " has the wrong ends");
+      }
+    }
+  }
+
+  /**
+   * Gets the nodes of a path, checking that each step follows an edge of the graph.
+   *
+   * @param graph The graph the path was found in
+   * @param search The engine that traced the path
+   * @param length The number of nodes on the path
+   * @return The IDs of the path's nodes, in order
+   * @throws AssertionError if a step is not an edge
+   */
+  static List<Integer> checkedPath(CsrGraph<?> graph, PathSearch search, int length) {
+    List<Integer> path = new ArrayList<>(length);
+    for (int i = 0; i < length; i++) {
+      int node = search.pathNode(i);
+      if (i > 0 && !hasEdge(graph, path.get(i - 1), node)) {
+        throw new AssertionError("No edge from " + path.get(i - 1) + " to " + node);
+      }
+      path.add(node);
+    }
+    return path;
+  }
+
+  /** Checks whether a graph has an edge between two nodes, by their IDs. */
+  static boolean hasEdge(CsrGraph<?> graph, int from, int to) {
+    int[] targets = graph.targetsOf(from);
+    for (int i = graph.start(from); i < graph.end(from); i++) {
+      if (targets[i] == to) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Sums the weights a path burns, counting every node but the first, as the weighted searches
+   * do.
+   */
+  static int costOf(CsrGraph<?> graph, List<Integer> path) {
+    int cost = 0;
+    for (int i = 1; i < path.size(); i++) {
+      cost += graph.weight(path.get(i));
+    }
+    return cost;
+  }
+}